@@ -38,6 +38,12 @@ public abstract class AbstractAsyncContextScope implements AsyncContextScope, As
 	public AbstractAsyncContextScope(@CompileTimeConstant Object name, @Nullable AsyncContextScope parent) {
 		this.name = name;
 		this.parent = parent;
+		if (parent != null) { // copied on first write
+			this.contextData = parent.getAsyncContext().getRawContextData();
+		} else {
+			this.contextData = new ConcurrentHashMap<>();
+			this.ownsContextData = true;
+		}
 	}
 
 	@Override public void privateOnChildComplete(AsyncContext child) {
@@ -0,0 +1,163 @@
+package com.mpd.concurrent.executors;
+
+import androidx.annotation.NonNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks a {@link ThreadPoolExecutor}'s size, between its core and maximum size, to keep queue latency near a target.
+ *
+ * <p>Once per sample interval, queue latency is estimated as the longest of: the wait of the task sampled this
+ * interval, how long the currently sampled task has been waiting, and the queue length divided by throughput. Over the
+ * target, the pool grows in proportion to how far over it is, at most doubling at once. Under half the target, with
+ * some threads idle, it shrinks by one thread per interval, so the threads that a burst needed aren't all torn down by
+ * a lull. Threads over the target exit as soon as they're idle.
+ *
+ * <p>Each executor needs its own sizer. Only the executor updates it, while holding its lock, but the getters may be
+ * called from any thread.
+ */
+public class AdaptivePoolSizer {
+	public static final long DEFAULT_SAMPLE_INTERVAL_MS = 100;
+
+	private final long targetLatencyNanos;
+	private final long sampleIntervalNanos;
+	private long windowStartNanos;
+	private long windowMaxWaitNanos = 0;
+	private int windowCompleted = 0;
+	private volatile long queueLatencyNanos = 0;
+	private volatile double throughputPerSecond = 0;
+	private volatile int targetPoolSize = 0;
+	private volatile long growCount = 0;
+	private volatile long shrinkCount = 0;
+
+	public AdaptivePoolSizer(long targetLatency, TimeUnit unit) {
+		this(targetLatency, unit, DEFAULT_SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	public AdaptivePoolSizer(long targetLatency, TimeUnit unit, long sampleInterval, TimeUnit sampleUnit) {
+		if (targetLatency <= 0 || sampleInterval <= 0) {
+			throw new IllegalArgumentException("targetLatency "
+					+ targetLatency
+					+ " and sampleInterval "
+					+ sampleInterval
+					+ " must be positive");
+		}
+		this.targetLatencyNanos = unit.toNanos(targetLatency);
+		this.sampleIntervalNanos = sampleUnit.toNanos(sampleInterval);
+	}
+
+	void start(long nowNanos, int poolSize) {
+		windowStartNanos = nowNanos;
+		windowMaxWaitNanos = 0;
+		windowCompleted = 0;
+		targetPoolSize = poolSize;
+	}
+
+	void onQueueWait(long waitNanos) {
+		windowMaxWaitNanos = Math.max(windowMaxWaitNanos, waitNanos);
+	}
+
+	void onTaskCompleted() {
+		windowCompleted++;
+	}
+
+	long getSampleIntervalNanos() {
+		return sampleIntervalNanos;
+	}
+
+	boolean isSampleDue(long nowNanos) {
+		return nowNanos - windowStartNanos >= sampleIntervalNanos;
+	}
+
+	// Returns true if the sample interval had passed, so the target pool size was re-evaluated.
+	boolean update(
+			long nowNanos, long sampleWaitingNanos, int queueSize, int busyThreads, int poolSize, int minSize, int maxSize)
+	{
+		if (!isSampleDue(nowNanos)) {
+			return false;
+		}
+		long elapsedNanos = nowNanos - windowStartNanos;
+		double throughputPerNano = (double) windowCompleted / elapsedNanos;
+		long backlogNanos;
+		if (queueSize == 0) {
+			backlogNanos = 0;
+		} else if (throughputPerNano > 0) {
+			backlogNanos = (long) (queueSize / throughputPerNano);
+		} else { // nothing finished this whole interval, so every thread is stuck
+			backlogNanos = Long.MAX_VALUE;
+		}
+		long latencyNanos = Math.max(Math.max(windowMaxWaitNanos, sampleWaitingNanos), backlogNanos);
+		queueLatencyNanos = latencyNanos;
+		throughputPerSecond = throughputPerNano * TimeUnit.SECONDS.toNanos(1);
+		windowStartNanos = nowNanos;
+		windowMaxWaitNanos = 0;
+		windowCompleted = 0;
+
+		int oldTarget = targetPoolSize;
+		int newTarget = oldTarget;
+		if (latencyNanos > targetLatencyNanos && queueSize > 0) {
+			double overshoot = Math.min(2.0, (double) latencyNanos / targetLatencyNanos);
+			newTarget = Math.max(poolSize + 1, (int) Math.ceil(poolSize * overshoot));
+		} else if (latencyNanos < targetLatencyNanos / 2 && busyThreads < poolSize) {
+			newTarget = Math.min(oldTarget, poolSize) - 1;
+		}
+		newTarget = Math.max(minSize, Math.min(newTarget, maxSize));
+		if (newTarget > oldTarget) {
+			growCount++;
+		} else if (newTarget < oldTarget) {
+			shrinkCount++;
+		}
+		targetPoolSize = newTarget;
+		return true;
+	}
+
+	public long getTargetLatency(TimeUnit unit) {
+		return unit.convert(targetLatencyNanos, TimeUnit.NANOSECONDS);
+	}
+
+	// The queue latency estimated for the last sample interval
+	public long getQueueLatency(TimeUnit unit) {
+		return unit.convert(queueLatencyNanos, TimeUnit.NANOSECONDS);
+	}
+
+	// Tasks completed per second over the last sample interval
+	public double getThroughputPerSecond() {
+		return throughputPerSecond;
+	}
+
+	public int getTargetPoolSize() {
+		return targetPoolSize;
+	}
+
+	// How many times the target pool size has been raised
+	public long getGrowCount() {
+		return growCount;
+	}
+
+	// How many times the target pool size has been lowered
+	public long getShrinkCount() {
+		return shrinkCount;
+	}
+
+	void toString(StringBuilder sb) {
+		sb.append(getClass().getSimpleName())
+				.append("[targetPoolSize=")
+				.append(targetPoolSize)
+				.append(", queueLatencyUs=")
+				.append(TimeUnit.NANOSECONDS.toMicros(queueLatencyNanos))
+				.append(", targetLatencyUs=")
+				.append(TimeUnit.NANOSECONDS.toMicros(targetLatencyNanos))
+				.append(", throughputPerSecond=")
+				.append((long) throughputPerSecond)
+				.append(", grows=")
+				.append(growCount)
+				.append(", shrinks=")
+				.append(shrinkCount)
+				.append(']');
+	}
+
+	@NonNull @Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		toString(sb);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,46 @@
+package com.mpd.concurrent.executors;
+
+import androidx.annotation.NonNull;
+import com.mpd.concurrent.AsyncCallable;
+import com.mpd.concurrent.executors.AsyncReadWriteLock.Guard;
+import com.mpd.concurrent.futures.Future;
+
+/**
+ * A mutex whose acquisitions are futures, so waiting for the lock never blocks a thread.
+ *
+ * <p>Acquisitions are granted in FIFO order. This is the write side of an {@link AsyncReadWriteLock}, for state that
+ * has no read-only operations to run concurrently.
+ */
+public class AsyncMutex {
+	private final AsyncReadWriteLock lock = new AsyncReadWriteLock(/*preferWriters=*/true);
+
+	public Future<Guard> acquire() {
+		return lock.acquireWrite();
+	}
+
+	// Runs the task on the executor once the lock is granted, and holds it until the task's chain completes.
+	public <O> Future<O> withLock(AsyncCallable<O> task, Executor executor) {
+		return lock.withWriteLock(task, executor);
+	}
+
+	public boolean isLocked() {
+		return lock.isWriteLocked();
+	}
+
+	public int getQueueLength() {
+		return lock.getQueueLength();
+	}
+
+	void toString(StringBuilder sb, boolean includeState) {
+		sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
+		if (includeState) {
+			sb.append("[isLocked=").append(isLocked()).append(", queueLength=").append(getQueueLength()).append(']');
+		}
+	}
+
+	@NonNull @Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		toString(sb, /* includeState=*/ true);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,205 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.NonNull;
+import com.mpd.concurrent.asyncContext.AsyncContext;
+import com.mpd.concurrent.executors.Executor.RunnablePriority;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.atomic.FutureRunnable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token-bucket rate limiter whose acquisitions are futures, which complete at the instant their permits are
+ * available.
+ *
+ * <p>Permits accrue at a steady rate, up to a burst size. An acquisition that the bucket covers completes immediately.
+ * Otherwise, it reserves the next free permits on the limiter's timeline. Its future is then scheduled on the {@link
+ * DelayScheduler} for the exact {@link Future#getSystemNanoTime()} at which the last of them accrues, and completes on
+ * the limiter's executor. Nothing polls or sleeps. Each reservation is computed from the timeline, not from when the
+ * previous one woke up, so scheduling jitter doesn't accumulate, and the rate stays exact at tens of thousands of
+ * permits per second.
+ *
+ * <p>Part of the burst may be reserved for urgent work. Reserved permits can only be taken by acquisitions at the
+ * reserved {@link RunnablePriority} or a more urgent one, and those acquisitions take them without waiting behind less
+ * urgent ones on the timeline. Cancelling a waiting acquisition doesn't return its permits.
+ */
+public class AsyncRateLimiter {
+	private static final RunnablePriority[] PRIORITIES = RunnablePriority.values();
+	private static final Runnable NO_OP = () -> {};
+
+	private final Executor executor;
+	private final double permitsPerSecond;
+	private final double intervalNanos;
+	private final int maxBurstPermits;
+	private final Object lock = new Object();
+	// all guarded by lock
+	// the burst permits reserved for each priority and more urgent ones, indexed by the priority's ordinal
+	private final int[] reservedPermits = new int[PRIORITIES.length];
+	// the burst permits that each priority may not take, because they're reserved for more urgent ones
+	private final int[] unusablePermits = new int[PRIORITIES.length];
+	private double storedPermits;
+	// when the next permit that isn't in the bucket accrues
+	private long nextFreeNanos;
+
+	public AsyncRateLimiter(double permitsPerSecond) {
+		this(Future.futureConfig.getDefaultExecutor(), permitsPerSecond, 1);
+	}
+
+	public AsyncRateLimiter(Executor executor, double permitsPerSecond, int maxBurstPermits) {
+		if (!(permitsPerSecond > 0) || Double.isInfinite(permitsPerSecond) || maxBurstPermits < 1) {
+			throw new IllegalArgumentException("permitsPerSecond "
+					+ permitsPerSecond
+					+ " and maxBurstPermits "
+					+ maxBurstPermits
+					+ " must be positive");
+		}
+		this.executor = checkNotNull(executor);
+		this.permitsPerSecond = permitsPerSecond;
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+		this.maxBurstPermits = maxBurstPermits;
+		this.storedPermits = maxBurstPermits;
+		this.nextFreeNanos = System.nanoTime();
+	}
+
+	public double getRate() {
+		return permitsPerSecond;
+	}
+
+	public int getMaxBurstPermits() {
+		return maxBurstPermits;
+	}
+
+	// Reserves part of the burst for acquisitions at this priority or more urgent. Reservations may not exceed the burst.
+	public void setReservedPermits(RunnablePriority priority, int permits) {
+		synchronized (lock) {
+			int otherReserved = unusablePermits[PRIORITIES.length - 1] + reservedPermits[PRIORITIES.length - 1]
+					- reservedPermits[priority.ordinal()];
+			if (permits < 0 || otherReserved + permits > maxBurstPermits) {
+				throw new IllegalArgumentException("reserving "
+						+ permits
+						+ " permits for "
+						+ priority
+						+ " would reserve more than the "
+						+ maxBurstPermits
+						+ " burst permits");
+			}
+			reservedPermits[priority.ordinal()] = permits;
+			int unusable = 0;
+			for (int i = 0; i < PRIORITIES.length; i++) {
+				unusablePermits[i] = unusable;
+				unusable += reservedPermits[i];
+			}
+		}
+	}
+
+	public int getReservedPermits(RunnablePriority priority) {
+		synchronized (lock) {
+			return reservedPermits[priority.ordinal()];
+		}
+	}
+
+	// Acquires at the current AsyncContext's priority
+	public Future<Void> acquire() {
+		return acquire(1);
+	}
+
+	public Future<Void> acquire(int permits) {
+		return acquire(permits,
+				AsyncContext.getCurrentAsyncContext().getOrDefault(RunnablePriority.class, RunnablePriority.PRIORITY_DEFAULT));
+	}
+
+	public Future<Void> acquire(int permits, RunnablePriority priority) {
+		checkPermits(permits);
+		checkNotNull(priority);
+		long readyNanos;
+		synchronized (lock) {
+			readyNanos = reserveLocked(permits, priority, System.nanoTime());
+		}
+		long delayNanos = readyNanos - System.nanoTime();
+		if (delayNanos <= 0) {
+			return Futures.immediateVoidFuture();
+		}
+		FutureRunnable<Void> ready = new FutureRunnable<>(NO_OP, delayNanos, TimeUnit.NANOSECONDS);
+		ready.getAsyncContext().put(RunnablePriority.class, priority);
+		// straight to the scheduler, since Executor#schedule only takes whole milliseconds
+		return Future.futureConfig.getDelayScheduler().schedule(ready, executor);
+	}
+
+	// Returns false, rather than waiting, if the bucket doesn't hold the permits now.
+	public boolean tryAcquire(int permits, RunnablePriority priority) {
+		checkPermits(permits);
+		synchronized (lock) {
+			long nowNanos = System.nanoTime();
+			refillLocked(nowNanos);
+			if (usablePermitsLocked(priority) < permits) {
+				return false;
+			}
+			reserveLocked(permits, priority, nowNanos);
+			return true;
+		}
+	}
+
+	private static void checkPermits(int permits) {
+		if (permits < 1) {
+			throw new IllegalArgumentException("permits must be positive, but was " + permits);
+		}
+	}
+
+	// Takes the permits, and returns the nanoTime at which they're all available.
+	long reserve(int permits, RunnablePriority priority, long nowNanos) {
+		synchronized (lock) {
+			return reserveLocked(permits, priority, nowNanos);
+		}
+	}
+
+	private long reserveLocked(int permits, RunnablePriority priority, long nowNanos) {
+		refillLocked(nowNanos);
+		double fromBucket = Math.min(permits, usablePermitsLocked(priority));
+		storedPermits -= fromBucket;
+		double fresh = permits - fromBucket;
+		if (fresh == 0) {
+			return nowNanos; // even if less urgent acquisitions are waiting on the timeline
+		}
+		nextFreeNanos += (long) (fresh * intervalNanos);
+		return nextFreeNanos;
+	}
+
+	// Adds the permits that accrued since the timeline caught up to now
+	private void refillLocked(long nowNanos) {
+		if (nowNanos - nextFreeNanos > 0) {
+			storedPermits = Math.min(maxBurstPermits, storedPermits + (nowNanos - nextFreeNanos) / intervalNanos);
+			nextFreeNanos = nowNanos;
+		}
+	}
+
+	private double usablePermitsLocked(RunnablePriority priority) {
+		return Math.max(0, storedPermits - unusablePermits[priority.ordinal()]);
+	}
+
+	void toString(StringBuilder sb, boolean includeState) {
+		sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
+		if (includeState) {
+			synchronized (lock) {
+				sb.append("[permitsPerSecond=")
+						.append(permitsPerSecond)
+						.append(", maxBurstPermits=")
+						.append(maxBurstPermits)
+						.append(", storedPermits=")
+						.append(storedPermits)
+						.append(", nextFreeInUs=")
+						.append(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nextFreeNanos - System.nanoTime())))
+						.append(", executor=");
+				executor.toString(sb, /*includeState=*/false);
+				sb.append(']');
+			}
+		}
+	}
+
+	@NonNull @Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		toString(sb, /* includeState=*/ true);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,399 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import androidx.annotation.NonNull;
+import com.mpd.concurrent.AsyncCallable;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.atomic.AbstractFuture;
+import com.mpd.concurrent.futures.atomic.AbstractListenerFutures.SingleParentImmediateListenerFuture;
+import com.mpd.concurrent.futures.atomic.FutureAsyncCallable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A read-write lock whose acquisitions are futures, so waiting for the lock never blocks a thread.
+ *
+ * <p>Any number of readers may hold the lock at once, unlike with a {@link SequentialExecutor}. Once a writer is
+ * waiting, new readers queue behind it, so writers aren't starved. When a writer releases, by default every queued
+ * reader is granted the lock together, as one batch, before the next writer, so readers aren't starved either. If
+ * writers are preferred, the next writer goes first instead, and readers only get a turn when no writer is waiting.
+ *
+ * <p>{@link #withReadLock} and {@link #withWriteLock} hold the lock for a whole future-chain. The chain is created in
+ * the caller's AsyncContext, runs once the lock is granted, and the lock is released when the chain's result
+ * completes, however it completes. Cancelling the result cancels the task too, but a task's body keeps running until
+ * it returns, so the lock is held until then.
+ */
+public class AsyncReadWriteLock {
+	/** @noinspection rawtypes */
+	private static final AtomicReferenceFieldUpdater<GuardedChain, Object> atomicChainGuard =
+			AtomicReferenceFieldUpdater.newUpdater(GuardedChain.class, Object.class, "guard");
+	/** @noinspection rawtypes */
+	private static final AtomicIntegerFieldUpdater<GuardedChain> atomicUnfinished =
+			AtomicIntegerFieldUpdater.newUpdater(GuardedChain.class, "unfinished");
+	/** @noinspection rawtypes */
+	private static final AtomicIntegerFieldUpdater<GuardedChain> atomicChainFinished =
+			AtomicIntegerFieldUpdater.newUpdater(GuardedChain.class, "chainFinished");
+	/** @noinspection rawtypes */
+	private static final AtomicIntegerFieldUpdater<Body> atomicBodyState =
+			AtomicIntegerFieldUpdater.newUpdater(Body.class, "state");
+	private static final AtomicIntegerFieldUpdater<Guard> atomicReleased =
+			AtomicIntegerFieldUpdater.newUpdater(Guard.class, "released");
+	// GuardedChain#guard once its chain completed
+	private static final Object CHAIN_DONE = new Object();
+	private static final int BODY_QUEUED = 0;
+	private static final int BODY_RUNNING = 1;
+	private static final int BODY_DONE = 2;
+
+	private final boolean preferWriters;
+	private final Object lock = new Object();
+	// all guarded by lock
+	private final ArrayDeque<Waiter> waitingReaders = new ArrayDeque<>();
+	private final ArrayDeque<Waiter> waitingWriters = new ArrayDeque<>();
+	private int readHolders = 0;
+	private boolean writeHeld = false;
+
+	public AsyncReadWriteLock() {
+		this(/*preferWriters=*/false);
+	}
+
+	public AsyncReadWriteLock(boolean preferWriters) {
+		this.preferWriters = preferWriters;
+	}
+
+	public boolean isWriterPreferred() {
+		return preferWriters;
+	}
+
+	public boolean isWriteLocked() {
+		synchronized (lock) {
+			return writeHeld;
+		}
+	}
+
+	public int getReadLockCount() {
+		synchronized (lock) {
+			return readHolders;
+		}
+	}
+
+	public int getQueueLength() {
+		synchronized (lock) {
+			return waitingReaders.size() + waitingWriters.size();
+		}
+	}
+
+	public Future<Guard> acquireRead() {
+		Waiter waiter;
+		synchronized (lock) {
+			if (!writeHeld && waitingWriters.isEmpty()) {
+				readHolders++;
+				return Futures.immediateFuture(new Guard(/*write=*/false));
+			}
+			waiter = new Waiter(/*write=*/false);
+			waitingReaders.add(waiter);
+		}
+		return waiter;
+	}
+
+	public Future<Guard> acquireWrite() {
+		Waiter waiter;
+		synchronized (lock) {
+			if (!writeHeld && readHolders == 0 && waitingWriters.isEmpty()) {
+				writeHeld = true;
+				return Futures.immediateFuture(new Guard(/*write=*/true));
+			}
+			waiter = new Waiter(/*write=*/true);
+			waitingWriters.add(waiter);
+		}
+		return waiter;
+	}
+
+	// Runs the task on the executor once the read lock is granted, and holds it until the task's chain completes and
+	// the task has returned.
+	public <O> Future<O> withReadLock(AsyncCallable<O> task, Executor executor) {
+		return runLocked(acquireRead(), task, executor);
+	}
+
+	// Runs the task on the executor once the write lock is granted, and holds it until the task's chain completes and
+	// the task has returned.
+	public <O> Future<O> withWriteLock(AsyncCallable<O> task, Executor executor) {
+		return runLocked(acquireWrite(), task, executor);
+	}
+
+	private static <O> Future<O> runLocked(Future<Guard> acquisition, AsyncCallable<O> task, Executor executor) {
+		checkNotNull(executor);
+		GuardedChain<O> result = new GuardedChain<>(new Body<>(task), acquisition);
+		Body<O> chain = result.body;
+		acquisition.setListener(() -> {
+			if (!acquisition.isSuccessful()) {
+				chain.setException(acquisition.exceptionNow());
+			} else if (result.holdUntilDone(acquisition.resultNow())) {
+				try {
+					executor.submit(chain);
+				} catch (RuntimeException e) {
+					chain.setException(e);
+				}
+			}
+		}, MoreExecutors.directExecutor());
+		return result;
+	}
+
+	private void releaseRead() {
+		List<Waiter> granted;
+		synchronized (lock) {
+			readHolders--;
+			granted = readHolders == 0 ? grantWriterLocked() : Collections.emptyList();
+		}
+		completeGranted(granted);
+	}
+
+	private void releaseWrite() {
+		List<Waiter> granted;
+		synchronized (lock) {
+			writeHeld = false;
+			if (preferWriters && !waitingWriters.isEmpty()) {
+				granted = grantWriterLocked();
+			} else if (!waitingReaders.isEmpty()) {
+				granted = grantReadersLocked();
+			} else {
+				granted = grantWriterLocked();
+			}
+		}
+		completeGranted(granted);
+	}
+
+	private List<Waiter> grantWriterLocked() {
+		@Nullable Waiter writer = waitingWriters.poll();
+		if (writer == null) {
+			return Collections.emptyList();
+		}
+		writeHeld = true;
+		return Collections.singletonList(writer);
+	}
+
+	private List<Waiter> grantReadersLocked() {
+		List<Waiter> granted = new ArrayList<>(waitingReaders);
+		waitingReaders.clear();
+		readHolders += granted.size();
+		return granted;
+	}
+
+	// Completes waiters outside the lock, since their listeners may run inline
+	private static void completeGranted(List<Waiter> granted) {
+		for (int i = 0; i < granted.size(); i++) {
+			granted.get(i).grant();
+		}
+	}
+
+	private void onWaiterCancelled(Waiter waiter) {
+		List<Waiter> granted;
+		synchronized (lock) {
+			if (!(waiter.write ? waitingWriters : waitingReaders).remove(waiter)) {
+				return; // already granted, so #grant hands the lock back
+			}
+			// the readers queued behind the last waiting writer no longer have to wait
+			if (waiter.write && !writeHeld && waitingWriters.isEmpty() && !waitingReaders.isEmpty()) {
+				granted = grantReadersLocked();
+			} else {
+				return;
+			}
+		}
+		completeGranted(granted);
+	}
+
+	void toString(StringBuilder sb, boolean includeState) {
+		sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
+		if (includeState) {
+			synchronized (lock) {
+				sb.append("[writeHeld=")
+						.append(writeHeld)
+						.append(", readHolders=")
+						.append(readHolders)
+						.append(", waitingWriters=")
+						.append(waitingWriters.size())
+						.append(", waitingReaders=")
+						.append(waitingReaders.size())
+						.append(", preferWriters=")
+						.append(preferWriters)
+						.append(']');
+			}
+		}
+	}
+
+	@NonNull @Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		toString(sb, /* includeState=*/ true);
+		return sb.toString();
+	}
+
+	/** A held read or write lock, until it's released. Releasing more than once does nothing. */
+	public final class Guard implements AutoCloseable {
+		private final boolean write;
+		volatile int released = 0;
+
+		Guard(boolean write) {
+			this.write = write;
+		}
+
+		public boolean isWrite() {
+			return write;
+		}
+
+		public void release() {
+			if (!atomicReleased.compareAndSet(this, 0, 1)) {
+				return;
+			}
+			if (write) {
+				releaseWrite();
+			} else {
+				releaseRead();
+			}
+		}
+
+		@Override public void close() {
+			release();
+		}
+
+		@NonNull @Override public String toString() {
+			return "Guard[write=" + write + ", released=" + (released != 0) + ", lock=" + AsyncReadWriteLock.this + ']';
+		}
+	}
+
+	private final class Waiter extends AbstractFuture<Guard> {
+		final boolean write;
+
+		Waiter(boolean write) {
+			this.write = write;
+		}
+
+		// Called once this was dequeued and the lock taken on its behalf
+		void grant() {
+			Guard guard = new Guard(write);
+			if (!setResult(guard)) { // cancelled while being granted
+				guard.release();
+			}
+		}
+
+		@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
+			super.onCancelled(exception, mayInterruptIfRunning);
+			onWaiterCancelled(this);
+		}
+	}
+
+	// The result of a chain run under a lock, which releases the lock once the chain completes and its body has
+	// stopped running.
+	private static final class GuardedChain<O> extends SingleParentImmediateListenerFuture<O, O> {
+		final Body<O> body;
+		private final Future<Guard> acquisition;
+		// null until the lock is granted, then the Guard, then CHAIN_DONE
+		volatile @Nullable Object guard = null;
+		// the lock is released when both the chain is done and the body has returned, or won't ever run
+		volatile int unfinished = 2;
+		// 1 once the chain's completion has counted towards unfinished
+		volatile int chainFinished = 0;
+
+		GuardedChain(Body<O> body, Future<Guard> acquisition) {
+			super(body);
+			this.body = body;
+			this.acquisition = acquisition;
+			body.owner = this;
+			body.setListener(this);
+		}
+
+		// Returns false, after releasing the guard, if this already completed, so the chain mustn't run.
+		boolean holdUntilDone(Guard guard) {
+			if (atomicChainGuard.compareAndSet(this, null, guard)) {
+				return true;
+			}
+			guard.release();
+			return false;
+		}
+
+		@Override protected void execute() {
+			Future<? extends O> chain = checkNotNull(getParent());
+			// the body has normally returned by now, so the lock is released before the result's published
+			onChainFinished();
+			if (chain.isSuccessful()) {
+				setResult(chain.resultNow());
+			} else {
+				setException(chain.exceptionNow());
+			}
+		}
+
+		// This also runs if this is cancelled directly, in which case #execute doesn't.
+		@CallSuper @Override protected void afterDone(
+				@Nullable O result, @Nullable Throwable exception, boolean mayInterruptIfRunning, FutureListener<? super O> listener)
+		{
+			super.afterDone(result, exception, mayInterruptIfRunning, listener);
+			onChainFinished();
+		}
+
+		private void onChainFinished() {
+			if (atomicChainFinished.compareAndSet(this, 0, 1)) {
+				onFinished();
+			}
+		}
+
+		void onFinished() {
+			if (atomicUnfinished.decrementAndGet(this) != 0) {
+				return;
+			}
+			Object guard = atomicChainGuard.getAndSet(this, CHAIN_DONE);
+			if (guard instanceof Guard) {
+				((Guard) guard).release();
+			}
+		}
+
+		@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
+			super.onCancelled(exception, mayInterruptIfRunning);
+			acquisition.cancel(exception, mayInterruptIfRunning); // stop waiting for the lock
+		}
+	}
+
+	// Runs the task, and tells its GuardedChain once the task has returned, or once it's completed without running.
+	private static final class Body<O> extends FutureAsyncCallable<O> {
+		private final AsyncCallable<O> task;
+		@Nullable GuardedChain<O> owner; // set before this can run or complete
+		volatile int state = BODY_QUEUED;
+
+		Body(AsyncCallable<O> task) {
+			super(task);
+			this.task = task;
+		}
+
+		@CallSuper @Override protected boolean startRunning() {
+			return super.startRunning() && atomicBodyState.compareAndSet(this, BODY_QUEUED, BODY_RUNNING);
+		}
+
+		// Calls the task itself, rather than through super, so the owner hears it returned before its result arrives
+		@Override protected void execute() {
+			Future<? extends O> chain;
+			try {
+				chain = task.call();
+			} finally {
+				state = BODY_DONE;
+				checkNotNull(owner).onFinished();
+			}
+			setResult(chain);
+		}
+
+		@CallSuper @Override protected void afterDone(
+				@Nullable O result, @Nullable Throwable exception, boolean mayInterruptIfRunning, FutureListener<? super O> listener)
+		{
+			super.afterDone(result, exception, mayInterruptIfRunning, listener);
+			if (atomicBodyState.compareAndSet(this, BODY_QUEUED, BODY_DONE)) { // so it won't ever run
+				checkNotNull(owner).onFinished();
+			}
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import androidx.annotation.NonNull;
+import com.mpd.concurrent.asyncContext.AsyncContext;
+import com.mpd.concurrent.executors.Executor.RunnablePriority;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.atomic.AbstractFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A counting semaphore whose acquisitions are futures, so waiting for permits never blocks a thread.
+ *
+ * <p>Acquisitions may take any number of permits, such as the pixel count of an image to decode. Waiters are granted
+ * permits in {@link RunnablePriority} order, and in FIFO order within a priority. The next waiter blocks everyone
+ * behind it until enough permits are free for it, so large acquisitions aren't starved by a stream of small ones.
+ *
+ * <p>Cancelling an acquisition that's still waiting unlinks it in O(1). An acquisition that's granted permits after it
+ * was cancelled hands them straight back, so permits never leak.
+ */
+public class AsyncSemaphore {
+	private static final RunnablePriority[] PRIORITIES = RunnablePriority.values();
+	private static final AtomicIntegerFieldUpdater<Permit> atomicReleased =
+			AtomicIntegerFieldUpdater.newUpdater(Permit.class, "released");
+
+	private final int maxPermits;
+	// waiters, as a doubly linked list per priority, indexed by the priority's ordinal. Guarded by itself.
+	private final WaiterList[] waiters = new WaiterList[PRIORITIES.length];
+	private int availablePermits;
+	private int waiterCount = 0;
+
+	public AsyncSemaphore(int permits) {
+		if (permits < 1) {
+			throw new IllegalArgumentException("permits must be positive, but was " + permits);
+		}
+		this.maxPermits = permits;
+		this.availablePermits = permits;
+		for (int i = 0; i < waiters.length; i++) {
+			waiters[i] = new WaiterList();
+		}
+	}
+
+	public int getMaxPermits() {
+		return maxPermits;
+	}
+
+	public int getAvailablePermits() {
+		synchronized (waiters) {
+			return availablePermits;
+		}
+	}
+
+	public int getQueueLength() {
+		synchronized (waiters) {
+			return waiterCount;
+		}
+	}
+
+	// Waits at the current AsyncContext's priority
+	public Future<Permit> acquire(int permits) {
+		return acquire(permits,
+				AsyncContext.getCurrentAsyncContext().getOrDefault(RunnablePriority.class, RunnablePriority.PRIORITY_DEFAULT));
+	}
+
+	public Future<Permit> acquire(int permits, RunnablePriority priority) {
+		checkPermits(permits);
+		checkNotNull(priority);
+		Waiter waiter;
+		synchronized (waiters) {
+			if (waiterCount == 0 && availablePermits >= permits) {
+				availablePermits -= permits;
+				return Futures.immediateFuture(new Permit(permits));
+			}
+			waiter = new Waiter(permits, priority);
+			waiters[priority.ordinal()].add(waiter);
+			waiterCount++;
+		}
+		return waiter;
+	}
+
+	// Returns null, rather than waiting, if the permits aren't free, or other acquisitions are already waiting.
+	public @Nullable Permit tryAcquire(int permits) {
+		checkPermits(permits);
+		synchronized (waiters) {
+			if (waiterCount > 0 || availablePermits < permits) {
+				return null;
+			}
+			availablePermits -= permits;
+		}
+		return new Permit(permits);
+	}
+
+	private void checkPermits(int permits) {
+		if (permits < 1 || permits > maxPermits) {
+			throw new IllegalArgumentException("permits " + permits + " must be between 1 and " + maxPermits);
+		}
+	}
+
+	private void release(int permits) {
+		List<Waiter> granted;
+		synchronized (waiters) {
+			availablePermits += permits;
+			granted = grantLocked();
+		}
+		completeGranted(granted);
+	}
+
+	// Unlinks the waiters that the free permits now cover, in order, and takes their permits.
+	private List<Waiter> grantLocked() {
+		List<Waiter> granted = new ArrayList<>();
+		for (WaiterList list : waiters) {
+			for (Waiter waiter = list.head; waiter != null; waiter = list.head) {
+				if (waiter.permits > availablePermits) {
+					return granted;
+				}
+				availablePermits -= waiter.permits;
+				list.remove(waiter);
+				waiterCount--;
+				granted.add(waiter);
+			}
+		}
+		return granted;
+	}
+
+	// Completes waiters outside the lock, since their listeners may run inline
+	private static void completeGranted(List<Waiter> granted) {
+		for (int i = 0; i < granted.size(); i++) {
+			granted.get(i).grant();
+		}
+	}
+
+	private void onWaiterCancelled(Waiter waiter) {
+		List<Waiter> granted;
+		synchronized (waiters) {
+			if (!waiter.linked) {
+				return; // already granted, so #grant hands the permits back
+			}
+			waiters[waiter.priority.ordinal()].remove(waiter);
+			waiterCount--;
+			// the cancelled waiter may have been blocking smaller ones behind it
+			granted = grantLocked();
+		}
+		completeGranted(granted);
+	}
+
+	void toString(StringBuilder sb, boolean includeState) {
+		sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
+		if (includeState) {
+			synchronized (waiters) {
+				sb.append("[availablePermits=")
+						.append(availablePermits)
+						.append(", maxPermits=")
+						.append(maxPermits)
+						.append(", waiters=")
+						.append(waiterCount)
+						.append(']');
+			}
+		}
+	}
+
+	@NonNull @Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		toString(sb, /* includeState=*/ true);
+		return sb.toString();
+	}
+
+	/** Permits held from an {@link AsyncSemaphore}, until they're released. Releasing more than once does nothing. */
+	public final class Permit implements AutoCloseable {
+		private final int permits;
+		volatile int released = 0;
+
+		Permit(int permits) {
+			this.permits = permits;
+		}
+
+		public int getPermits() {
+			return permits;
+		}
+
+		public AsyncSemaphore getSemaphore() {
+			return AsyncSemaphore.this;
+		}
+
+		public void release() {
+			if (atomicReleased.compareAndSet(this, 0, 1)) {
+				AsyncSemaphore.this.release(permits);
+			}
+		}
+
+		@Override public void close() {
+			release();
+		}
+
+		@NonNull @Override public String toString() {
+			return "Permit[permits=" + permits + ", released=" + (released != 0) + ", semaphore=" + AsyncSemaphore.this + ']';
+		}
+	}
+
+	private final class Waiter extends AbstractFuture<Permit> {
+		final int permits;
+		final RunnablePriority priority;
+		// links are guarded by the semaphore's lock
+		@Nullable Waiter prev = null;
+		@Nullable Waiter next = null;
+		boolean linked = false;
+
+		Waiter(int permits, RunnablePriority priority) {
+			this.permits = permits;
+			this.priority = priority;
+		}
+
+		// Called once this was unlinked and its permits taken
+		void grant() {
+			Permit permit = new Permit(permits);
+			if (!setResult(permit)) { // cancelled while being granted
+				permit.release();
+			}
+		}
+
+		@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
+			super.onCancelled(exception, mayInterruptIfRunning);
+			onWaiterCancelled(this);
+		}
+	}
+
+	private static final class WaiterList {
+		@Nullable Waiter head = null;
+		@Nullable Waiter tail = null;
+
+		void add(Waiter waiter) {
+			waiter.prev = tail;
+			if (tail == null) {
+				head = waiter;
+			} else {
+				tail.next = waiter;
+			}
+			tail = waiter;
+			waiter.linked = true;
+		}
+
+		void remove(Waiter waiter) {
+			if (waiter.prev == null) {
+				head = waiter.next;
+			} else {
+				waiter.prev.next = waiter.next;
+			}
+			if (waiter.next == null) {
+				tail = waiter.prev;
+			} else {
+				waiter.next.prev = waiter.prev;
+			}
+			waiter.prev = null;
+			waiter.next = null;
+			waiter.linked = false;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.mpd.concurrent.executors;
+
+import androidx.annotation.NonNull;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.executors.locked.DirectExecutor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.SchedulableFuture;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Holds scheduled tasks until their {@link SchedulableFuture#getSystemNanoTime()}, and then submits each directly to
+ * the executor it was scheduled on.
+ *
+ * <p>A single daemon thread waits on a {@link DelayQueue}, so scheduled work doesn't depend on any looper being
+ * responsive. The thread is started by the first scheduled task. Tasks that complete (usually by being cancelled) while
+ * waiting are dropped instead of submitted. Tasks scheduled on a {@link DirectExecutor} are submitted to the
+ * {@link com.mpd.concurrent.futures.FutureConfig#getDefaultExecutor} instead, so they can't stall the thread. If an
+ * executor rejects or throws, its task fails, and the thread carries on with the next one.
+ */
+public class DelayScheduler {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	private static final int STATE_INIT = 0;
+	private static final int STATE_STARTED = 1;
+	private static final int STATE_SHUTDOWN = 2;
+	private static final AtomicIntegerFieldUpdater<DelayScheduler> atomicState =
+			AtomicIntegerFieldUpdater.newUpdater(DelayScheduler.class, "state");
+
+	private final String name;
+	private final DelayQueue<ScheduledTask> queue = new DelayQueue<>();
+	private volatile int state = STATE_INIT;
+	private volatile Thread worker;
+
+	public DelayScheduler(String name) {
+		this.name = name;
+	}
+
+	public <O> SchedulableFuture<O> schedule(SchedulableFuture<O> task, Executor executor) {
+		start();
+		// a direct executor would run the task on, and delay every other task behind, the scheduler's only thread
+		Executor target = executor instanceof DirectExecutor ? Future.futureConfig.getDefaultExecutor() : executor;
+		queue.add(new ScheduledTask(task, target));
+		return task;
+	}
+
+	// Stops the scheduler's thread. Tasks that are still waiting are never submitted.
+	public void stop() {
+		int oldState = atomicState.getAndSet(this, STATE_SHUTDOWN);
+		Thread worker = this.worker;
+		if (oldState == STATE_STARTED && worker != null) {
+			worker.interrupt();
+		}
+	}
+
+	private void start() {
+		int state = atomicState.get(this);
+		if (state == STATE_STARTED) {
+			return;
+		} else if (state == STATE_SHUTDOWN) {
+			throw new RejectedExecutionException(this + " was already stopped");
+		} else if (atomicState.compareAndSet(this, STATE_INIT, STATE_STARTED)) {
+			Thread thread = new Thread(this::workerRun, name);
+			thread.setDaemon(true);
+			worker = thread;
+			thread.start();
+		}
+	}
+
+	private void workerRun() {
+		while (atomicState.get(this) == STATE_STARTED) {
+			ScheduledTask next;
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				continue; // re-check the state
+			}
+			try {
+				next.submit();
+			} catch (Throwable e) { // a broken executor mustn't kill the only thread that submits scheduled tasks
+				log.atFine().withCause(e).log("%s threw submitting %s", next.executor, next.task);
+				next.fail(e);
+				Future.futureConfig.onUnhandledException(e);
+			}
+		}
+		log.atFine().log("%s stopped with %d tasks still waiting", this, queue.size());
+	}
+
+	@NonNull @Override public String toString() {
+		return getClass().getSimpleName() + "[" + name + "]";
+	}
+
+	private static final class ScheduledTask implements Delayed {
+		private final SchedulableFuture<?> task;
+		private final Executor executor;
+
+		ScheduledTask(SchedulableFuture<?> task, Executor executor) {
+			this.task = task;
+			this.executor = executor;
+		}
+
+		void submit() {
+			if (task.isDone()) {
+				log.atFinest().log("%s completed while waiting to be scheduled, so not submitting it", task);
+				return;
+			}
+			try {
+				executor.submit(task);
+			} catch (RejectedExecutionException e) {
+				log.atFinest().log("%s rejected scheduled task %s", executor, task);
+				fail(e);
+			}
+		}
+
+		void fail(Throwable exception) {
+			if (!task.isDone()) {
+				task.setException(exception);
+			}
+		}
+
+		@Override public long getDelay(TimeUnit unit) {
+			return task.getDelay(unit);
+		}
+
+		@Override public int compareTo(Delayed other) {
+			return task.compareTo(other instanceof ScheduledTask ? ((ScheduledTask) other).task : other);
+		}
+
+		@NonNull @Override public String toString() {
+			return "ScheduledTask[" + task + " on " + executor + "]";
+		}
+	}
+}
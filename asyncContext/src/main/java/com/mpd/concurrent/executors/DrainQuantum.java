@@ -0,0 +1,71 @@
+package com.mpd.concurrent.executors;
+
+import androidx.annotation.NonNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much queued work a thread that just finished a serialized task may run inline, before handing the rest back to
+ * the delegate executor.
+ *
+ * <p>Running queued tasks inline saves a round trip through the delegate's queue per task, but a thread that never hands
+ * back starves the delegate's other work. A quantum caps it by task count and by time, whichever runs out first.
+ */
+public final class DrainQuantum {
+	public static final int DEFAULT_MAX_TASKS = 32;
+	public static final long DEFAULT_MAX_TIME_MS = 2;
+	// hands every task back to the delegate, so each runs with a fresh delegate submission
+	public static final DrainQuantum ONE_TASK = new DrainQuantum(1, Long.MAX_VALUE);
+	public static final DrainQuantum DEFAULT =
+			new DrainQuantum(DEFAULT_MAX_TASKS, TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_TIME_MS));
+
+	private final int maxTasks;
+	private final long maxNanos;
+
+	private DrainQuantum(int maxTasks, long maxNanos) {
+		this.maxTasks = maxTasks;
+		this.maxNanos = maxNanos;
+	}
+
+	// Factory methods
+	public static DrainQuantum of(int maxTasks, long maxTime, TimeUnit unit) {
+		if (maxTasks < 1 || maxTime <= 0) {
+			throw new IllegalArgumentException("maxTasks "
+					+ maxTasks
+					+ " and maxTime "
+					+ maxTime
+					+ " must be positive");
+		}
+		return new DrainQuantum(maxTasks, unit.toNanos(maxTime));
+	}
+
+	public static DrainQuantum ofTasks(int maxTasks) {
+		if (maxTasks < 1) {
+			throw new IllegalArgumentException("maxTasks must be positive, but was " + maxTasks);
+		}
+		return new DrainQuantum(maxTasks, Long.MAX_VALUE);
+	}
+
+	public int getMaxTasks() {
+		return maxTasks;
+	}
+
+	public long getMaxTime(TimeUnit unit) {
+		return maxNanos == Long.MAX_VALUE ? Long.MAX_VALUE : unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+	}
+
+	// The nanoTime at which a drain that started now has to hand back, or Long.MAX_VALUE for no time limit
+	long deadlineNanos() {
+		return maxNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + maxNanos;
+	}
+
+	// Whether a drain that has already run tasksRun tasks may run another
+	boolean allowsAnother(int tasksRun, long deadlineNanos) {
+		return tasksRun < maxTasks && (deadlineNanos == Long.MAX_VALUE || deadlineNanos - System.nanoTime() > 0);
+	}
+
+	@NonNull @Override public String toString() {
+		return "DrainQuantum[maxTasks=" + maxTasks + ", maxTimeUs=" + (maxNanos == Long.MAX_VALUE
+				? "unlimited"
+				: TimeUnit.NANOSECONDS.toMicros(maxNanos)) + ']';
+	}
+}
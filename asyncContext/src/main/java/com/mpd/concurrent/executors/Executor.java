@@ -12,22 +12,26 @@ import com.mpd.concurrent.asyncContext.AsyncContextScope.DeferredContextScope;
 import com.mpd.concurrent.executors.locked.MpdAsJavaExecutor;
 import com.mpd.concurrent.futures.Future;
 import com.mpd.concurrent.futures.Future.AsyncCheckedException;
-import com.mpd.concurrent.futures.FutureListener;
+import com.mpd.concurrent.futures.Futures;
 import com.mpd.concurrent.futures.SchedulableFuture;
 import com.mpd.concurrent.futures.SubmittableFuture;
-import com.mpd.concurrent.futures.atomic.AbstractListenerFuture;
 import com.mpd.concurrent.futures.atomic.FutureAsyncCallable;
 import com.mpd.concurrent.futures.atomic.FutureCallable;
 import com.mpd.concurrent.futures.atomic.FutureRunnable;
+import com.mpd.concurrent.futures.atomic.LazyFuture;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.lang.ref.WeakReference;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -96,6 +100,46 @@ public interface Executor extends AutoCloseable {
 		return execute(new FutureAsyncCallable<>(task));
 	}
 
+	// Doesn't submit the task until a consumer sets a listener on the result. See LazyFuture.
+	default <O> Future<O> submitLazy(Callable<O> task) {
+		return new LazyFuture<>(() -> submit(task));
+	}
+
+	default <O> Future<O> submitLazyAsync(AsyncCallable<O> task) {
+		return new LazyFuture<>(() -> submitAsync(task));
+	}
+
+	/**
+	 * Executes every task, in order, without setting their listeners. Tasks this rejects fail with a
+	 * {@link RejectedExecutionException}, rather than it being thrown.
+	 *
+	 * <p>Executors override this to enqueue the whole batch at once, and wake only as many threads as it needs.
+	 */
+	default void executeBatch(Collection<? extends SubmittableFuture<?>> tasks) {
+		for (SubmittableFuture<?> task : tasks) {
+			try {
+				execute(task);
+			} catch (RejectedExecutionException e) {
+				task.setException(e);
+			}
+		}
+	}
+
+	// The result is the listener of every task, and succeeds once they all have.
+	default Future<Void> executeAll(Collection<? extends SubmittableFuture<?>> tasks) {
+		executeBatch(tasks);
+		return Futures.whenAllSucceeded(tasks);
+	}
+
+	default <O> Future<List<O>> submitAll(Collection<? extends Callable<O>> tasks) {
+		List<FutureCallable<O>> futures = new ArrayList<>(tasks.size());
+		for (Callable<O> task : tasks) {
+			futures.add(new FutureCallable<>(task));
+		}
+		executeBatch(futures);
+		return Futures.allAsList(futures);
+	}
+
 	@Deprecated default void execute(Runnable task) {
 		if (task instanceof SubmittableFuture<?>) {
 			execute((SubmittableFuture<?>) task);
@@ -112,26 +156,11 @@ public interface Executor extends AutoCloseable {
 		execute(future);
 	}
 
+	// Waits on FutureConfig#getDelayScheduler's thread, and then submits the task to this executor
 	default <O> SchedulableFuture<O> schedule(SchedulableFuture<O> task) {
 		long delayMs = task.getDelay(TimeUnit.MILLISECONDS);
 		Preconditions.checkArgument(delayMs > 0);
-		FutureRunnable<Void> delayed = new FutureRunnable<>(() -> {}, null, delayMs, TimeUnit.MILLISECONDS);
-		if (task instanceof AbstractListenerFuture) {
-			delayed.setListener((AbstractListenerFuture<O>) task);
-		} else {
-			delayed.setListener(new FutureListener<Void>() {
-				@Override public void onFutureSucceeded(Future<? extends Void> future, Void result) {
-					Executor.this.submit(task);
-				}
-
-				@Override
-				public void onFutureFailed(Future<? extends Void> future, Throwable exception, boolean mayInterruptIfRunning) {
-					task.setException(exception, mayInterruptIfRunning);
-				}
-			});
-		}
-		Future.futureConfig.getDelegateScheduledExecutor().schedule(delayed, delayMs, TimeUnit.MILLISECONDS);
-		return task;
+		return Future.futureConfig.getDelayScheduler().schedule(task, this);
 	}
 
 	@RequiresApi(api = VERSION_CODES.O) default Future<?> schedule(Runnable task, Instant time) {
@@ -199,6 +228,14 @@ public interface Executor extends AutoCloseable {
 
 	@ThreadInExecutorEnum int ownsThread(Thread thread);
 
+	// How many continuations may run inline on a thread this owns before they're submitted. See FutureConfig.
+	// An inline continuation runs inside the task that completed its parent, so it isn't a task of its own: it skips
+	// ExecutorListener#beforeExecute and #afterExecute, isn't counted in ThreadPoolExecutor's runnable count, and jumps
+	// ahead of queued work regardless of the PriorityRunQueue's ordering. Return 0 where those must see every task.
+	default int getMaxInlineContinuations() {
+		return Future.futureConfig.getMaxInlineContinuations();
+	}
+
 	boolean isIdleNow();
 
 	void registerListener(ExecutorListener onIdleCallback);
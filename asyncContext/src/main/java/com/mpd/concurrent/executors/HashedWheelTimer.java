@@ -0,0 +1,308 @@
+package com.mpd.concurrent.executors;
+
+import androidx.annotation.NonNull;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.futures.Future;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A timer for large numbers of short-lived timeouts, most of which are cancelled before they fire.
+ *
+ * <p>Timeouts are hashed into a ring of buckets by deadline, with one bucket per tick. Adding and cancelling a timeout
+ * is O(1) and never blocks: new and cancelled timeouts are queued, and the timer's own thread moves them into and out
+ * of the buckets once per tick. A cancelled timeout drops its task immediately, and is unlinked by the next tick.
+ * Timeouts fire up to one tick late.
+ *
+ * <p>Tasks run on the timer's thread, so they should be quick. The thread is started by the first timeout, and parks
+ * without ticking while there are no timeouts.
+ */
+public class HashedWheelTimer {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	private static final int WORKER_INIT = 0;
+	private static final int WORKER_STARTED = 1;
+	private static final int WORKER_SHUTDOWN = 2;
+	private static final AtomicIntegerFieldUpdater<HashedWheelTimer> atomicWorkerState =
+			AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.class, "workerState");
+
+	private final String name;
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final ConcurrentLinkedQueue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	private final CountDownLatch started = new CountDownLatch(1);
+	private volatile int workerState = WORKER_INIT;
+	private volatile @Nullable Thread worker;
+	private volatile boolean workerIdle = false;
+	// deadlines are relative to this, so that they fit in a long
+	private volatile long startNanos;
+	// only accessed by the worker
+	private int bucketedTimeouts = 0;
+
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("tickDuration must be positive, but was " + tickDuration);
+		}
+		if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30, but was " + ticksPerWheel);
+		}
+		this.name = name;
+		this.tickNanos = unit.toNanos(tickDuration);
+		int wheelSize = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+		wheelSize = Math.max(wheelSize, 1);
+		this.wheel = new Bucket[wheelSize];
+		for (int i = 0; i < wheelSize; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheelSize - 1;
+	}
+
+	/**
+	 * Runs the task on the timer's thread after the delay, unless the timeout is cancelled first.
+	 */
+	public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+		start();
+		long delayNanos = unit.toNanos(delay);
+		long deadline = System.nanoTime() - startNanos + delayNanos;
+		if (delayNanos > 0 && deadline < 0) { // overflowed
+			deadline = Long.MAX_VALUE;
+		}
+		Timeout timeout = new Timeout(this, task, deadline);
+		pendingTimeouts.add(timeout);
+		Thread worker = this.worker;
+		if (workerIdle && worker != null) {
+			LockSupport.unpark(worker);
+		}
+		return timeout;
+	}
+
+	// Stops the timer's thread. Timeouts that haven't fired yet never will.
+	public void stop() {
+		int oldState = atomicWorkerState.getAndSet(this, WORKER_SHUTDOWN);
+		Thread worker = this.worker;
+		if (oldState == WORKER_STARTED && worker != null) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	private void start() {
+		int state = atomicWorkerState.get(this);
+		if (state == WORKER_STARTED && started.getCount() == 0) { // else the starter may not have set startNanos yet
+			return;
+		} else if (state == WORKER_SHUTDOWN) {
+			throw new IllegalStateException(this + " was already stopped");
+		} else if (atomicWorkerState.compareAndSet(this, WORKER_INIT, WORKER_STARTED)) {
+			startNanos = System.nanoTime();
+			Thread thread = new Thread(this::workerRun, name);
+			thread.setDaemon(true);
+			worker = thread;
+			started.countDown();
+			thread.start();
+			return;
+		}
+		// another thread is starting the worker. Wait for it to set startNanos.
+		boolean interrupted = false;
+		while (started.getCount() > 0) {
+			try {
+				started.await();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void workerRun() {
+		long tick = 0;
+		while (atomicWorkerState.get(this) == WORKER_STARTED) {
+			if (bucketedTimeouts == 0 && pendingTimeouts.isEmpty()) {
+				parkUntilTimeoutAdded();
+				// every bucket is empty, so skip straight to the current tick
+				tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos);
+				continue;
+			}
+			if (!sleepUntilEndOfTick(tick)) {
+				break;
+			}
+			removeCancelledTimeouts();
+			transferPendingTimeouts(tick);
+			wheel[(int) (tick & mask)].expireTimeouts(this);
+			tick++;
+		}
+		log.atFine().log("%s stopped", this);
+	}
+
+	private void parkUntilTimeoutAdded() {
+		workerIdle = true;
+		// re-check after publishing workerIdle, so a concurrent #newTimeout either is seen here or unparks us
+		while (pendingTimeouts.isEmpty() && atomicWorkerState.get(this) == WORKER_STARTED) {
+			LockSupport.park(this);
+		}
+		workerIdle = false;
+	}
+
+	private boolean sleepUntilEndOfTick(long tick) {
+		long endOfTick = (tick + 1) * tickNanos;
+		while (true) {
+			long sleepNanos = endOfTick - (System.nanoTime() - startNanos);
+			if (sleepNanos <= 0) {
+				return true;
+			} else if (atomicWorkerState.get(this) != WORKER_STARTED) {
+				return false;
+			}
+			LockSupport.parkNanos(this, sleepNanos);
+		}
+	}
+
+	private void removeCancelledTimeouts() {
+		Timeout timeout;
+		while ((timeout = cancelledTimeouts.poll()) != null) {
+			Bucket bucket = timeout.bucket;
+			if (bucket != null) { // else it's still pending, and will be dropped when transferred
+				bucket.remove(timeout);
+				bucketedTimeouts--;
+			}
+		}
+	}
+
+	private void transferPendingTimeouts(long tick) {
+		Timeout timeout;
+		while ((timeout = pendingTimeouts.poll()) != null) {
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			long expiryTick = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+			// timeouts that should have already expired go in the current bucket
+			long bucketTick = Math.max(expiryTick, tick);
+			wheel[(int) (bucketTick & mask)].add(timeout);
+			bucketedTimeouts++;
+		}
+	}
+
+	@NonNull @Override public String toString() {
+		return getClass().getSimpleName() + "[" + name + "]";
+	}
+
+	public static final class Timeout {
+		private static final int STATE_PENDING = 0;
+		private static final int STATE_CANCELLED = 1;
+		private static final int STATE_EXPIRED = 2;
+		private static final AtomicIntegerFieldUpdater<Timeout> atomicState =
+				AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+		private final HashedWheelTimer timer;
+		private final long deadline;
+		private volatile int state = STATE_PENDING;
+		private volatile @Nullable Runnable task;
+		// only accessed by the worker
+		private long remainingRounds;
+		private @Nullable Timeout next;
+		private @Nullable Timeout prev;
+		private @Nullable Bucket bucket;
+
+		Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * @return true if this cancelled the timeout, or false if it had already fired or been cancelled
+		 */
+		public boolean cancel() {
+			if (!atomicState.compareAndSet(this, STATE_PENDING, STATE_CANCELLED)) {
+				return false;
+			}
+			task = null;
+			timer.cancelledTimeouts.add(this);
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return atomicState.get(this) == STATE_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return atomicState.get(this) == STATE_EXPIRED;
+		}
+
+		private void expire() {
+			if (!atomicState.compareAndSet(this, STATE_PENDING, STATE_EXPIRED)) {
+				return;
+			}
+			Runnable task = this.task;
+			this.task = null;
+			try {
+				if (task != null) {
+					task.run();
+				}
+			} catch (RuntimeException e) {
+				log.atFinest().log("%s threw %s when its timeout expired", task, e);
+				Future.futureConfig.onUnhandledException(e);
+			}
+		}
+
+		@NonNull @Override public String toString() {
+			return "Timeout[" + task + " state=" + state + "]";
+		}
+	}
+
+	// A doubly linked list of the timeouts that expire on one tick of the wheel. Only accessed by the worker.
+	private static final class Bucket {
+		private @Nullable Timeout head;
+		private @Nullable Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			Timeout next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (next != null) {
+				next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+
+		void expireTimeouts(HashedWheelTimer timer) {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.remainingRounds <= 0) {
+					remove(timeout);
+					timer.bucketedTimeouts--;
+					timeout.expire();
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+	}
+}
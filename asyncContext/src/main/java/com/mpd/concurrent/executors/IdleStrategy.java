@@ -0,0 +1,53 @@
+package com.mpd.concurrent.executors;
+
+/**
+ * What a worker thread does when it finds no work.
+ *
+ * <p>Parking is cheapest on CPU and battery, but waking a parked thread costs tens of microseconds per task. Spinning
+ * or yielding for a while first lets bursts of short tasks run without that latency, at the cost of burning a core
+ * while idle.
+ */
+public interface IdleStrategy {
+	int DEFAULT_SPINS = 100;
+	int DEFAULT_YIELDS = 10;
+
+	/**
+	 * Called each time a worker finds no work, with how many times in a row it's found none.
+	 *
+	 * @return true if the worker should poll again after this returns, or false if it should park until new work is
+	 * 		submitted.
+	 */
+	boolean idle(int emptyPolls);
+
+	// Factory methods
+	static IdleStrategy busySpin() {
+		return emptyPolls -> true;
+	}
+
+	static IdleStrategy spinYieldPark() {
+		return spinYieldPark(DEFAULT_SPINS, DEFAULT_YIELDS);
+	}
+
+	static IdleStrategy spinYieldPark(int maxSpins, int maxYields) {
+		if (maxSpins < 0 || maxYields < 0) {
+			throw new IllegalArgumentException("maxSpins "
+					+ maxSpins
+					+ " and maxYields "
+					+ maxYields
+					+ " must not be negative");
+		}
+		return emptyPolls -> {
+			if (emptyPolls < maxSpins) {
+				return true;
+			} else if (emptyPolls - maxSpins < maxYields) {
+				Thread.yield();
+				return true;
+			}
+			return false;
+		};
+	}
+
+	static IdleStrategy parkOnly() {
+		return emptyPolls -> false;
+	}
+}
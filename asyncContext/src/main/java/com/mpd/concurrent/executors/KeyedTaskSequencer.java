@@ -0,0 +1,96 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.NonNull;
+import com.mpd.concurrent.futures.SubmittableFuture;
+import com.mpd.concurrent.futures.atomic.FutureCallable;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes future-chains per key, such as per account or per file, with every key's chains sharing one delegate.
+ *
+ * Chains with the same key run one at a time, in submission order, while chains with different keys run concurrently.
+ * A key's lane is created when a chain is submitted for an idle key, and evicted as soon as its last chain completes,
+ * so idle keys hold no memory. Lanes are updated atomically in a {@link ConcurrentHashMap}, which only locks the
+ * lane's hash bin, so unrelated keys don't contend on one lock.
+ *
+ * Cancelling a result cancels its task, and frees its key for the next chain once the task's body has returned. A
+ * queued task whose result was cancelled is skipped.
+ */
+public class KeyedTaskSequencer<K> {
+	private final Executor delegate;
+	// only keys with a chain in flight have a lane
+	private final ConcurrentHashMap<K, Lane> lanes = new ConcurrentHashMap<>();
+
+	public KeyedTaskSequencer(Executor delegate) {
+		this.delegate = checkNotNull(delegate);
+	}
+
+	// The number of keys with a chain in flight
+	public int getActiveKeyCount() {
+		return lanes.size();
+	}
+
+	// The result completes once the task's chain has, and the key's next chain isn't started until then.
+	public <O> SubmittableFuture<O> submit(K key, SubmittableFuture<O> task) {
+		checkNotNull(key);
+		SequencedChain<O> chain = new SequencedChain<>(task, () -> onChainComplete(key));
+		boolean[] shouldSubmit = new boolean[1];
+		lanes.compute(key, (k, lane) -> {
+			if (lane != null) {
+				lane.queue.add(chain);
+				return lane;
+			} else if (chain.tryStart()) {
+				shouldSubmit[0] = true;
+				return new Lane();
+			} else { // the task was already done
+				return null;
+			}
+		});
+		if (shouldSubmit[0]) {
+			chain.submitTo(delegate);
+		}
+		return chain;
+	}
+
+	public <O> SubmittableFuture<O> submit(K key, Callable<O> task) {
+		return submit(key, new FutureCallable<>(task));
+	}
+
+	// A chain completed, so start the key's next chain, or evict its lane if there isn't one.
+	private void onChainComplete(K key) {
+		SequencedChain<?>[] next = new SequencedChain<?>[1];
+		lanes.computeIfPresent(key, (k, lane) -> {
+			// skip chains that were cancelled while queued
+			while ((next[0] = lane.queue.poll()) != null && !next[0].tryStart()) {}
+			return next[0] == null ? null : lane;
+		});
+		if (next[0] != null) {
+			next[0].submitTo(delegate);
+		}
+	}
+
+	void toString(StringBuilder sb, boolean includeState) {
+		sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
+		if (includeState) {
+			sb.append("[delegate=");
+			delegate.toString(sb, /*includeState=*/false);
+			sb.append(", activeKeys=").append(lanes.size()).append(']');
+		}
+	}
+
+	@NonNull @Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		toString(sb, /* includeState=*/ true);
+		return sb.toString();
+	}
+
+	// Only accessed inside ConcurrentHashMap#compute for its key, so needs no lock of its own
+	private static final class Lane {
+		// the key's chains waiting for the one in flight
+		final ArrayDeque<SequencedChain<?>> queue = new ArrayDeque<>();
+	}
+}
@@ -0,0 +1,367 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.NonNull;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A bounded multi-producer multi-consumer queue backed by a ring buffer.
+ *
+ * <p>Each slot has a sequence number that says whether it's ready to be written or read, so offering and polling are
+ * a single CAS on the tail or head, and never allocate. The head and tail are padded onto their own cache lines, so
+ * producers and consumers don't contend on them. {@link #take} and {@link #put} park until the queue is non-empty or
+ * non-full, and only then lock. Offering to a full queue returns false.
+ *
+ * <p>Removing an element replaces it with a marker that polls skip, so it keeps its slot, and counts against
+ * {@link #remainingCapacity}, until a poll passes it. {@link MpmcUnboundedArrayQueue} is the unbounded equivalent.
+ */
+public class MpmcArrayQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	public static final int DEFAULT_CAPACITY = 1024;
+	// replaces removed elements until a poll skips them
+	protected static final Object REMOVED = new Object();
+
+	protected final int capacity;
+	protected final int mask;
+	// holds E, or REMOVED
+	protected final AtomicReferenceArray<Object> elements;
+	// slot i is writable at sequence i + n * capacity, and readable at sequence i + n * capacity + 1
+	protected final AtomicLongArray sequences;
+	protected final PaddedIndex head = new PaddedIndex();
+	protected final PaddedIndex tail = new PaddedIndex();
+	// removed elements that polls haven't skipped yet
+	private final AtomicInteger removedCount = new AtomicInteger();
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition notEmpty = waitLock.newCondition();
+	private final Condition notFull = waitLock.newCondition();
+	// written while holding waitLock
+	private volatile int waitingConsumers = 0;
+	private volatile int waitingProducers = 0;
+
+	public MpmcArrayQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	// capacity is rounded up to a power of two
+	public MpmcArrayQueue(int capacity) {
+		if (capacity < 2 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("capacity must be between 2 and 2^30, but was " + capacity);
+		}
+		this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = this.capacity - 1;
+		this.elements = new AtomicReferenceArray<>(this.capacity);
+		this.sequences = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	@Override public boolean offer(E element) {
+		checkNotNull(element);
+		long index = PaddedIndex.atomicValue.get(tail);
+		while (true) {
+			int slot = (int) (index & mask);
+			long ready = sequences.get(slot) - index;
+			if (ready == 0) {
+				if (PaddedIndex.atomicValue.compareAndSet(tail, index, index + 1)) {
+					elements.lazySet(slot, element);
+					sequences.set(slot, index + 1); // publishes the element
+					break;
+				}
+				index = PaddedIndex.atomicValue.get(tail);
+			} else if (ready < 0) { // the consumer of the previous lap hasn't released it yet
+				return false;
+			} else { // another producer claimed it
+				index = PaddedIndex.atomicValue.get(tail);
+			}
+		}
+		if (waitingConsumers > 0) {
+			signal(notEmpty);
+		}
+		return true;
+	}
+
+	@Override public @Nullable E poll() {
+		E element = pollWithoutSignal();
+		if (element != null && waitingProducers > 0) {
+			signal(notFull);
+		}
+		return element;
+	}
+
+	protected @Nullable E pollWithoutSignal() {
+		long index = PaddedIndex.atomicValue.get(head);
+		while (true) {
+			int slot = (int) (index & mask);
+			long ready = sequences.get(slot) - (index + 1);
+			if (ready == 0) {
+				if (PaddedIndex.atomicValue.compareAndSet(head, index, index + 1)) {
+					Object element = takeSlot(index);
+					if (element != REMOVED) {
+						//noinspection unchecked
+						return (E) element;
+					}
+				}
+				index = PaddedIndex.atomicValue.get(head);
+			} else if (ready < 0) { // nothing published here yet
+				return null;
+			} else { // another consumer took it
+				index = PaddedIndex.atomicValue.get(head);
+			}
+		}
+	}
+
+	// Empties the slot of the index this consumer claimed, and releases it to the next lap's producer. Returns the
+	// element, or REMOVED. Swaps rather than reads, so that a concurrent #remove either sees it taken or wins.
+	protected final Object takeSlot(long index) {
+		int slot = (int) (index & mask);
+		Object element = elements.getAndSet(slot, null);
+		sequences.set(slot, index + capacity);
+		if (element == REMOVED) {
+			removedCount.decrementAndGet();
+		}
+		return element;
+	}
+
+	private void signal(Condition condition) {
+		waitLock.lock();
+		try {
+			condition.signal();
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	@Override public void put(E element) throws InterruptedException {
+		if (offer(element)) {
+			return;
+		}
+		waitLock.lockInterruptibly();
+		try {
+			waitingProducers++;
+			try {
+				// re-offer after publishing waitingProducers, so a concurrent #poll either makes room or signals us
+				while (!offer(element)) {
+					notFull.await();
+				}
+			} finally {
+				waitingProducers--;
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	@Override public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+		if (offer(element)) {
+			return true;
+		}
+		long remainingNanos = unit.toNanos(timeout);
+		waitLock.lockInterruptibly();
+		try {
+			waitingProducers++;
+			try {
+				while (!offer(element)) {
+					if (remainingNanos <= 0) {
+						return false;
+					}
+					remainingNanos = notFull.awaitNanos(remainingNanos);
+				}
+				return true;
+			} finally {
+				waitingProducers--;
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	@Override public E take() throws InterruptedException {
+		E element = poll();
+		if (element != null) {
+			return element;
+		}
+		waitLock.lockInterruptibly();
+		try {
+			waitingConsumers++;
+			try {
+				// re-poll after publishing waitingConsumers, so a concurrent #offer either is seen here or signals us
+				while ((element = poll()) == null) {
+					notEmpty.await();
+				}
+				return element;
+			} finally {
+				waitingConsumers--;
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	@Override public @Nullable E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E element = poll();
+		if (element != null) {
+			return element;
+		}
+		long remainingNanos = unit.toNanos(timeout);
+		waitLock.lockInterruptibly();
+		try {
+			waitingConsumers++;
+			try {
+				while ((element = poll()) == null) {
+					if (remainingNanos <= 0) {
+						return null;
+					}
+					remainingNanos = notEmpty.awaitNanos(remainingNanos);
+				}
+				return element;
+			} finally {
+				waitingConsumers--;
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	@Override public @Nullable E peek() {
+		retry:
+		while (true) {
+			long start = PaddedIndex.atomicValue.get(head);
+			for (long index = start; ; index++) {
+				int slot = (int) (index & mask);
+				if (sequences.get(slot) != index + 1) { // nothing published here yet
+					if (PaddedIndex.atomicValue.get(head) == start) {
+						return null;
+					}
+					continue retry;
+				}
+				Object element = elements.get(slot);
+				if (element == null || PaddedIndex.atomicValue.get(head) != start) {
+					continue retry; // a consumer took it while we looked, so look at the new head
+				} else if (element != REMOVED) {
+					//noinspection unchecked
+					return (E) element;
+				}
+			}
+		}
+	}
+
+	@Override public int size() {
+		return (int) Math.max(0, occupiedSlots() - removedCount.get());
+	}
+
+	// Removed elements that haven't been skipped yet still count, so that this is never wrongly true
+	@Override public boolean isEmpty() {
+		return PaddedIndex.atomicValue.get(tail) == PaddedIndex.atomicValue.get(head);
+	}
+
+	private long occupiedSlots() {
+		long occupied = PaddedIndex.atomicValue.get(tail) - PaddedIndex.atomicValue.get(head);
+		return Math.max(0, Math.min(occupied, capacity));
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	@Override public int remainingCapacity() {
+		return (int) (capacity - occupiedSlots());
+	}
+
+	@Override public boolean remove(@Nullable Object element) {
+		return element != null && removeMatching(element::equals, 1) > 0;
+	}
+
+	@Override public boolean removeIf(Predicate<? super E> filter) {
+		checkNotNull(filter);
+		return removeMatching(filter, Integer.MAX_VALUE) > 0;
+	}
+
+	// Marks up to maxRemoved matching elements as REMOVED, from head to tail, and returns how many it marked
+	private int removeMatching(Predicate<? super E> filter, int maxRemoved) {
+		int removed = 0;
+		long end = PaddedIndex.atomicValue.get(tail);
+		for (long index = PaddedIndex.atomicValue.get(head); index < end && removed < maxRemoved; index++) {
+			int slot = (int) (index & mask);
+			Object element = elements.get(slot);
+			//noinspection unchecked
+			if (element != null && element != REMOVED && filter.test((E) element)
+					&& elements.compareAndSet(slot, element, REMOVED))
+			{
+				removedCount.incrementAndGet();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	@Override public int drainTo(Collection<? super E> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override public int drainTo(Collection<? super E> collection, int maxElements) {
+		int drained = 0;
+		E element;
+		while (drained < maxElements && (element = poll()) != null) {
+			collection.add(element);
+			drained++;
+		}
+		return drained;
+	}
+
+	// A weakly consistent snapshot from head to tail, which may skip elements polled while iterating.
+	@Override public @NonNull Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private final long end = PaddedIndex.atomicValue.get(tail);
+			private long index = PaddedIndex.atomicValue.get(head);
+			private @Nullable E next = advance();
+
+			private @Nullable E advance() {
+				while (index < end) {
+					Object element = elements.get((int) (index++ & mask));
+					if (element != null && element != REMOVED) {
+						//noinspection unchecked
+						return (E) element;
+					}
+				}
+				return null;
+			}
+
+			@Override public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override public E next() {
+				E result = next;
+				if (result == null) {
+					throw new NoSuchElementException();
+				}
+				next = advance();
+				return result;
+			}
+		};
+	}
+
+	// An index padded to its own cache line, so the producers' tail and consumers' head don't false-share
+	protected static final class PaddedIndex {
+		static final AtomicLongFieldUpdater<PaddedIndex> atomicValue =
+				AtomicLongFieldUpdater.newUpdater(PaddedIndex.class, "value");
+
+		long p01, p02, p03, p04, p05, p06, p07;
+		volatile long value;
+		long p11, p12, p13, p14, p15, p16, p17;
+	}
+}
@@ -0,0 +1,332 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.NonNull;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An unbounded multi-producer multi-consumer queue backed by a linked list of fixed-size arrays.
+ *
+ * <p>Producers claim a slot in the tail chunk with one atomic increment, and consumers claim one in the head chunk with
+ * one CAS. So offering only allocates when the tail chunk fills, once per {@code chunkSize} elements, and a drained
+ * chunk is left for the garbage collector. Offering always succeeds. {@link #take} parks until the queue is non-empty,
+ * and only then locks.
+ *
+ * <p>A consumer that claims a slot before its producer has written it yields until it has, so a producer that's
+ * descheduled mid-offer can delay that one poll.
+ *
+ * <p>Removing an element replaces it with a marker that polls skip.
+ */
+public class MpmcUnboundedArrayQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+	// replaces removed elements until a poll skips them
+	protected static final Object REMOVED = new Object();
+	/**
+	 * @noinspection rawtypes
+	 */
+	private static final AtomicReferenceFieldUpdater<MpmcUnboundedArrayQueue, Chunk> atomicHeadChunk =
+			AtomicReferenceFieldUpdater.newUpdater(MpmcUnboundedArrayQueue.class, Chunk.class, "headChunk");
+	/**
+	 * @noinspection rawtypes
+	 */
+	private static final AtomicReferenceFieldUpdater<MpmcUnboundedArrayQueue, Chunk> atomicTailChunk =
+			AtomicReferenceFieldUpdater.newUpdater(MpmcUnboundedArrayQueue.class, Chunk.class, "tailChunk");
+
+	protected final int chunkSize;
+	// only moves forward once every slot in it has been claimed by a consumer
+	protected volatile Chunk headChunk;
+	// only moves forward once every slot in it has been claimed by a producer
+	private volatile Chunk tailChunk;
+	// removed elements that polls haven't skipped yet
+	private final AtomicInteger removedCount = new AtomicInteger();
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition notEmpty = waitLock.newCondition();
+	// written while holding waitLock
+	private volatile int waitingConsumers = 0;
+
+	public MpmcUnboundedArrayQueue() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public MpmcUnboundedArrayQueue(int chunkSize) {
+		if (chunkSize < 2) {
+			throw new IllegalArgumentException("chunkSize must be at least 2, but was " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		headChunk = tailChunk = new Chunk(chunkSize);
+	}
+
+	@Override public boolean offer(E element) {
+		checkNotNull(element);
+		while (true) {
+			Chunk chunk = tailChunk;
+			// checked first, so that producers racing to a full chunk can't overflow its index
+			if (chunk.producerIndex < chunkSize) {
+				int index = Chunk.atomicProducerIndex.getAndIncrement(chunk);
+				if (index < chunkSize) {
+					chunk.elements.set(index, element);
+					break;
+				}
+			}
+			advanceTail(chunk);
+		}
+		if (waitingConsumers > 0) {
+			waitLock.lock();
+			try {
+				notEmpty.signal();
+			} finally {
+				waitLock.unlock();
+			}
+		}
+		return true;
+	}
+
+	// Links a new chunk after a full one if no other producer has yet, and moves the tail to it
+	private void advanceTail(Chunk full) {
+		Chunk next = full.next;
+		if (next == null) {
+			Chunk created = new Chunk(chunkSize);
+			next = Chunk.atomicNext.compareAndSet(full, null, created) ? created : full.next;
+		}
+		atomicTailChunk.compareAndSet(this, full, next);
+	}
+
+	@Override public @Nullable E poll() {
+		while (true) {
+			Chunk chunk = headChunk;
+			int index = chunk.consumerIndex;
+			if (index >= chunkSize) { // every slot's been claimed, so move on, unless no producer has yet
+				Chunk next = chunk.next;
+				if (next == null) {
+					return null;
+				}
+				atomicHeadChunk.compareAndSet(this, chunk, next);
+			} else if (index >= chunk.producerIndex) { // no producer has claimed this slot yet
+				return null;
+			} else if (Chunk.atomicConsumerIndex.compareAndSet(chunk, index, index + 1)) {
+				Object element = takeSlot(chunk, index);
+				if (element != REMOVED) {
+					//noinspection unchecked
+					return (E) element;
+				}
+			}
+		}
+	}
+
+	// Empties a slot this consumer claimed, once its producer has written it. Returns the element, or REMOVED. Swaps
+	// rather than reads, so that a concurrent #remove either sees it taken or wins.
+	protected final Object takeSlot(Chunk chunk, int index) {
+		while (chunk.elements.get(index) == null) {
+			Thread.yield();
+		}
+		Object element = chunk.elements.getAndSet(index, null);
+		if (element == REMOVED) {
+			removedCount.decrementAndGet();
+		}
+		return element;
+	}
+
+	@Override public void put(E element) {
+		offer(element);
+	}
+
+	@Override public boolean offer(E element, long timeout, TimeUnit unit) {
+		return offer(element);
+	}
+
+	@Override public E take() throws InterruptedException {
+		E element = poll();
+		if (element != null) {
+			return element;
+		}
+		waitLock.lockInterruptibly();
+		try {
+			waitingConsumers++;
+			try {
+				// re-poll after publishing waitingConsumers, so a concurrent #offer either is seen here or signals us
+				while ((element = poll()) == null) {
+					notEmpty.await();
+				}
+				return element;
+			} finally {
+				waitingConsumers--;
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	@Override public @Nullable E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E element = poll();
+		if (element != null) {
+			return element;
+		}
+		long remainingNanos = unit.toNanos(timeout);
+		waitLock.lockInterruptibly();
+		try {
+			waitingConsumers++;
+			try {
+				while ((element = poll()) == null) {
+					if (remainingNanos <= 0) {
+						return null;
+					}
+					remainingNanos = notEmpty.awaitNanos(remainingNanos);
+				}
+				return element;
+			} finally {
+				waitingConsumers--;
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	@Override public @Nullable E peek() {
+		for (E element : this) {
+			return element;
+		}
+		return null;
+	}
+
+	@Override public int size() {
+		long occupied = 0;
+		for (Chunk chunk = headChunk; chunk != null; chunk = chunk.next) {
+			occupied += Math.max(0, Math.min(chunk.producerIndex, chunkSize) - chunk.consumerIndex);
+		}
+		return (int) Math.max(0, Math.min(occupied - removedCount.get(), Integer.MAX_VALUE));
+	}
+
+	// Removed elements that haven't been skipped yet still count, so that this is never wrongly true
+	@Override public boolean isEmpty() {
+		for (Chunk chunk = headChunk; chunk != null; chunk = chunk.next) {
+			if (chunk.consumerIndex < Math.min(chunk.producerIndex, chunkSize)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override public boolean remove(@Nullable Object element) {
+		return element != null && removeMatching(element::equals, 1) > 0;
+	}
+
+	@Override public boolean removeIf(Predicate<? super E> filter) {
+		checkNotNull(filter);
+		return removeMatching(filter, Integer.MAX_VALUE) > 0;
+	}
+
+	// Marks up to maxRemoved matching elements as REMOVED, from head to tail, and returns how many it marked
+	private int removeMatching(Predicate<? super E> filter, int maxRemoved) {
+		int removed = 0;
+		for (Chunk chunk = headChunk; chunk != null && removed < maxRemoved; chunk = chunk.next) {
+			int end = Math.min(chunk.producerIndex, chunkSize);
+			for (int index = chunk.consumerIndex; index < end && removed < maxRemoved; index++) {
+				Object element = chunk.elements.get(index);
+				//noinspection unchecked
+				if (element != null && element != REMOVED && filter.test((E) element)
+						&& chunk.elements.compareAndSet(index, element, REMOVED))
+				{
+					removedCount.incrementAndGet();
+					removed++;
+				}
+			}
+		}
+		return removed;
+	}
+
+	@Override public int drainTo(Collection<? super E> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override public int drainTo(Collection<? super E> collection, int maxElements) {
+		int drained = 0;
+		E element;
+		while (drained < maxElements && (element = poll()) != null) {
+			collection.add(element);
+			drained++;
+		}
+		return drained;
+	}
+
+	// Weakly consistent from head to tail, which may skip elements polled while iterating, and those not yet written.
+	@Override public @NonNull Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private @Nullable Chunk chunk = headChunk;
+			private int index = chunk.consumerIndex;
+			private @Nullable E next = advance();
+
+			private @Nullable E advance() {
+				while (chunk != null) {
+					int end = Math.min(chunk.producerIndex, chunkSize);
+					while (index < end) {
+						Object element = chunk.elements.get(index++);
+						if (element != null && element != REMOVED) {
+							//noinspection unchecked
+							return (E) element;
+						}
+					}
+					chunk = (end == chunkSize) ? chunk.next : null;
+					index = 0;
+				}
+				return null;
+			}
+
+			@Override public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override public E next() {
+				E result = next;
+				if (result == null) {
+					throw new NoSuchElementException();
+				}
+				next = advance();
+				return result;
+			}
+		};
+	}
+
+	// A fixed-size array that's filled once and drained once. Its indexes are padded apart, so producers and consumers
+	// don't false-share.
+	protected static final class Chunk {
+		static final AtomicIntegerFieldUpdater<Chunk> atomicProducerIndex =
+				AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "producerIndex");
+		static final AtomicIntegerFieldUpdater<Chunk> atomicConsumerIndex =
+				AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "consumerIndex");
+		static final AtomicReferenceFieldUpdater<Chunk, Chunk> atomicNext =
+				AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+		// holds E, or REMOVED, or null until written and once taken
+		final AtomicReferenceArray<Object> elements;
+		volatile @Nullable Chunk next;
+		long p01, p02, p03, p04, p05, p06, p07;
+		// slots claimed by producers, which may pass the chunk's size while they race to link the next chunk
+		volatile int producerIndex;
+		long p11, p12, p13, p14, p15, p16, p17;
+		// slots claimed by consumers
+		volatile int consumerIndex;
+		long p21, p22, p23, p24, p25, p26, p27;
+
+		Chunk(int size) {
+			elements = new AtomicReferenceArray<>(size);
+		}
+	}
+}
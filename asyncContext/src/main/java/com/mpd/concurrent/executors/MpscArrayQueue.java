@@ -0,0 +1,34 @@
+package com.mpd.concurrent.executors;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link MpmcArrayQueue} for a single consumer at a time, so polling doesn't need a CAS.
+ *
+ * <p>Any number of threads may offer concurrently, but polls must not race each other: either one thread consumes, or
+ * consumers hold a common lock.
+ */
+public class MpscArrayQueue<E> extends MpmcArrayQueue<E> {
+	public MpscArrayQueue() {
+		super();
+	}
+
+	public MpscArrayQueue(int capacity) {
+		super(capacity);
+	}
+
+	@Override protected @Nullable E pollWithoutSignal() {
+		while (true) {
+			long index = PaddedIndex.atomicValue.get(head);
+			if (sequences.get((int) (index & mask)) != index + 1) { // nothing published here yet
+				return null;
+			}
+			Object element = takeSlot(index);
+			PaddedIndex.atomicValue.lazySet(head, index + 1);
+			if (element != REMOVED) {
+				//noinspection unchecked
+				return (E) element;
+			}
+		}
+	}
+}
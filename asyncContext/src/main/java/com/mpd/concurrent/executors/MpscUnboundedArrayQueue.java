@@ -0,0 +1,42 @@
+package com.mpd.concurrent.executors;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link MpmcUnboundedArrayQueue} for a single consumer at a time, so polling doesn't need a CAS.
+ *
+ * <p>Any number of threads may offer concurrently, but polls must not race each other: either one thread consumes, or
+ * consumers hold a common lock.
+ */
+public class MpscUnboundedArrayQueue<E> extends MpmcUnboundedArrayQueue<E> {
+	public MpscUnboundedArrayQueue() {
+		super();
+	}
+
+	public MpscUnboundedArrayQueue(int chunkSize) {
+		super(chunkSize);
+	}
+
+	@Override public @Nullable E poll() {
+		while (true) {
+			Chunk chunk = headChunk;
+			int index = chunk.consumerIndex;
+			if (index >= chunkSize) { // every slot's been taken, so move on, unless no producer has yet
+				Chunk next = chunk.next;
+				if (next == null) {
+					return null;
+				}
+				headChunk = next;
+			} else if (index >= chunk.producerIndex) { // no producer has claimed this slot yet
+				return null;
+			} else {
+				Chunk.atomicConsumerIndex.lazySet(chunk, index + 1);
+				Object element = takeSlot(chunk, index);
+				if (element != REMOVED) {
+					//noinspection unchecked
+					return (E) element;
+				}
+			}
+		}
+	}
+}
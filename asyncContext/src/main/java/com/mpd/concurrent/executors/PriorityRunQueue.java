@@ -0,0 +1,303 @@
+package com.mpd.concurrent.executors;
+
+import androidx.annotation.NonNull;
+import com.google.common.collect.Iterators;
+import com.mpd.concurrent.executors.Executor.RunnablePriority;
+import com.mpd.concurrent.futures.SubmittableFuture;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A run queue with one lock-free FIFO lane per {@link RunnablePriority}, allocated the first time a task of that
+ * priority is added. By default each lane is an unbounded {@link MpmcUnboundedArrayQueue}. Passing a
+ * {@code laneCapacity} makes each lane a {@link MpmcArrayQueue} with room for that many tasks, and offering to a full
+ * lane returns false.
+ *
+ * <p>Each task's priority is read once, when it's added. Polling takes from the most urgent non-empty lane, except that
+ * each time a lower lane is passed over it ages, and on the {@code agingThreshold}th time, it's served instead. So a
+ * steady stream of UI work delays background work, but never starves it. PRIORITY_NA never ages, and
+ * only runs when every other lane is empty.
+ *
+ * <p>Adding and polling never lock, and only unbounded lanes allocate, once per chunk. Only blocking takes lock, and
+ * adds only lock when a taker is waiting. Removing a task marks it in its lane, and polls skip it.
+ */
+public class PriorityRunQueue extends AbstractQueue<SubmittableFuture<?>>
+		implements BlockingQueue<SubmittableFuture<?>>
+{
+	public static final int DEFAULT_AGING_THRESHOLD = 32;
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+	private static final RunnablePriority[] PRIORITIES = RunnablePriority.values();
+	private static final int NEVER_AGES = RunnablePriority.PRIORITY_NA.ordinal();
+
+	private final int agingThreshold;
+	private final int laneCapacity;
+	// null until a task with that priority is added
+	private final AtomicReferenceArray<BlockingQueue<SubmittableFuture<?>>> lanes;
+	// how many times each non-empty lane has been passed over for a more urgent lane
+	private final AtomicIntegerArray passedOver;
+	private final ReentrantLock takeLock = new ReentrantLock();
+	private final Condition notEmpty = takeLock.newCondition();
+	// written while holding takeLock
+	private volatile int waitingTakers = 0;
+
+	public PriorityRunQueue() {
+		this(DEFAULT_AGING_THRESHOLD, UNBOUNDED);
+	}
+
+	public PriorityRunQueue(int agingThreshold) {
+		this(agingThreshold, UNBOUNDED);
+	}
+
+	// laneCapacity is UNBOUNDED, or rounded up to a power of two
+	public PriorityRunQueue(int agingThreshold, int laneCapacity) {
+		if (agingThreshold < 1) {
+			throw new IllegalArgumentException("agingThreshold must be positive, but was " + agingThreshold);
+		}
+		if (laneCapacity != UNBOUNDED && (laneCapacity < 2 || laneCapacity > (1 << 30))) {
+			throw new IllegalArgumentException("laneCapacity must be UNBOUNDED or between 2 and 2^30, but was "
+					+ laneCapacity);
+		}
+		this.agingThreshold = agingThreshold;
+		this.laneCapacity = laneCapacity;
+		lanes = new AtomicReferenceArray<>(PRIORITIES.length);
+		passedOver = new AtomicIntegerArray(PRIORITIES.length);
+	}
+
+	private BlockingQueue<SubmittableFuture<?>> laneForOffer(int priority) {
+		BlockingQueue<SubmittableFuture<?>> lane = lanes.get(priority);
+		if (lane == null) {
+			lane = (laneCapacity == UNBOUNDED) ? new MpmcUnboundedArrayQueue<>() : new MpmcArrayQueue<>(laneCapacity);
+			if (!lanes.compareAndSet(priority, null, lane)) {
+				lane = lanes.get(priority);
+			}
+		}
+		return lane;
+	}
+
+	private boolean isLaneEmpty(int priority) {
+		BlockingQueue<SubmittableFuture<?>> lane = lanes.get(priority);
+		return lane == null || lane.isEmpty();
+	}
+
+	@Override public boolean offer(SubmittableFuture<?> task) {
+		if (!laneForOffer(task.getRunnablePriority().ordinal()).offer(task)) {
+			return false;
+		}
+		onOffered();
+		return true;
+	}
+
+	@Override public void put(SubmittableFuture<?> task) throws InterruptedException {
+		laneForOffer(task.getRunnablePriority().ordinal()).put(task);
+		onOffered();
+	}
+
+	@Override public boolean offer(SubmittableFuture<?> task, long timeout, TimeUnit unit) throws InterruptedException {
+		if (!laneForOffer(task.getRunnablePriority().ordinal()).offer(task, timeout, unit)) {
+			return false;
+		}
+		onOffered();
+		return true;
+	}
+
+	private void onOffered() {
+		if (waitingTakers > 0) {
+			takeLock.lock();
+			try {
+				notEmpty.signal();
+			} finally {
+				takeLock.unlock();
+			}
+		}
+	}
+
+	@Override public @Nullable SubmittableFuture<?> poll() {
+		while (true) {
+			int lane = chooseLane();
+			if (lane < 0) {
+				return null;
+			}
+			SubmittableFuture<?> task = lanes.get(lane).poll();
+			if (task != null) {
+				return task;
+			}
+			// another thread took the last task in that lane, or it only held removed tasks, so choose again
+		}
+	}
+
+	// the most urgent non-empty lane, or a less urgent lane that's been passed over too many times.
+	private int chooseLane() {
+		int mostUrgent = -1;
+		for (int i = 0; i < lanes.length(); i++) {
+			if (isLaneEmpty(i)) {
+				continue;
+			} else if (mostUrgent < 0) {
+				mostUrgent = i;
+			} else if (i != NEVER_AGES && passedOver.incrementAndGet(i) >= agingThreshold) {
+				passedOver.set(i, 0);
+				return i;
+			}
+		}
+		if (mostUrgent >= 0) {
+			passedOver.set(mostUrgent, 0);
+		}
+		return mostUrgent;
+	}
+
+	@Override public SubmittableFuture<?> take() throws InterruptedException {
+		SubmittableFuture<?> task = poll();
+		if (task != null) {
+			return task;
+		}
+		takeLock.lockInterruptibly();
+		try {
+			waitingTakers++;
+			try {
+				// re-poll after publishing waitingTakers, so a concurrent #offer either is seen here or signals us
+				while ((task = poll()) == null) {
+					notEmpty.await();
+				}
+				return task;
+			} finally {
+				waitingTakers--;
+			}
+		} finally {
+			takeLock.unlock();
+		}
+	}
+
+	@Override public @Nullable SubmittableFuture<?> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		SubmittableFuture<?> task = poll();
+		if (task != null) {
+			return task;
+		}
+		long remainingNanos = unit.toNanos(timeout);
+		takeLock.lockInterruptibly();
+		try {
+			waitingTakers++;
+			try {
+				while ((task = poll()) == null) {
+					if (remainingNanos <= 0) {
+						return null;
+					}
+					remainingNanos = notEmpty.awaitNanos(remainingNanos);
+				}
+				return task;
+			} finally {
+				waitingTakers--;
+			}
+		} finally {
+			takeLock.unlock();
+		}
+	}
+
+	@Override public @Nullable SubmittableFuture<?> peek() {
+		for (int i = 0; i < lanes.length(); i++) {
+			BlockingQueue<SubmittableFuture<?>> lane = lanes.get(i);
+			SubmittableFuture<?> task = (lane != null) ? lane.peek() : null;
+			if (task != null) {
+				return task;
+			}
+		}
+		return null;
+	}
+
+	@Override public int size() {
+		long size = 0;
+		for (int i = 0; i < lanes.length(); i++) {
+			BlockingQueue<SubmittableFuture<?>> lane = lanes.get(i);
+			size += (lane != null) ? lane.size() : 0;
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	public int size(RunnablePriority priority) {
+		BlockingQueue<SubmittableFuture<?>> lane = lanes.get(priority.ordinal());
+		return (lane != null) ? lane.size() : 0;
+	}
+
+	@Override public boolean isEmpty() {
+		for (int i = 0; i < lanes.length(); i++) {
+			if (!isLaneEmpty(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// How many more tasks of any priority are sure to be accepted, which is the room in the fullest lane
+	@Override public int remainingCapacity() {
+		int remaining = Integer.MAX_VALUE;
+		for (RunnablePriority priority : PRIORITIES) {
+			remaining = Math.min(remaining, remainingCapacity(priority));
+		}
+		return remaining;
+	}
+
+	public int remainingCapacity(RunnablePriority priority) {
+		BlockingQueue<SubmittableFuture<?>> lane = lanes.get(priority.ordinal());
+		if (lane != null) {
+			return lane.remainingCapacity();
+		}
+		return (laneCapacity == UNBOUNDED) ? UNBOUNDED : Integer.highestOneBit(laneCapacity - 1) << 1;
+	}
+
+	// Looks in every lane, since the task's priority may have changed since it was added
+	@Override public boolean remove(@Nullable Object task) {
+		for (int i = 0; i < lanes.length(); i++) {
+			BlockingQueue<SubmittableFuture<?>> lane = lanes.get(i);
+			if (lane != null && lane.remove(task)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override public boolean removeIf(Predicate<? super SubmittableFuture<?>> filter) {
+		boolean removed = false;
+		for (int i = 0; i < lanes.length(); i++) {
+			BlockingQueue<SubmittableFuture<?>> lane = lanes.get(i);
+			if (lane != null && lane.removeIf(filter)) {
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	@Override public int drainTo(Collection<? super SubmittableFuture<?>> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override public int drainTo(Collection<? super SubmittableFuture<?>> collection, int maxElements) {
+		int drained = 0;
+		SubmittableFuture<?> task;
+		while (drained < maxElements && (task = poll()) != null) {
+			collection.add(task);
+			drained++;
+		}
+		return drained;
+	}
+
+	// Iterates from the most urgent lane to the least, weakly consistently. Removing through the iterator isn't supported.
+	@Override public @NonNull Iterator<SubmittableFuture<?>> iterator() {
+		List<Iterator<SubmittableFuture<?>>> iterators = new ArrayList<>(lanes.length());
+		for (int i = 0; i < lanes.length(); i++) {
+			BlockingQueue<SubmittableFuture<?>> lane = lanes.get(i);
+			if (lane != null) {
+				iterators.add(lane.iterator());
+			}
+		}
+		return Iterators.concat(iterators.iterator());
+	}
+}
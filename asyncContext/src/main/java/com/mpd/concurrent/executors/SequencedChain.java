@@ -0,0 +1,140 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import com.mpd.concurrent.futures.SubmittableFuture;
+import com.mpd.concurrent.futures.atomic.AbstractListenerFutures.SingleParentImmediateListenerFuture;
+import com.mpd.concurrent.futures.atomic.FutureRunnable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The result of a sequenced task's chain, which frees the task's slot once the chain completes and the task has
+ * stopped running.
+ *
+ * A sequencer must {@link #tryStart} a chain before running its task. If this is cancelled while the task is still
+ * queued, that fails, and the sequencer skips the task, since it never took the slot. Cancelling this once the task
+ * has started cancels the task too, but a task's body keeps running until it returns, so the slot is held until then.
+ * That's why sequencers run the task through {@link #runTask} or {@link #submitTo}, rather than directly.
+ */
+final class SequencedChain<O> extends SingleParentImmediateListenerFuture<O, O> {
+	/** @noinspection rawtypes */
+	private static final AtomicIntegerFieldUpdater<SequencedChain> atomicState =
+			AtomicIntegerFieldUpdater.newUpdater(SequencedChain.class, "state");
+	/** @noinspection rawtypes */
+	private static final AtomicIntegerFieldUpdater<SequencedChain> atomicUnfinished =
+			AtomicIntegerFieldUpdater.newUpdater(SequencedChain.class, "unfinished");
+	/** @noinspection rawtypes */
+	private static final AtomicIntegerFieldUpdater<SequencedChain> atomicTaskClaimed =
+			AtomicIntegerFieldUpdater.newUpdater(SequencedChain.class, "taskClaimed");
+	private static final int STATE_QUEUED = 0;
+	private static final int STATE_STARTED = 1;
+	private static final int STATE_DONE = 2;
+
+	final SubmittableFuture<O> task;
+	private final Runnable onChainComplete;
+	volatile int state = STATE_QUEUED;
+	// once started, the slot is freed when both this is done and the task has stopped running
+	private volatile int unfinished = 2;
+	// 1 once the task has been run, or failed because it couldn't be
+	private volatile int taskClaimed = 0;
+
+	SequencedChain(SubmittableFuture<O> task, Runnable onChainComplete) {
+		super(task);
+		this.task = task;
+		this.onChainComplete = onChainComplete;
+		task.setListener(this);
+	}
+
+	// Returns false if this was cancelled before the task started
+	boolean tryStart() {
+		return atomicState.compareAndSet(this, STATE_QUEUED, STATE_STARTED);
+	}
+
+	// Runs the started task on this thread
+	void runTask() {
+		if (!atomicTaskClaimed.compareAndSet(this, 0, 1)) {
+			return;
+		}
+		try {
+			SequentialExecutor.runTask(task);
+		} finally {
+			onFinished();
+		}
+	}
+
+	// Submits the started task to the delegate
+	void submitTo(Executor delegate) {
+		try {
+			delegate.submit(newRunner());
+		} catch (RuntimeException e) {
+			failToRun(e);
+		}
+	}
+
+	// What to hand the delegate in place of the task, so that this knows when it's stopped running
+	SubmittableFuture<?> newRunner() {
+		Runner runner = new Runner(this);
+		runner.setListener(Runner.ON_REJECTED);
+		return runner;
+	}
+
+	// Fails the started task without running it, which completes the chain
+	void failToRun(Throwable exception) {
+		if (!atomicTaskClaimed.compareAndSet(this, 0, 1)) {
+			return;
+		}
+		task.setException(exception);
+		onFinished();
+	}
+
+	private void onFinished() {
+		if (atomicUnfinished.decrementAndGet(this) == 0) {
+			onChainComplete.run();
+		}
+	}
+
+	@Override protected void execute() {
+		Future<? extends O> chain = checkNotNull(getParent());
+		if (chain.isSuccessful()) {
+			setResult(chain.resultNow());
+		} else {
+			setException(chain.exceptionNow());
+		}
+	}
+
+	// This also runs if this is cancelled directly, in which case #execute doesn't.
+	@CallSuper @Override protected void afterDone(
+			@Nullable O result, @Nullable Throwable exception, boolean mayInterruptIfRunning, FutureListener<? super O> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		if (atomicState.getAndSet(this, STATE_DONE) == STATE_STARTED) {
+			onFinished();
+		}
+	}
+
+	// Runs the task with its priority. If the delegate fails this instead of running it, the task fails with it.
+	private static final class Runner extends FutureRunnable<Void> {
+		static final FutureListener<Object> ON_REJECTED = new FutureListener<Object>() {
+			@Override public void onFutureSucceeded(Future<?> future, Object result) {}
+
+			@Override public void onFutureFailed(Future<?> future, Throwable exception, boolean mayInterruptIfRunning) {
+				((Runner) future).chain.failToRun(exception); // does nothing if the task already ran
+			}
+		};
+
+		final SequencedChain<?> chain;
+
+		Runner(SequencedChain<?> chain) {
+			super(chain::runTask);
+			this.chain = chain;
+		}
+
+		@Override public Executor.RunnablePriority getRunnablePriority() {
+			return chain.task.getRunnablePriority();
+		}
+	}
+}
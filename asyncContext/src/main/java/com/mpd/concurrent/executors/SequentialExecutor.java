@@ -1,15 +1,20 @@
 package com.mpd.concurrent.executors;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import androidx.annotation.NonNull;
-import androidx.annotation.RestrictTo;
+import com.mpd.concurrent.asyncContext.AsyncContextScope;
 import com.mpd.concurrent.executors.locked.AndAlsoJavaExecutor;
 import com.mpd.concurrent.futures.SubmittableFuture;
+import com.mpd.concurrent.futures.atomic.FutureRunnable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /*
@@ -19,40 +24,90 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  *
  * Outside of "synchronized" lock emulation, most code probably wants to serialize future-chains, rather than
  * individual runnables, and thus should be using {@link TaskSequencer}.
+ *
+ * This is an actor-style mailbox: tasks are offered to the queue, and up to `width` drainers run them on the delegate.
+ * Submitting is a queue offer plus at most one CAS on the drainer count, so nothing locks. Whichever submitter wins the
+ * CAS schedules the drainer. Once the queue is empty, the drainer releases its slot, and then re-checks the queue, so a
+ * racing submission is never stranded. With a width over 1, the queue must support concurrent polls.
+ *
+ * A drainer runs queued tasks back to back, up to its {@link DrainQuantum}, and then resubmits itself, so a burst of
+ * serialized tasks doesn't pay a delegate round trip per task, but other work on the delegate still gets a turn.
+ *
+ * Listeners are registered on the delegate, so their beforeExecute and afterExecute hooks see each drainer, not the
+ * individual tasks it runs.
  */
-public class SequentialExecutor implements AndAlsoJavaExecutor, Executor.ExecutorListener {
+public class SequentialExecutor implements AndAlsoJavaExecutor {
+	private static final AtomicIntegerFieldUpdater<SequentialExecutor> atomicDrainers =
+			AtomicIntegerFieldUpdater.newUpdater(SequentialExecutor.class, "drainers");
+
 	private final Executor delegate;
 	private final int width;
 	private final BlockingQueue<SubmittableFuture<?>> queue;
-	private int inFlight = 0;
+	// how many drainers are scheduled or running on the delegate, up to width
+	private volatile int drainers = 0;
+	private volatile DrainQuantum drainQuantum = DrainQuantum.DEFAULT;
 
 	public SequentialExecutor(Executor delegate, int width, BlockingQueue<SubmittableFuture<?>> queue) {
+		if (width < 1) {
+			throw new IllegalArgumentException("width must be positive, but was " + width);
+		}
 		this.delegate = delegate;
 		this.width = width;
 		this.queue = queue;
 	}
 
-	// Factory methods
+	// Factory methods. The queue is unbounded, unless a capacity is given, past which submitting throws a
+	// RejectedExecutionException.
 	public static SequentialExecutor serialized(Executor delegate) {
-		return new SequentialExecutor(delegate, 1, new LinkedBlockingQueue<>());
+		return new SequentialExecutor(delegate, 1, new MpscUnboundedArrayQueue<>());
+	}
+
+	public static SequentialExecutor serialized(Executor delegate, int capacity) {
+		return new SequentialExecutor(delegate, 1, new MpscArrayQueue<>(capacity));
 	}
 
 	public static SequentialExecutor cpuParallel(Executor delegate) {
-		return new SequentialExecutor(delegate, Runtime.getRuntime().availableProcessors(), new LinkedBlockingQueue<>());
+		return new SequentialExecutor(delegate,
+				Runtime.getRuntime().availableProcessors(),
+				new MpmcUnboundedArrayQueue<>());
+	}
+
+	public static SequentialExecutor cpuParallel(Executor delegate, int capacity) {
+		return new SequentialExecutor(delegate,
+				Runtime.getRuntime().availableProcessors(),
+				new MpmcArrayQueue<>(capacity));
 	}
 
 	public static SequentialExecutor bandwidthParallel(Executor delegate) {
-		return new SequentialExecutor(delegate, 2, new LinkedBlockingQueue<>());
+		return new SequentialExecutor(delegate, 2, new MpmcUnboundedArrayQueue<>());
+	}
+
+	public static SequentialExecutor bandwidthParallel(Executor delegate, int capacity) {
+		return new SequentialExecutor(delegate, 2, new MpmcArrayQueue<>(capacity));
 	}
 
 	@Override public int getWidth() {
 		return width;
 	}
 
+	public DrainQuantum getDrainQuantum() {
+		return drainQuantum;
+	}
+
+	// DrainQuantum.ONE_TASK resubmits to the delegate after every task
+	public void setDrainQuantum(DrainQuantum drainQuantum) {
+		this.drainQuantum = checkNotNull(drainQuantum);
+	}
+
 	@Override public @ThreadInExecutorEnum int ownsThread(Thread thread) {
 		return delegate.ownsThread(thread);
 	}
 
+	// The delegate's threads aren't serialized, so running a task inline on one would skip the queue
+	@Override public int getMaxInlineContinuations() {
+		return 0;
+	}
+
 	@Override public boolean isIdleNow() {
 		return delegate.isIdleNow();
 	}
@@ -75,46 +130,106 @@ public class SequentialExecutor implements AndAlsoJavaExecutor, Executor.Executo
 	}
 
 	@Override public <O> SubmittableFuture<O> execute(SubmittableFuture<O> task) {
-		boolean shouldSubmit;
-		synchronized (queue) {
-			++inFlight;
-			if (inFlight <= width) {
-				shouldSubmit = true;
+		if (!queue.offer(task)) {
+			throw new RejectedExecutionException("queue is full");
+		}
+		tryScheduleDrainer();
+		return task;
+	}
+
+	// Queues the whole batch, then schedules only as many drainers as it needs.
+	@Override public void executeBatch(Collection<? extends SubmittableFuture<?>> tasks) {
+		int offered = 0;
+		@Nullable RejectedExecutionException rejected = null;
+		for (SubmittableFuture<?> task : tasks) {
+			if (rejected != null) {
+				task.setException(rejected);
+			} else if (queue.offer(task)) {
+				offered++;
 			} else {
-				shouldSubmit = false;
-				queue.add(task);
+				rejected = new RejectedExecutionException("queue is full");
+				task.setException(rejected);
 			}
 		}
-		if (shouldSubmit) {
-			try {
-				delegate.submit(task);
-			} catch (RuntimeException e) {
-				task.setException(e);
+		for (int i = 0; i < offered; i++) {
+			if (!tryScheduleDrainer()) {
+				break;
 			}
 		}
-		return task;
 	}
 
-	@Override public void close() {
-		delegate.close();
-		delegate.unregisterListener(this);
+	// Returns false if width drainers are already running, in which case one of them will run the queued task.
+	private boolean tryScheduleDrainer() {
+		while (true) {
+			int drainers = atomicDrainers.get(this);
+			if (drainers >= width) {
+				return false;
+			} else if (atomicDrainers.compareAndSet(this, drainers, drainers + 1)) {
+				submitDrainer();
+				return true;
+			}
+		}
 	}
 
-	@RestrictTo(RestrictTo.Scope.SUBCLASSES) @Override public void afterExecute(SubmittableFuture<?> task) {
-		@Nullable Runnable next;
-		synchronized (queue) {
-			--inFlight;
-			next = queue.remove();
-		}
-		if (next != null) {
-			try {
-				delegate.submit(next);
-			} catch (RuntimeException e) {
+	// Must only be called while holding a drainer slot
+	private void submitDrainer() {
+		FutureRunnable<Void> drainer = new FutureRunnable<>(this::drain);
+		drainer.end();
+		try {
+			delegate.execute(drainer);
+		} catch (RuntimeException e) {
+			// Nothing will drain the queue now, so fail the tasks rather than leaving them pending forever. The drainer was
+			// already ended, so failing it too would only report e twice. This polls before releasing the slot, so that no
+			// other drainer polls at the same time, which a single consumer queue forbids.
+			@Nullable SubmittableFuture<?> task;
+			while ((task = queue.poll()) != null) {
 				task.setException(e);
 			}
+			atomicDrainers.decrementAndGet(this);
+			// like #drain, re-check after releasing our slot, so a task queued since the last poll isn't stranded
+			if (!queue.isEmpty()) {
+				tryScheduleDrainer();
+			}
 		}
 	}
 
+	private void drain() {
+		DrainQuantum drainQuantum = this.drainQuantum;
+		long deadlineNanos = drainQuantum.deadlineNanos();
+		int tasksRun = 0;
+		@Nullable SubmittableFuture<?> task;
+		while (drainQuantum.allowsAnother(tasksRun, deadlineNanos) && (task = queue.poll()) != null) {
+			runTask(task);
+			tasksRun++;
+		}
+		if (!queue.isEmpty()) { // quantum's up, so keep our slot, but yield the delegate thread to other tasks
+			submitDrainer();
+			return;
+		}
+		atomicDrainers.decrementAndGet(this);
+		// re-check after releasing our slot, so a concurrent #execute either is seen here or schedules its own drainer
+		if (!queue.isEmpty()) {
+			tryScheduleDrainer();
+		}
+	}
+
+	// Runs the task as the delegate's thread would, so it resumes its own scope over nothing, not over the drainer's.
+	static void runTask(SubmittableFuture<?> task) {
+		@Nullable AsyncContextScope drainerScope = AsyncContextScope.currentScope.get();
+		AsyncContextScope.currentScope.set(null);
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			task.setException(e);
+		} finally {
+			AsyncContextScope.currentScope.set(drainerScope);
+		}
+	}
+
+	@Override public void close() {
+		delegate.close();
+	}
+
 	@Override public List<Runnable> shutdownNow() {
 		if (delegate instanceof java.util.concurrent.ExecutorService) {
 			return ((java.util.concurrent.ExecutorService) delegate).shutdownNow();
@@ -150,14 +265,12 @@ public class SequentialExecutor implements AndAlsoJavaExecutor, Executor.Executo
 	}
 
 	@Override public void toString(StringBuilder sb, boolean includeState) {
-		synchronized (queue) {
-			sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
-			if (includeState) {
-				sb.append("[delegate=");
-				delegate.toString(sb, /*includeState=*/false);
-				sb.append(", width=").append(width).append(", queueSize=").append(queue.size()).append(", isShutdown=").append(
-						isShutdown()).append(']');
-			}
+		sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
+		if (includeState) {
+			sb.append("[delegate=");
+			delegate.toString(sb, /*includeState=*/false);
+			sb.append(", width=").append(width).append(", drainQuantum=").append(drainQuantum).append(", drainers=").append(drainers).append(", queueSize=").append(
+					queue.size()).append(", isShutdown=").append(isShutdown()).append(']');
 		}
 	}
 
@@ -1,23 +1,44 @@
 package com.mpd.concurrent.executors;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import androidx.annotation.NonNull;
+import com.mpd.concurrent.executors.Executor.ThreadInExecutorEnum;
 import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
 import com.mpd.concurrent.futures.SubmittableFuture;
-import com.mpd.concurrent.futures.atomic.AbstractListenerFutures.SingleParentImmediateListenerFuture;
+import com.mpd.concurrent.futures.atomic.FutureCallable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Serializes future-chains, rather than individual runnables.
  *
  * In general, most code should be using this, rather than {@link SequentialExecutor}.
+ *
+ * A chain holds its slot until it completes, and then its slot goes to the next queued task. If the chain completed on
+ * one of the delegate's threads, that thread runs the next queued tasks inline, up to the {@link DrainQuantum}, rather
+ * than paying a delegate round trip per task. Chains that complete on other threads, such as a timer's, hand the next
+ * task to the delegate.
+ *
+ * Cancelling a result cancels its task, and frees its chain's slot once the task's body has returned. A queued task whose
+ * result was cancelled is skipped.
  */
 public class TaskSequencer {
+	// The inline drain running on this thread, so that chains which complete synchronously hand off rather than recurse
+	private static final ThreadLocal<InlineDrain> currentDrain = new ThreadLocal<>();
+
+	// the SequencedChains waiting for a slot
 	protected final BlockingQueue<SubmittableFuture<?>> queue;
 	private final Executor delegate;
 	private final int width;
 	private int inFlight = 0;
+	private volatile DrainQuantum drainQuantum = DrainQuantum.DEFAULT;
 
 	public TaskSequencer(Executor delegate, int width, BlockingQueue<SubmittableFuture<?>> queue) {
 		this.delegate = delegate;
@@ -25,62 +46,174 @@ public class TaskSequencer {
 		this.queue = queue;
 	}
 
-	// Factory methods
+	// Factory methods. The queue is unbounded, unless a capacity is given, past which submitting throws a
+	// RejectedExecutionException.
 	public static TaskSequencer serialized(Executor delegate) {
-		return new TaskSequencer(delegate, 1, new LinkedBlockingQueue<>());
+		return new TaskSequencer(delegate, 1, new MpscUnboundedArrayQueue<>());
+	}
+
+	public static TaskSequencer serialized(Executor delegate, int capacity) {
+		return new TaskSequencer(delegate, 1, new MpscArrayQueue<>(capacity));
 	}
 
 	public static TaskSequencer cpuParallel(Executor delegate) {
-		return new TaskSequencer(delegate, Runtime.getRuntime().availableProcessors(), new LinkedBlockingQueue<>());
+		return new TaskSequencer(delegate, Runtime.getRuntime().availableProcessors(), new MpscUnboundedArrayQueue<>());
+	}
+
+	public static TaskSequencer cpuParallel(Executor delegate, int capacity) {
+		return new TaskSequencer(delegate, Runtime.getRuntime().availableProcessors(), new MpscArrayQueue<>(capacity));
 	}
 
 	public static TaskSequencer bandwidthParallel(Executor delegate) {
-		return new TaskSequencer(delegate, 2, new LinkedBlockingQueue<>());
+		return new TaskSequencer(delegate, 2, new MpscUnboundedArrayQueue<>());
+	}
+
+	public static TaskSequencer bandwidthParallel(Executor delegate, int capacity) {
+		return new TaskSequencer(delegate, 2, new MpscArrayQueue<>(capacity));
 	}
 
 	public int getWidth() {
 		return width;
 	}
 
+	public DrainQuantum getDrainQuantum() {
+		return drainQuantum;
+	}
+
+	// DrainQuantum.ONE_TASK submits every task to the delegate
+	public void setDrainQuantum(DrainQuantum drainQuantum) {
+		this.drainQuantum = checkNotNull(drainQuantum);
+	}
+
+	// The result completes once the task's chain has, and the next chain isn't started until then.
 	public <O> SubmittableFuture<O> submit(SubmittableFuture<O> task) {
-		SingleParentImmediateListenerFuture<O, O> runThenQueueNext = new SingleParentImmediateListenerFuture<O, O>(task) {
-			@Override protected void execute() {
-				afterExecute(getParent());
-			}
-		};
-		task.setListener(runThenQueueNext);
+		SequencedChain<O> chain = new SequencedChain<>(task, this::onChainComplete);
 		boolean shouldSubmit;
 		synchronized (queue) {
-			++inFlight;
-			if (inFlight <= width) {
+			if (inFlight < width) {
+				if (!chain.tryStart()) {
+					return chain; // the task was already done
+				}
 				shouldSubmit = true;
-			} else {
+			} else if (queue.offer(chain)) {
 				shouldSubmit = false;
-				queue.add(runThenQueueNext);
+			} else {
+				throw new RejectedExecutionException("queue is full");
 			}
+			++inFlight;
 		}
 		if (shouldSubmit) {
+			chain.submitTo(delegate);
+		}
+		return chain;
+	}
+
+	// The result is the listener of every chain's result, and succeeds once they all have.
+	public Future<Void> executeAll(Collection<? extends SubmittableFuture<?>> tasks) {
+		List<SequencedChain<?>> chains = new ArrayList<>(tasks.size());
+		for (SubmittableFuture<?> task : tasks) {
+			chains.add(new SequencedChain<>(task, this::onChainComplete));
+		}
+		submitBatch(chains);
+		return Futures.whenAllSucceeded(chains);
+	}
+
+	public <O> Future<List<O>> submitAll(Collection<? extends Callable<O>> tasks) {
+		List<SequencedChain<O>> chains = new ArrayList<>(tasks.size());
+		for (Callable<O> task : tasks) {
+			chains.add(new SequencedChain<>(new FutureCallable<>(task), this::onChainComplete));
+		}
+		submitBatch(chains);
+		return Futures.allAsList(chains);
+	}
+
+	// Queues the whole batch under one lock, and hands the delegate only the tasks that fit in the width, as one batch.
+	private void submitBatch(List<? extends SequencedChain<?>> chains) {
+		List<SubmittableFuture<?>> toSubmit = new ArrayList<>(Math.min(width, chains.size()));
+		int rejectedIndex = chains.size();
+		synchronized (queue) {
+			for (int i = 0; i < chains.size(); i++) {
+				SequencedChain<?> chain = chains.get(i);
+				if (inFlight < width) {
+					if (!chain.tryStart()) {
+						continue; // the task was already done
+					}
+					toSubmit.add(chain.newRunner());
+				} else if (!queue.offer(chain)) {
+					rejectedIndex = i;
+					break;
+				}
+				++inFlight;
+			}
+		}
+		if (rejectedIndex < chains.size()) {
+			// these never took a slot, so fail their results directly, rather than completing their chains
+			RejectedExecutionException rejected = new RejectedExecutionException("queue is full");
+			for (int i = rejectedIndex; i < chains.size(); i++) {
+				chains.get(i).setException(rejected);
+			}
+		}
+		if (!toSubmit.isEmpty()) {
 			try {
-				delegate.submit(runThenQueueNext);
+				delegate.executeBatch(toSubmit);
 			} catch (RuntimeException e) {
-				runThenQueueNext.setException(e);
+				for (SubmittableFuture<?> runner : toSubmit) {
+					runner.setException(e); // fails its task, which completes its chain and frees its slot
+				}
 			}
 		}
-		return runThenQueueNext;
 	}
 
-	protected void afterExecute(Future<?> task) {
-		@Nullable Runnable next;
+	// A chain completed, so its slot goes to the next queued task, if there is one.
+	private void onChainComplete() {
+		@Nullable SequencedChain<?> next;
 		synchronized (queue) {
-			--inFlight;
-			next = queue.remove();
+			--inFlight; // queued tasks are already counted
+			next = pollStartedLocked();
 		}
-		if (next != null) {
-			try {
-				delegate.submit(next);
-			} catch (RuntimeException e) {
-				task.setException(e);
+		if (next == null) {
+			return;
+		}
+		@Nullable InlineDrain drain = currentDrain.get();
+		if (drain != null && drain.sequencer == this && drain.handoff == null) {
+			drain.handoff = next; // the chain completed while the drain up the stack was running it
+		} else if (delegate.ownsThread(Thread.currentThread()) == ThreadInExecutorEnum.THREAD_IN_EXECUTOR) {
+			drainInline(next);
+		} else {
+			next.submitTo(delegate);
+		}
+	}
+
+	// Polls and starts the next queued chain, skipping chains that were cancelled while queued.
+	private @Nullable SequencedChain<?> pollStartedLocked() {
+		@Nullable SequencedChain<?> next;
+		while ((next = (SequencedChain<?>) queue.poll()) != null && !next.tryStart()) {
+			--inFlight; // it never took a slot
+		}
+		return next;
+	}
+
+	// Runs queued tasks on this delegate thread, for as long as their chains complete synchronously, up to the quantum.
+	private void drainInline(SequencedChain<?> first) {
+		DrainQuantum drainQuantum = this.drainQuantum;
+		long deadlineNanos = drainQuantum.deadlineNanos();
+		@Nullable InlineDrain previousDrain = currentDrain.get();
+		InlineDrain drain = new InlineDrain(this);
+		currentDrain.set(drain);
+		try {
+			@Nullable SequencedChain<?> chain = first;
+			// the chain that just completed on this thread counts against the quantum
+			for (int tasksRun = 1; chain != null; tasksRun++) {
+				if (!drainQuantum.allowsAnother(tasksRun, deadlineNanos)) {
+					chain.submitTo(delegate);
+					return;
+				}
+				chain.runTask();
+				chain = drain.handoff;
+				drain.handoff = null;
 			}
+		} finally {
+			currentDrain.set(previousDrain);
 		}
 	}
 
@@ -90,7 +223,8 @@ public class TaskSequencer {
 			if (includeState) {
 				sb.append("[delegate=");
 				delegate.toString(sb, /*includeState=*/false);
-				sb.append(", width=").append(width).append(", queueSize=").append(queue.size()).append(']');
+				sb.append(", width=").append(width).append(", drainQuantum=").append(drainQuantum).append(", inFlight=").append(
+						inFlight).append(", queueSize=").append(queue.size()).append(']');
 			}
 		}
 	}
@@ -100,4 +234,14 @@ public class TaskSequencer {
 		toString(sb, /* includeState=*/ true);
 		return sb.toString();
 	}
+
+	private static final class InlineDrain {
+		final TaskSequencer sequencer;
+		// the next chain, claimed by a chain that completed synchronously while this drain was running it
+		@Nullable SequencedChain<?> handoff = null;
+
+		InlineDrain(TaskSequencer sequencer) {
+			this.sequencer = sequencer;
+		}
+	}
 }
@@ -10,19 +10,29 @@ import com.google.common.flogger.FluentLogger;
 import com.mpd.concurrent.executors.locked.AndAlsoJavaExecutor;
 import com.mpd.concurrent.futures.Future;
 import com.mpd.concurrent.futures.SubmittableFuture;
-import com.mpd.concurrent.futures.atomic.FutureRunnable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * This mirrors https://docs.oracle.com/javase/8/docs/api/java/util/concurrent/ScheduledThreadPoolExecutor.html
+ *
+ * <p>Unless a queue is passed in, tasks run in {@link RunnablePriority} order, using a {@link PriorityRunQueue}.
+ *
+ * <p>Idle threads follow the {@link IdleStrategy}, which defaults to {@link IdleStrategy#parkOnly}. Each submission
+ * unparks at most one parked thread, the one that parked most recently, rather than waking them all.
+ *
+ * <p>With an {@link AdaptivePoolSizer}, the pool grows and shrinks between its core and maximum size to keep queue
+ * latency near a target, rather than growing only once the queue is twice the pool size.
  */
 public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 	private static final FluentLogger log = FluentLogger.forEnclosingClass();
@@ -30,21 +40,37 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 	private static final long DEFAULT_KEEP_ALIVE_TIME = 10;
 	private static final TimeUnit DEFAULT_KEEP_ALIVE_UNIT = TimeUnit.SECONDS;
 	private static final int DEFAULT_POOL_SIZE = 8;
-	private static final SubmittableFuture<?> TIMEOUT_PILL_RUNNABLE = new FutureRunnable<>(() -> {});
+	private static final int INLINE_CONTINUATIONS_FROM_CONFIG = -1;
+	// while spinning, idle threads only check whether they should exit once every this many polls
+	private static final int SPINNING_EXIT_CHECK_MASK = 0x3FF;
+	// The executor that owns the current thread, so #ownsThread doesn't have to search or lock
+	private static final ThreadLocal<ThreadPoolExecutor> currentExecutor = new ThreadLocal<>();
 	private final List<Thread> threads;
 	private final BlockingQueue<SubmittableFuture<?>> queue;
-	private final ArrayList<ExecutorListener> listeners = new ArrayList<>();
+	private final CopyOnWriteArrayList<ExecutorListener> listeners = new CopyOnWriteArrayList<>();
+	// most recently parked first, so the thread with the warmest cache is woken first
+	private final ConcurrentLinkedDeque<Thread> parkedThreads = new ConcurrentLinkedDeque<>();
 	private int corePoolSize;
 	private int maxPoolSize;
 	private long keepAliveTimeMs;
 	private ThreadFactory threadFactory;
 	private int runnableCount = 0;
-	private long lastIdleTimeout = 0;
-	private boolean isShutdown = false;
+	private long completedTaskCount = 0;
+	private int largestPoolSize = 0;
+	private @Nullable AdaptivePoolSizer poolSizer = null;
+	// one queued task at a time has its queue wait measured for the poolSizer
+	private volatile @Nullable SubmittableFuture<?> sampledTask = null;
+	private long sampledTaskQueuedNanos = 0;
+	private volatile boolean isShutdown = false;
+	private volatile int maxInlineContinuations = INLINE_CONTINUATIONS_FROM_CONFIG;
+	private volatile IdleStrategy idleStrategy = IdleStrategy.parkOnly();
 
 	public ThreadPoolExecutor(int corePoolSize) {
-		this(corePoolSize, corePoolSize, DEFAULT_KEEP_ALIVE_TIME, DEFAULT_KEEP_ALIVE_UNIT, new LinkedBlockingQueue<>(),
-				//TODO: Use a queue that allocates less.
+		this(corePoolSize,
+				corePoolSize,
+				DEFAULT_KEEP_ALIVE_TIME,
+				DEFAULT_KEEP_ALIVE_UNIT,
+				new PriorityRunQueue(),
 				Thread::new);
 	}
 
@@ -53,12 +79,12 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 				maximumPoolSize,
 				DEFAULT_KEEP_ALIVE_TIME,
 				DEFAULT_KEEP_ALIVE_UNIT,
-				new LinkedBlockingQueue<>(),
+				new PriorityRunQueue(),
 				Thread::new);
 	}
 
 	public ThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit) {
-		this(corePoolSize, maximumPoolSize, keepAliveTime, unit, new LinkedBlockingQueue<>(), Thread::new);
+		this(corePoolSize, maximumPoolSize, keepAliveTime, unit, new PriorityRunQueue(), Thread::new);
 	}
 
 	public ThreadPoolExecutor(
@@ -107,8 +133,38 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 		return corePoolSize;
 	}
 
-	@Override public synchronized @ThreadInExecutorEnum int ownsThread(Thread thread) {
-		return threadInExecutorEnum(threads.contains(thread));
+	@Override public @ThreadInExecutorEnum int ownsThread(Thread thread) {
+		if (thread == Thread.currentThread()) {
+			return threadInExecutorEnum(currentExecutor.get() == this);
+		}
+		synchronized (threads) {
+			return threadInExecutorEnum(threads.contains(thread));
+		}
+	}
+
+	@Override public int getMaxInlineContinuations() {
+		int maxInlineContinuations = this.maxInlineContinuations;
+		return maxInlineContinuations == INLINE_CONTINUATIONS_FROM_CONFIG
+				? Future.futureConfig.getMaxInlineContinuations()
+				: maxInlineContinuations;
+	}
+
+	// 0 always submits continuations to this executor
+	public void setMaxInlineContinuations(int maxInlineContinuations) {
+		if (maxInlineContinuations < 0) {
+			throw new IllegalArgumentException("maxInlineContinuations must not be negative, but was "
+					+ maxInlineContinuations);
+		}
+		this.maxInlineContinuations = maxInlineContinuations;
+	}
+
+	public IdleStrategy getIdleStrategy() {
+		return idleStrategy;
+	}
+
+	// Applies to threads the next time they run out of work
+	public void setIdleStrategy(IdleStrategy idleStrategy) {
+		this.idleStrategy = checkNotNull(idleStrategy);
 	}
 
 	@Override public boolean isIdleNow() {
@@ -138,6 +194,9 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 		synchronized (threads) {
 			isShutdown = true;
 		}
+		for (Thread thread : parkedThreads) {
+			LockSupport.unpark(thread);
+		}
 	}
 
 	@Override public List<Runnable> shutdownNow() {
@@ -145,6 +204,7 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 			isShutdown = true;
 			List<Runnable> result = ImmutableList.copyOf(queue);
 			queue.clear();
+			sampledTask = null;
 			for (Thread t : threads) {
 				t.interrupt();
 			}
@@ -182,6 +242,35 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 		}
 	}
 
+	public long getCompletedTaskCount() {
+		synchronized (threads) {
+			return completedTaskCount;
+		}
+	}
+
+	public int getLargestPoolSize() {
+		synchronized (threads) {
+			return largestPoolSize;
+		}
+	}
+
+	public @Nullable AdaptivePoolSizer getPoolSizer() {
+		synchronized (threads) {
+			return poolSizer;
+		}
+	}
+
+	// null restores the fixed heuristic
+	public void setPoolSizer(@Nullable AdaptivePoolSizer poolSizer) {
+		synchronized (threads) {
+			if (poolSizer != null) {
+				poolSizer.start(System.nanoTime(), Math.max(corePoolSize, Math.min(threads.size(), maxPoolSize)));
+			}
+			this.poolSizer = poolSizer;
+			sampledTask = null;
+		}
+	}
+
 	public int getCorePoolSize() {
 		return corePoolSize;
 	}
@@ -192,7 +281,7 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 		}
 		if (corePoolSize > maxPoolSize) {
 			throw new IllegalArgumentException("corePoolSize "
-					+ maxPoolSize
+					+ corePoolSize
 					+ " must be less than or equal to maxPoolSize "
 					+ maxPoolSize);
 		}
@@ -219,7 +308,7 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 					+ "corePoolSize "
 					+ corePoolSize);
 		}
-		this.maxPoolSize = corePoolSize;
+		this.maxPoolSize = maximumPoolSize;
 	}
 
 	public int getPoolSize() {
@@ -243,7 +332,7 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 	public int prestartAllCoreThreads() {
 		synchronized (threads) {
 			while (threads.size() < corePoolSize) {
-				threads.add(threadFactory.newThread(this::threadRun));
+				startThreadLocked();
 			}
 			return threads.size();
 		}
@@ -254,38 +343,138 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 			if (threads.size() >= corePoolSize) {
 				return false;
 			}
-			threads.add(threadFactory.newThread(this::threadRun));
+			startThreadLocked();
 			return true;
 		}
 	}
 
+	private void startThreadLocked() {
+		Thread thread = threadFactory.newThread(this::threadRun);
+		threads.add(thread);
+		largestPoolSize = Math.max(largestPoolSize, threads.size());
+		thread.start();
+	}
+
+	private void unparkOneThread() {
+		Thread thread = parkedThreads.pollFirst();
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
 	private boolean shouldStartNewThreadLocked() {
 		if (runnableCount <= threads.size()) {
 			return false; // There's an idle thread, so we don't need to add any
-		} else if (runnableCount < corePoolSize) {
+		} else if (threads.size() < corePoolSize) {
 			return true; // can freely add more threads
+		} else if (poolSizer != null) {
+			return threads.size() < poolSizer.getTargetPoolSize();
 		} else // we have max threads. just queue
 			if (runnableCount <= threads.size() * 2) {
 				return false;  //there's a queue, but let the existing threads handle it
 			} else {
-				return runnableCount < maxPoolSize;  // queue is piling up. add more threads until max
+				return threads.size() < maxPoolSize;  // queue is piling up. add more threads until max
 			}
 	}
 
+	// Re-evaluates the poolSizer's target once per sample interval, and starts threads if the target grew. Called when
+	// tasks are queued too, so that the pool still grows while every thread is blocked.
+	private void updatePoolSizeLocked() {
+		AdaptivePoolSizer poolSizer = this.poolSizer;
+		if (poolSizer == null) {
+			return;
+		}
+		long nowNanos = System.nanoTime();
+		if (!poolSizer.isSampleDue(nowNanos)) {
+			return; // before sizing the queue, since this runs for every task
+		}
+		long sampleWaitingNanos = sampledTask != null ? nowNanos - sampledTaskQueuedNanos : 0;
+		int queueSize = queue.size();
+		int busyThreads = Math.min(Math.max(runnableCount - queueSize, 0), threads.size());
+		if (!poolSizer.update(nowNanos,
+				sampleWaitingNanos,
+				queueSize,
+				busyThreads,
+				threads.size(),
+				corePoolSize,
+				maxPoolSize))
+		{
+			return;
+		}
+		log.atFinest().log("%s resized to %s", this, poolSizer);
+		while (threads.size() < poolSizer.getTargetPoolSize() && threads.size() < runnableCount && !isShutdown) {
+			startThreadLocked();
+		}
+	}
+
 	@Override public <O> SubmittableFuture<O> execute(SubmittableFuture<O> runnable) {
 		if (isShutdown) {
 			throw new RejectedExecutionException("executor is stopping or stopped");
 		}
+		boolean startedThread;
 		synchronized (threads) {
-			++runnableCount;
-			queue.add(runnable);
-			if (shouldStartNewThreadLocked()) {
-				threads.add(threadFactory.newThread(this::threadRun));
+			if (!offerLocked(runnable)) {
+				throw new RejectedExecutionException("queue is full");
 			}
+			updatePoolSizeLocked();
+			startedThread = shouldStartNewThreadLocked();
+			if (startedThread) {
+				startThreadLocked();
+			}
+		}
+		if (!startedThread) {
+			unparkOneThread();
 		}
 		return runnable;
 	}
 
+	// Enqueues the whole batch under one lock, then starts or unparks one thread per task, up to the pool's size.
+	@Override public void executeBatch(Collection<? extends SubmittableFuture<?>> tasks) {
+		if (isShutdown) {
+			throw new RejectedExecutionException("executor is stopping or stopped");
+		}
+		int offered = 0;
+		int startedThreads = 0;
+		@Nullable RejectedExecutionException rejected = null;
+		synchronized (threads) {
+			for (SubmittableFuture<?> task : tasks) {
+				if (rejected != null) {
+					task.setException(rejected);
+				} else if (offerLocked(task)) {
+					offered++;
+				} else {
+					rejected = new RejectedExecutionException("queue is full");
+					task.setException(rejected);
+				}
+			}
+			updatePoolSizeLocked();
+			while (startedThreads < offered && shouldStartNewThreadLocked()) {
+				startThreadLocked();
+				startedThreads++;
+			}
+		}
+		for (int i = startedThreads; i < offered && !parkedThreads.isEmpty(); i++) {
+			unparkOneThread();
+		}
+	}
+
+	// Returns false if the queue is full.
+	private boolean offerLocked(SubmittableFuture<?> runnable) {
+		boolean sampled = poolSizer != null && sampledTask == null;
+		if (sampled) {
+			sampledTaskQueuedNanos = System.nanoTime();
+			sampledTask = runnable; // before offering, so the thread that polls it sees it's sampled
+		}
+		if (!queue.offer(runnable)) {
+			if (sampled) {
+				sampledTask = null;
+			}
+			return false;
+		}
+		++runnableCount;
+		return true;
+	}
+
 	@Override public void close() {
 		try {
 			synchronized (threads) {
@@ -303,77 +492,146 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 		}
 	}
 
+	// Removes queued tasks that were cancelled, so they stop counting as runnable
 	public void purge() {
 		synchronized (threads) {
-			queue.removeIf(Future::isCancelled);
+			for (SubmittableFuture<?> task : queue) {
+				if (task.isCancelled()) {
+					removeLocked(task);
+				}
+			}
 		}
 	}
 
 	public boolean remove(SubmittableFuture<?> task) {
 		synchronized (threads) {
-			return queue.remove(task);
+			return removeLocked(task);
 		}
 	}
 
+	private boolean removeLocked(SubmittableFuture<?> task) {
+		if (!queue.remove(task)) {
+			return false; // not queued, or a thread already took it
+		}
+		--runnableCount;
+		if (task == sampledTask) {
+			sampledTask = null;
+		}
+		return true;
+	}
+
+	// Returns null once the current thread has been removed from the pool, and should exit.
 	private @Nullable SubmittableFuture<?> threadGetNextRunnable() {
-		try {
-			long idleTimeoutMs;
-			synchronized (threads) {
-				if (isShutdown) {
-					idleTimeoutMs = 0;
-				} else if (threads.size() <= corePoolSize) {
-					idleTimeoutMs = Long.MAX_VALUE;
-				} else {
-					idleTimeoutMs = SystemClock.uptimeMillis() - lastIdleTimeout;
-				}
+		IdleStrategy idleStrategy = this.idleStrategy;
+		long idleSinceMs = SystemClock.uptimeMillis();
+		for (int emptyPolls = 0; ; emptyPolls++) {
+			SubmittableFuture<?> runnable = queue.poll();
+			if (runnable != null) {
+				return runnable;
 			}
-			return (idleTimeoutMs < Long.MAX_VALUE) ? queue.poll(idleTimeoutMs, TimeUnit.MILLISECONDS) : queue.poll();
-		} catch (InterruptedException e) {
-			synchronized (threads) {
-				if (threads.size() > corePoolSize) {
-					long currentUptimeMillis = SystemClock.uptimeMillis();
-					if (currentUptimeMillis - lastIdleTimeout >= keepAliveTimeMs) {
-						if (threads.remove(Thread.currentThread())) {
-							lastIdleTimeout = currentUptimeMillis;
-							threads.notifyAll();
-						}
-						return TIMEOUT_PILL_RUNNABLE;
-					}
-				}
+			boolean pollAgain = idleStrategy.idle(emptyPolls);
+			if (pollAgain && !isShutdown && (emptyPolls & SPINNING_EXIT_CHECK_MASK) != SPINNING_EXIT_CHECK_MASK) {
+				continue;
+			}
+			long keepAliveMs = threadGetKeepAliveMs(idleSinceMs);
+			if (keepAliveMs <= 0) {
 				return null;
+			} else if (!pollAgain) {
+				threadPark(keepAliveMs);
 			}
 		}
 	}
 
-	private void threadRun() {
-		for (; ; ) {
-			try {
-				SubmittableFuture<?> runnable = threadGetNextRunnable();
-				if (runnable == TIMEOUT_PILL_RUNNABLE) {
-					break;
-				}
-				if (runnable == null) {
-					continue;
+	// How much longer the current thread may idle, or 0 if it was just removed from the pool.
+	private long threadGetKeepAliveMs(long idleSinceMs) {
+		synchronized (threads) {
+			updatePoolSizeLocked();
+			long keepAliveMs;
+			if (isShutdown) {
+				keepAliveMs = queue.isEmpty() ? 0 : Long.MAX_VALUE;
+			} else if (threads.size() > corePoolSize) {
+				keepAliveMs = idleSinceMs + keepAliveTimeMs - SystemClock.uptimeMillis();
+				if (poolSizer != null) {
+					// wake at least once per sample interval, to see whether the pool has shrunk
+					keepAliveMs = threads.size() > poolSizer.getTargetPoolSize()
+							? 0
+							: Math.min(keepAliveMs, TimeUnit.NANOSECONDS.toMillis(poolSizer.getSampleIntervalNanos()) + 1);
 				}
+			} else {
+				keepAliveMs = Long.MAX_VALUE;
+			}
+			if (keepAliveMs > 0) {
+				return keepAliveMs;
+			}
+			threads.remove(Thread.currentThread());
+			threads.notifyAll();
+			return 0;
+		}
+	}
+
+	private void threadPark(long timeoutMs) {
+		Thread thread = Thread.currentThread();
+		parkedThreads.addFirst(thread);
+		// re-check after publishing parkedThreads, so a concurrent #execute either is seen here or unparks us
+		if (queue.isEmpty() && !isShutdown) {
+			if (timeoutMs == Long.MAX_VALUE) {
+				LockSupport.park(this);
+			} else {
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+			}
+		}
+		// if #execute already took us out of parkedThreads, then it's already targeted us and no other thread
+		parkedThreads.removeFirstOccurrence(thread);
+		// interrupts only wake idle threads. Shutdown is seen through isShutdown.
+		Thread.interrupted();
+	}
+
+	private void threadRun() {
+		currentExecutor.set(this);
+		try {
+			SubmittableFuture<?> runnable;
+			while ((runnable = threadGetNextRunnable()) != null) {
+				long dequeuedNanos = runnable == sampledTask ? System.nanoTime() : 0;
 				try {
-					for (ExecutorListener listener : listeners) {
-						listener.beforeExecute(runnable);
+					try {
+						for (ExecutorListener listener : listeners) {
+							listener.beforeExecute(runnable);
+						}
+						runnable.run();
+					} catch (RuntimeException e) {
+						runnable.setException(e);
+					}
+					try {
+						for (ExecutorListener listener : listeners) {
+							listener.afterExecute(runnable);
+						}
+					} catch (RuntimeException e) {
+						runnable.setException(e);
 					}
-					runnable.run();
 				} catch (RuntimeException e) {
-					runnable.setException(e);
+					Future.futureConfig.onUnhandledException(e);
 				}
-				try {
+				boolean isIdle;
+				synchronized (threads) {
+					isIdle = --runnableCount == 0;
+					++completedTaskCount;
+					if (poolSizer != null) {
+						if (runnable == sampledTask) {
+							poolSizer.onQueueWait(dequeuedNanos - sampledTaskQueuedNanos);
+							sampledTask = null;
+						}
+						poolSizer.onTaskCompleted();
+						updatePoolSizeLocked();
+					}
+				}
+				if (isIdle) {
 					for (ExecutorListener listener : listeners) {
-						listener.afterExecute(runnable);
+						listener.onIdle();
 					}
-				} catch (RuntimeException e) {
-					runnable.setException(e);
 				}
-			} catch (RuntimeException e) {
-				Future.futureConfig.onUnhandledException(e);
 			}
-			runnableCount--; // TODO merge synchronized
+		} finally {
+			currentExecutor.remove();
 		}
 	}
 
@@ -382,7 +640,12 @@ public class ThreadPoolExecutor implements AndAlsoJavaExecutor {
 			sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
 			if (includeState) {
 				sb.append("[poolSize=").append(threads.size()).append(", queueSize=").append(queue.size()).append(
-						", isShutdown=").append(isShutdown).append(']');
+						", isShutdown=").append(isShutdown);
+				if (poolSizer != null) {
+					sb.append(", poolSizer=");
+					poolSizer.toString(sb);
+				}
+				sb.append(']');
 			}
 		}
 	}
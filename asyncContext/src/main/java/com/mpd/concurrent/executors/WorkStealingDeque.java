@@ -0,0 +1,98 @@
+package com.mpd.concurrent.executors;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A Chase-Lev work-stealing deque.
+ *
+ * <p>Only the owning thread may {@link #push} and {@link #pop}, which work LIFO at the bottom. Any thread may
+ * {@link #steal} the oldest element from the top. None of these lock, and pushing only allocates when the array has to
+ * grow.
+ */
+final class WorkStealingDeque<T> {
+	private static final int INITIAL_CAPACITY = 64;
+	/**
+	 * @noinspection unchecked
+	 */
+	private static final AtomicLongFieldUpdater<WorkStealingDeque<?>> atomicTop =
+			AtomicLongFieldUpdater.newUpdater((Class<WorkStealingDeque<?>>) (Class<?>) WorkStealingDeque.class, "top");
+
+	// the next index to steal. Only ever increases.
+	private volatile long top = 0;
+	// the next index to push. Only written by the owner.
+	private volatile long bottom = 0;
+	private volatile AtomicReferenceArray<T> array = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+	void push(T element) {
+		long bottom = this.bottom;
+		long top = atomicTop.get(this);
+		AtomicReferenceArray<T> array = this.array;
+		if (bottom - top >= array.length() - 1) {
+			array = grow(array, bottom, top);
+		}
+		array.set((int) (bottom & (array.length() - 1)), element);
+		this.bottom = bottom + 1;
+	}
+
+	@Nullable T pop() {
+		long bottom = this.bottom - 1;
+		AtomicReferenceArray<T> array = this.array;
+		// publish the claim on the bottom element before reading top, so a racing thief sees it
+		this.bottom = bottom;
+		long top = atomicTop.get(this);
+		if (top > bottom) { // empty
+			this.bottom = bottom + 1;
+			return null;
+		}
+		int index = (int) (bottom & (array.length() - 1));
+		T element = array.get(index);
+		if (top == bottom) { // last element, so race thieves for it
+			if (!atomicTop.compareAndSet(this, top, top + 1)) {
+				element = null;
+			}
+			this.bottom = bottom + 1;
+		}
+		if (element != null) {
+			array.compareAndSet(index, element, null);
+		}
+		return element;
+	}
+
+	@Nullable T steal() {
+		while (true) {
+			long top = atomicTop.get(this);
+			long bottom = this.bottom;
+			if (top >= bottom) {
+				return null;
+			}
+			AtomicReferenceArray<T> array = this.array;
+			int index = (int) (top & (array.length() - 1));
+			T element = array.get(index);
+			if (atomicTop.compareAndSet(this, top, top + 1)) {
+				// the owner can't reuse this slot until top passes it, so this only clears our own element
+				array.compareAndSet(index, element, null);
+				return element;
+			}
+			// lost to the owner or another thief, so try the next element
+		}
+	}
+
+	boolean isEmpty() {
+		return atomicTop.get(this) >= bottom;
+	}
+
+	int size() {
+		return (int) Math.max(bottom - atomicTop.get(this), 0);
+	}
+
+	private AtomicReferenceArray<T> grow(AtomicReferenceArray<T> oldArray, long bottom, long top) {
+		AtomicReferenceArray<T> newArray = new AtomicReferenceArray<>(oldArray.length() * 2);
+		for (long i = top; i < bottom; i++) {
+			newArray.set((int) (i & (newArray.length() - 1)), oldArray.get((int) (i & (oldArray.length() - 1))));
+		}
+		array = newArray;
+		return newArray;
+	}
+}
@@ -0,0 +1,379 @@
+package com.mpd.concurrent.executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.mpd.concurrent.executors.Executor.threadInExecutorEnum;
+
+import androidx.annotation.NonNull;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.executors.locked.AndAlsoJavaExecutor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.SubmittableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A fixed-size pool where each worker has its own deque, so that fan-out doesn't serialize on one shared queue.
+ *
+ * <p>Tasks submitted from a worker go into that worker's "next" slot, so an immediate continuation runs next on the
+ * same thread, and whatever was in the slot is pushed onto the worker's deque. Tasks submitted from other threads go
+ * into a shared injection queue. Idle workers take from the injection queue, and then steal the oldest tasks from other
+ * workers' deques. Workers check the injection queue every {@link #INJECTION_CHECK_INTERVAL} tasks even when they have
+ * local work, so external submissions aren't starved.
+ *
+ * <p>Worker threads are started by the first submission. Workers only lock to go to sleep, and submissions only lock to
+ * wake a sleeping worker.
+ */
+public class WorkStealingExecutor implements AndAlsoJavaExecutor {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	private static final int INJECTION_CHECK_INTERVAL = 61;
+	/**
+	 * @noinspection unchecked
+	 */
+	private static final AtomicReferenceFieldUpdater<Worker, SubmittableFuture<?>> atomicNext =
+			AtomicReferenceFieldUpdater.newUpdater(Worker.class,
+					(Class<SubmittableFuture<?>>) (Class<?>) SubmittableFuture.class,
+					"next");
+	private static final AtomicIntegerFieldUpdater<WorkStealingExecutor> atomicState =
+			AtomicIntegerFieldUpdater.newUpdater(WorkStealingExecutor.class, "state");
+	// The worker that owns the current thread, so submissions from workers don't have to search
+	private static final ThreadLocal<Worker> currentWorker = new ThreadLocal<>();
+
+	private final Worker[] workers;
+	private final ConcurrentLinkedQueue<SubmittableFuture<?>> injectionQueue = new ConcurrentLinkedQueue<>();
+	private final CopyOnWriteArrayList<ExecutorListener> listeners = new CopyOnWriteArrayList<>();
+	// submitted tasks that haven't finished running
+	private final AtomicInteger pendingTasks = new AtomicInteger();
+	private final AtomicInteger liveWorkers = new AtomicInteger();
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	private final ReentrantLock sleepLock = new ReentrantLock();
+	private final Condition workAvailable = sleepLock.newCondition();
+	private final ThreadFactory threadFactory;
+	// written while holding sleepLock
+	private volatile int sleepingWorkers = 0;
+	private volatile @ExecutorState int state = ExecutorState.STATE_STARTING;
+
+	public WorkStealingExecutor(int parallelism) {
+		this(parallelism, Thread::new);
+	}
+
+	public WorkStealingExecutor(int parallelism, ThreadFactory threadFactory) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive, but was " + parallelism);
+		}
+		this.threadFactory = checkNotNull(threadFactory);
+		workers = new Worker[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			workers[i] = new Worker(this);
+		}
+	}
+
+	// Factory methods
+	public static WorkStealingExecutor cpuParallel() {
+		return new WorkStealingExecutor(Runtime.getRuntime().availableProcessors());
+	}
+
+	@Override public int getWidth() {
+		return workers.length;
+	}
+
+	@Override public @ThreadInExecutorEnum int ownsThread(Thread thread) {
+		if (thread == Thread.currentThread()) {
+			Worker worker = currentWorker.get();
+			return threadInExecutorEnum(worker != null && worker.executor == this);
+		}
+		for (Worker worker : workers) {
+			if (worker.thread == thread) {
+				return ThreadInExecutorEnum.THREAD_IN_EXECUTOR;
+			}
+		}
+		return ThreadInExecutorEnum.THREAD_NOT_IN_EXECUTOR;
+	}
+
+	@Override public <O> SubmittableFuture<O> execute(SubmittableFuture<O> task) {
+		if (isShutdown()) {
+			throw new RejectedExecutionException("executor is stopping or stopped");
+		}
+		pendingTasks.incrementAndGet();
+		Worker worker = currentWorker.get();
+		if (worker != null && worker.executor == this) {
+			SubmittableFuture<?> previous = atomicNext.getAndSet(worker, task);
+			if (previous != null) {
+				worker.deque.push(previous);
+			}
+		} else {
+			injectionQueue.add(task);
+			startIfNeeded();
+		}
+		if (sleepingWorkers > 0) {
+			wakeOneWorker();
+		}
+		return task;
+	}
+
+	private void startIfNeeded() {
+		if (state != ExecutorState.STATE_STARTING
+				|| !atomicState.compareAndSet(this, ExecutorState.STATE_STARTING, ExecutorState.STATE_STARTED))
+		{
+			return;
+		}
+		liveWorkers.set(workers.length);
+		for (Worker worker : workers) {
+			Thread thread = threadFactory.newThread(worker);
+			worker.thread = thread;
+			thread.start();
+		}
+	}
+
+	private void wakeOneWorker() {
+		sleepLock.lock();
+		try {
+			workAvailable.signal();
+		} finally {
+			sleepLock.unlock();
+		}
+	}
+
+	private @Nullable SubmittableFuture<?> findTask(Worker worker) {
+		SubmittableFuture<?> task;
+		if (++worker.ticks % INJECTION_CHECK_INTERVAL == 0 && (task = injectionQueue.poll()) != null) {
+			return task;
+		} else if ((task = atomicNext.getAndSet(worker, null)) != null) {
+			return task;
+		} else if ((task = worker.deque.pop()) != null) {
+			return task;
+		} else if ((task = injectionQueue.poll()) != null) {
+			return task;
+		}
+		int start = ThreadLocalRandom.current().nextInt(workers.length);
+		for (int i = 0; i < workers.length; i++) {
+			Worker victim = workers[(start + i) % workers.length];
+			if (victim != worker && (task = victim.deque.steal()) != null) {
+				return task;
+			}
+		}
+		// last resort: a continuation waiting behind a long task on its own worker
+		for (int i = 0; i < workers.length; i++) {
+			Worker victim = workers[(start + i) % workers.length];
+			if (victim != worker && (task = atomicNext.getAndSet(victim, null)) != null) {
+				return task;
+			}
+		}
+		return null;
+	}
+
+	private boolean hasQueuedTasks() {
+		if (!injectionQueue.isEmpty()) {
+			return true;
+		}
+		for (Worker worker : workers) {
+			if (worker.next != null || !worker.deque.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Returns false if the worker should exit.
+	private boolean sleep() {
+		sleepLock.lock();
+		try {
+			sleepingWorkers++;
+			try {
+				// re-check after publishing sleepingWorkers, so a concurrent #execute is either seen here or wakes us
+				if (hasQueuedTasks()) {
+					return true;
+				} else if (isShutdown()) {
+					return false;
+				}
+				workAvailable.await();
+				return true;
+			} finally {
+				sleepingWorkers--;
+			}
+		} catch (InterruptedException e) {
+			return !isShutdown();
+		} finally {
+			sleepLock.unlock();
+		}
+	}
+
+	private void runTask(SubmittableFuture<?> task) {
+		try {
+			try {
+				for (ExecutorListener listener : listeners) {
+					listener.beforeExecute(task);
+				}
+				task.run();
+			} catch (RuntimeException e) {
+				task.setException(e);
+			}
+			try {
+				for (ExecutorListener listener : listeners) {
+					listener.afterExecute(task);
+				}
+			} catch (RuntimeException e) {
+				task.setException(e);
+			}
+		} catch (RuntimeException e) {
+			Future.futureConfig.onUnhandledException(e);
+		}
+		if (pendingTasks.decrementAndGet() == 0) {
+			for (ExecutorListener listener : listeners) {
+				listener.onIdle();
+			}
+		}
+	}
+
+	private void workerRun(Worker worker) {
+		currentWorker.set(worker);
+		try {
+			while (true) {
+				SubmittableFuture<?> task = findTask(worker);
+				if (task != null) {
+					runTask(task);
+				} else if (!sleep()) {
+					break;
+				}
+			}
+		} finally {
+			currentWorker.remove();
+			if (liveWorkers.decrementAndGet() == 0) {
+				state = ExecutorState.STATE_TERMINATED;
+				terminated.countDown();
+				log.atFine().log("%s terminated", this);
+			}
+		}
+	}
+
+	@Override public boolean isIdleNow() {
+		return pendingTasks.get() == 0;
+	}
+
+	@Override public void registerListener(ExecutorListener onIdleCallback) {
+		listeners.add(onIdleCallback);
+		if (isIdleNow()) {
+			onIdleCallback.onIdle();
+		}
+	}
+
+	@Override public boolean unregisterListener(ExecutorListener onIdleCallback) {
+		return listeners.remove(onIdleCallback);
+	}
+
+	@Override public void shutdown() {
+		log.atFine().log("%s telling %s to safely stop async", Thread.currentThread(), this);
+		while (true) {
+			int state = this.state;
+			if (state == ExecutorState.STATE_STARTING) {
+				if (atomicState.compareAndSet(this, state, ExecutorState.STATE_TERMINATED)) {
+					terminated.countDown(); // never started any workers
+					return;
+				}
+			} else if (state == ExecutorState.STATE_STARTED) {
+				if (atomicState.compareAndSet(this, state, ExecutorState.STATE_STOPPING)) {
+					break;
+				}
+			} else {
+				return;
+			}
+		}
+		sleepLock.lock();
+		try {
+			workAvailable.signalAll();
+		} finally {
+			sleepLock.unlock();
+		}
+	}
+
+	@Override public List<Runnable> shutdownNow() {
+		shutdown();
+		List<Runnable> result = new ArrayList<>();
+		SubmittableFuture<?> task;
+		while ((task = injectionQueue.poll()) != null) {
+			result.add(task);
+		}
+		for (Worker worker : workers) {
+			while ((task = worker.deque.steal()) != null) {
+				result.add(task);
+			}
+			if ((task = atomicNext.getAndSet(worker, null)) != null) {
+				result.add(task);
+			}
+			Thread thread = worker.thread;
+			if (thread != null) {
+				thread.interrupt();
+			}
+		}
+		pendingTasks.addAndGet(-result.size());
+		return result;
+	}
+
+	@Override public boolean isShutdown() {
+		int state = this.state;
+		return state == ExecutorState.STATE_STOPPING || state == ExecutorState.STATE_TERMINATED;
+	}
+
+	@Override public boolean isTerminated() {
+		return state == ExecutorState.STATE_TERMINATED;
+	}
+
+	@Override public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return terminated.await(timeout, unit);
+	}
+
+	@Override public void toString(StringBuilder sb, boolean includeState) {
+		sb.append(getClass().getSimpleName()).append('@').append(System.identityHashCode(this));
+		if (includeState) {
+			int queued = injectionQueue.size();
+			for (Worker worker : workers) {
+				queued += worker.deque.size();
+			}
+			sb.append("[parallelism=")
+					.append(workers.length)
+					.append(", pending=")
+					.append(pendingTasks.get())
+					.append(", queued=")
+					.append(queued)
+					.append(", isShutdown=")
+					.append(isShutdown())
+					.append(']');
+		}
+	}
+
+	@NonNull @Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		toString(sb, /* includeState=*/ true);
+		return sb.toString();
+	}
+
+	private static final class Worker implements Runnable {
+		final WorkStealingExecutor executor;
+		final WorkStealingDeque<SubmittableFuture<?>> deque = new WorkStealingDeque<>();
+		// the most recent task submitted from this worker, which it runs next
+		volatile @Nullable SubmittableFuture<?> next;
+		volatile @Nullable Thread thread;
+		// only accessed by this worker's thread
+		int ticks = 0;
+
+		Worker(WorkStealingExecutor executor) {
+			this.executor = executor;
+		}
+
+		@Override public void run() {
+			executor.workerRun(this);
+		}
+	}
+}
@@ -16,7 +16,6 @@ public abstract class AbstractExecutor implements AndAlsoJavaExecutor {
 	protected final CopyOnWriteArrayList<ExecutorListener> listeners = new CopyOnWriteArrayList<>();
 	protected int state;
 	protected BlockingQueue<SubmittableFuture<?>> queue;
-	// TODO: Also add a DelayQueue for scheduled work?
 
 	protected AbstractExecutor(int state) {
 		this.state = state;
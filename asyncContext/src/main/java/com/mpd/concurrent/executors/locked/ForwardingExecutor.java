@@ -35,6 +35,10 @@ public abstract class ForwardingExecutor implements AndAlsoJavaExecutor {
 		return delegate.ownsThread(thread);
 	}
 
+	@Override public int getMaxInlineContinuations() {
+		return delegate.getMaxInlineContinuations();
+	}
+
 	@Override public boolean isIdleNow() {
 		return delegate.isIdleNow();
 	}
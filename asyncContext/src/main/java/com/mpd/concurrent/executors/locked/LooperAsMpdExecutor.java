@@ -14,6 +14,7 @@ import com.google.common.flogger.FluentLogger;
 import com.mpd.concurrent.futures.SchedulableFuture;
 import com.mpd.concurrent.futures.SubmittableFuture;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -23,6 +24,8 @@ public class LooperAsMpdExecutor implements AndAlsoJavaExecutor, IdleHandler {
 	public static final LooperAsMpdExecutor UI_THREAD_EXECUTOR = new LooperAsMpdExecutor(Looper.getMainLooper());
 
 	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	// How long a batch runs before letting the looper's other messages run
+	private static final long BATCH_SLICE_MS = 4;
 
 	private final Handler handler;
 	private final MessageQueue queue;
@@ -149,6 +152,17 @@ public class LooperAsMpdExecutor implements AndAlsoJavaExecutor, IdleHandler {
 		return future;
 	}
 
+	// Posts the whole batch as one message, rather than one per task, which the MessageQueue would insert one at a time.
+	@Override public void executeBatch(Collection<? extends SubmittableFuture<?>> tasks) {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		BatchRunnable batch = new BatchRunnable(ImmutableList.copyOf(tasks));
+		if (!handler.post(batch)) {
+			batch.rejectRemaining();
+		}
+	}
+
 	@Override synchronized public void close() {
 		shutdown();
 		queue.removeIdleHandler(this);
@@ -252,6 +266,36 @@ public class LooperAsMpdExecutor implements AndAlsoJavaExecutor, IdleHandler {
 		return sb.toString();
 	}
 
+	// Runs tasks for up to BATCH_SLICE_MS, then re-posts itself to run the rest.
+	private final class BatchRunnable implements Runnable {
+		private final ImmutableList<SubmittableFuture<?>> tasks;
+		private int next = 0;
+
+		BatchRunnable(ImmutableList<SubmittableFuture<?>> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override public void run() {
+			long sliceEndMillis = SystemClock.uptimeMillis() + BATCH_SLICE_MS;
+			while (next < tasks.size()) {
+				tasks.get(next++).run();
+				if (next < tasks.size() && SystemClock.uptimeMillis() >= sliceEndMillis) {
+					if (!handler.post(this)) {
+						rejectRemaining();
+					}
+					return;
+				}
+			}
+		}
+
+		void rejectRemaining() {
+			RejectedExecutionException e = new RejectedExecutionException();
+			while (next < tasks.size()) {
+				tasks.get(next++).setException(e);
+			}
+		}
+	}
+
 	public static class MainThreadShouldNotShutDownException extends IllegalThreadStateException {}
 
 	public static class CannotWaitForOwnThreadException extends IllegalThreadStateException {}
@@ -24,6 +24,10 @@ public class MpdAsJavaExecutor implements AndAlsoJavaExecutor {
 		return delegate.ownsThread(thread);
 	}
 
+	@Override public int getMaxInlineContinuations() {
+		return delegate.getMaxInlineContinuations();
+	}
+
 	@Override public boolean isIdleNow() {
 		return delegate.isIdleNow();
 	}
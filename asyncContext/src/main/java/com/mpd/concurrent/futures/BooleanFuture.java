@@ -0,0 +1,11 @@
+package com.mpd.concurrent.futures;
+
+// A Future<Boolean> that can hand its result to BooleanFutureListener without boxing it.
+public interface BooleanFuture extends Future<Boolean> {
+	boolean resultNowAsBoolean(); //or throws FutureNotCompleteException, or the completed RuntimeException, or AsyncCheckedException
+
+	// Futures that complete with a primitive notify listeners implementing this instead of #onFutureSucceeded.
+	interface BooleanFutureListener {
+		void onFutureSucceededAsBoolean(Future<?> future, boolean result);
+	}
+}
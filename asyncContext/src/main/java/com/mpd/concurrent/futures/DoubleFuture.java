@@ -0,0 +1,23 @@
+package com.mpd.concurrent.futures;
+
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.atomic.FutureToDoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+
+// A Future<Double> that can hand its result to DoubleFutureListener, and to double-typed transforms, without boxing it.
+public interface DoubleFuture extends Future<Double> {
+	double resultNowAsDouble(); //or throws FutureNotCompleteException, or the completed RuntimeException, or AsyncCheckedException
+
+	default DoubleFuture transformDouble(DoubleUnaryOperator function) {
+		return transformDouble(function, futureConfig.getDefaultExecutor());
+	}
+
+	default DoubleFuture transformDouble(DoubleUnaryOperator function, Executor executor) {
+		return setListener(new FutureToDoubleFunction<>(this, function, executor));
+	}
+
+	// Futures that complete with a primitive notify listeners implementing this instead of #onFutureSucceeded.
+	interface DoubleFutureListener {
+		void onFutureSucceededAsDouble(Future<?> future, double result);
+	}
+}
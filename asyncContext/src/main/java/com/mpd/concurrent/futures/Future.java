@@ -3,17 +3,31 @@ package com.mpd.concurrent.futures;
 import androidx.annotation.NonNull;
 import com.mpd.concurrent.AsyncFunction;
 import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.executors.MoreExecutors;
 import com.mpd.concurrent.futures.FutureListener.RunnableListener;
+import com.mpd.concurrent.futures.atomic.AbstractFusedStage;
+import com.mpd.concurrent.futures.atomic.AbstractSubmittableFuture;
 import com.mpd.concurrent.futures.atomic.EndListener;
+import com.mpd.concurrent.futures.atomic.FanoutListener;
 import com.mpd.concurrent.futures.atomic.FutureAsyncFunction;
 import com.mpd.concurrent.futures.atomic.FutureCatchingAsyncFunction;
 import com.mpd.concurrent.futures.atomic.FutureCatchingFunction;
 import com.mpd.concurrent.futures.atomic.FutureFunction;
 import com.mpd.concurrent.futures.atomic.FutureTimeout;
+import com.mpd.concurrent.futures.atomic.FutureToBooleanFunction;
+import com.mpd.concurrent.futures.atomic.FutureToDoubleFunction;
+import com.mpd.concurrent.futures.atomic.FutureToIntFunction;
+import com.mpd.concurrent.futures.atomic.FutureToLongFunction;
+import com.mpd.concurrent.futures.atomic.FusedCatchingStage;
+import com.mpd.concurrent.futures.atomic.FusedFunctionStage;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -100,11 +114,49 @@ public interface Future<O> extends java.util.concurrent.ScheduledFuture<O> {
 		if (function instanceof FutureFunction) {
 			//noinspection unchecked
 			return setListener((FutureFunction) function);
+		} else if (executor == MoreExecutors.directExecutor() && isDone()) {
+			return ImmediateFuture.transformNow(this, function);
+		}
+		AbstractSubmittableFuture<?> head = AbstractFusedStage.fusableHead(this, executor);
+		if (head != null) {
+			return setListener(new FusedFunctionStage<>(this, head, function, executor));
 		} else {
 			return setListener(new FutureFunction<>(this, function, executor));
 		}
 	}
 
+	default IntFuture transformToInt(ToIntFunction<? super O> function) {
+		return transformToInt(function, futureConfig.getDefaultExecutor());
+	}
+
+	default IntFuture transformToInt(ToIntFunction<? super O> function, Executor executor) {
+		return setListener(new FutureToIntFunction<>(this, function, executor));
+	}
+
+	default LongFuture transformToLong(ToLongFunction<? super O> function) {
+		return transformToLong(function, futureConfig.getDefaultExecutor());
+	}
+
+	default LongFuture transformToLong(ToLongFunction<? super O> function, Executor executor) {
+		return setListener(new FutureToLongFunction<>(this, function, executor));
+	}
+
+	default DoubleFuture transformToDouble(ToDoubleFunction<? super O> function) {
+		return transformToDouble(function, futureConfig.getDefaultExecutor());
+	}
+
+	default DoubleFuture transformToDouble(ToDoubleFunction<? super O> function, Executor executor) {
+		return setListener(new FutureToDoubleFunction<>(this, function, executor));
+	}
+
+	default BooleanFuture transformToBoolean(Predicate<? super O> function) {
+		return transformToBoolean(function, futureConfig.getDefaultExecutor());
+	}
+
+	default BooleanFuture transformToBoolean(Predicate<? super O> function, Executor executor) {
+		return setListener(new FutureToBooleanFunction<>(this, function, executor));
+	}
+
 	default <U> Future<U> transformAsync(AsyncFunction<? super O, U> function, Executor executor) {
 		if (function instanceof FutureAsyncFunction) {
 			//noinspection unchecked
@@ -126,6 +178,12 @@ public interface Future<O> extends java.util.concurrent.ScheduledFuture<O> {
 		if (function instanceof FutureCatchingFunction) {
 			//noinspection unchecked
 			return setListener((FutureCatchingFunction) function);
+		} else if (executor == MoreExecutors.directExecutor() && isDone()) {
+			return ImmediateFuture.catchingNow(this, exceptionClass, function);
+		}
+		AbstractSubmittableFuture<?> head = AbstractFusedStage.fusableHead(this, executor);
+		if (head != null) {
+			return setListener(new FusedCatchingStage<>(this, head, function, exceptionClass, executor));
 		} else {
 			return setListener(new FutureCatchingFunction<>(this, function, exceptionClass, executor));
 		}
@@ -145,7 +203,8 @@ public interface Future<O> extends java.util.concurrent.ScheduledFuture<O> {
 	default Future<O> withTimeout(
 			long timeout, TimeUnit unit, @Nullable Throwable exceptionOnTimeout, boolean interruptOnTimeout)
 	{
-		return setListener(new FutureTimeout<>(this, timeout, unit, exceptionOnTimeout, interruptOnTimeout));
+		// the FutureTimeout sets itself as this future's listener
+		return new FutureTimeout<>(this, timeout, unit, exceptionOnTimeout, interruptOnTimeout);
 	}
 
 	default Future<O> withTimeout(long timeout, TimeUnit unit) {
@@ -160,6 +219,11 @@ public interface Future<O> extends java.util.concurrent.ScheduledFuture<O> {
 		setListener(EndListener.INSTANCE);
 	}
 
+	// Uses up this future's single listener, so that any number of listeners can be added to the result instead.
+	default FanoutListener<O> share() {
+		return setListener(new FanoutListener<>(this));
+	}
+
 	void addPendingString(StringBuilder sb, int maxDepth);
 
 	default String getPendingString(int maxDepth) {
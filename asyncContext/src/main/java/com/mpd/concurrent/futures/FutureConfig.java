@@ -4,11 +4,14 @@ import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
 import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.executors.DelayScheduler;
 import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.executors.HashedWheelTimer;
 import com.mpd.concurrent.executors.locked.JavaAsMpdExecutor;
 import com.mpd.concurrent.executors.locked.LooperAsMpdExecutor;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 public interface FutureConfig {
 	// default executor for future transforms
@@ -18,9 +21,34 @@ public interface FutureConfig {
 	// delay, and after that completes, immediately run the task on themselves.
 	Executor getDelegateScheduledExecutor();
 
+	// Holds Executor#schedule tasks until they're due, and then submits them to their executor.
+	DelayScheduler getDelayScheduler();
+
+	// Timer for Future#withTimeout. Its tasks run on its own thread, so a busy main looper doesn't delay timeouts.
+	HashedWheelTimer getTimeoutTimer();
+
 	// what to do when an unhandled exception occurs. Note that CancellationException should probably be ignored.
 	void onUnhandledException(Throwable exception);
 
+	// How hard to look for futures that are garbage collected without a listener ever being notified.
+	LeakDetectionMode getLeakDetectionMode();
+
+	// When the LeakDetectionMode is SAMPLED, roughly one in this many futures is tracked.
+	int getLeakDetectionSampleRate();
+
+	// When a future completes on a thread owned by its listener's executor, the listener runs inline instead of being
+	// submitted, up to this many times before the thread returns to its executor. Executors may override this.
+	int getMaxInlineContinuations();
+
+	enum LeakDetectionMode {
+		// No futures are tracked, and construction allocates nothing extra. The default, so that only debug builds pay
+		// for tracking, by opting in to one of the others.
+		OFF,
+		// One in #getLeakDetectionSampleRate futures records its construction site and is tracked.
+		SAMPLED,
+		// Every future records its construction site and is tracked. Dramatically slower constructors.
+		FULL,
+	}
 
 	class DefaultFutureConfig implements FutureConfig {
 		private static final FluentLogger log = FluentLogger.forEnclosingClass();
@@ -28,6 +56,16 @@ public interface FutureConfig {
 				AsyncTask.THREAD_POOL_EXECUTOR,
 				Runtime.getRuntime().availableProcessors());
 		static final LooperAsMpdExecutor defaultScheduledExecutor = new LooperAsMpdExecutor(Looper.getMainLooper());
+		// the threads aren't started until the first scheduled task or timeout
+		static final DelayScheduler defaultDelayScheduler = new DelayScheduler("FutureDelayScheduler");
+		static final HashedWheelTimer defaultTimeoutTimer =
+				new HashedWheelTimer("FutureTimeoutTimer", 10, TimeUnit.MILLISECONDS, 512);
+		private static final int DEFAULT_LEAK_DETECTION_SAMPLE_RATE = 1024;
+		private static final int DEFAULT_MAX_INLINE_CONTINUATIONS = 16;
+
+		private volatile LeakDetectionMode leakDetectionMode = LeakDetectionMode.OFF;
+		private volatile int leakDetectionSampleRate = DEFAULT_LEAK_DETECTION_SAMPLE_RATE;
+		private volatile int maxInlineContinuations = DEFAULT_MAX_INLINE_CONTINUATIONS;
 
 		@Override public Executor getDefaultExecutor() {
 			return defaultExecutor;
@@ -37,6 +75,47 @@ public interface FutureConfig {
 			return defaultScheduledExecutor;
 		}
 
+		@Override public DelayScheduler getDelayScheduler() {
+			return defaultDelayScheduler;
+		}
+
+		@Override public HashedWheelTimer getTimeoutTimer() {
+			return defaultTimeoutTimer;
+		}
+
+		@Override public LeakDetectionMode getLeakDetectionMode() {
+			return leakDetectionMode;
+		}
+
+		@Override public int getLeakDetectionSampleRate() {
+			return leakDetectionSampleRate;
+		}
+
+		@Override public int getMaxInlineContinuations() {
+			return maxInlineContinuations;
+		}
+
+		// 0 always submits continuations to their executor
+		public void setMaxInlineContinuations(int maxInlineContinuations) {
+			if (maxInlineContinuations < 0) {
+				throw new IllegalArgumentException("maxInlineContinuations must not be negative, but was "
+						+ maxInlineContinuations);
+			}
+			this.maxInlineContinuations = maxInlineContinuations;
+		}
+
+		public void setLeakDetectionMode(LeakDetectionMode mode) {
+			leakDetectionMode = mode;
+		}
+
+		public void setLeakDetectionMode(LeakDetectionMode mode, int sampleRate) {
+			if (sampleRate < 1) {
+				throw new IllegalArgumentException("sampleRate must be positive, but was " + sampleRate);
+			}
+			leakDetectionSampleRate = sampleRate;
+			leakDetectionMode = mode;
+		}
+
 		private static UncaughtExceptionHandler getBestDelegate(Thread currentThread) {
 			UncaughtExceptionHandler currentThreadHandler = currentThread.getUncaughtExceptionHandler();
 			if (currentThreadHandler != null) {
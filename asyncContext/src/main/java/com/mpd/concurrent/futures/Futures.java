@@ -5,10 +5,13 @@ import static com.mpd.concurrent.executors.MoreExecutors.directExecutor;
 import com.google.common.collect.ImmutableList;
 import com.mpd.concurrent.AsyncCallable;
 import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.DoubleFuture.DoubleFutureListener;
 import com.mpd.concurrent.futures.Future.FutureNotCompleteException;
+import com.mpd.concurrent.futures.LongFuture.LongFutureListener;
 import com.mpd.concurrent.futures.atomic.AbstractFutureCompleteCombiner.VoidFutureCompleteCombiner;
 import com.mpd.concurrent.futures.atomic.AbstractFutureSuccessCombiner;
 import com.mpd.concurrent.futures.atomic.AbstractFutureSuccessCombiner.VoidFutureSuccessCombiner;
+import com.mpd.concurrent.futures.atomic.LazyFuture;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -25,10 +28,11 @@ public final class Futures {
 	}
 
 	public static <O> Future<List<O>> allAsList(Collection<? extends Future<? extends O>> futures) {
-		FuturesAsListCombiner<O> r = new FuturesAsListCombiner<>(futures, directExecutor());
-		for (Future<?> fut : futures) {
-			fut.setListener(r);
+		if (futures.isEmpty()) {
+			return ImmediateFuture.of(ImmutableList.of());
 		}
+		FuturesAsListCombiner<O> r = new FuturesAsListCombiner<>(futures, directExecutor());
+		r.listenToParents();
 		return r;
 	}
 
@@ -37,6 +41,11 @@ public final class Futures {
 		return future.resultNow();
 	}
 
+	// Doesn't call the callable until a consumer sets a listener on the result. See LazyFuture.
+	public static <O> Future<O> lazy(AsyncCallable<O> callable) {
+		return new LazyFuture<>(callable);
+	}
+
 	public static <O> Future<O> immediateCancelledFuture() {
 		return new ImmediateFuture<>(new CancellationException("Futures#immediateCancelledFuture"));
 	}
@@ -46,11 +55,35 @@ public final class Futures {
 	}
 
 	public static <O> Future<O> immediateFuture(O value) {
-		return new ImmediateFuture<>(value);
+		return ImmediateFuture.of(value);
 	}
 
 	public static Future<Void> immediateVoidFuture() {
-		return new ImmediateFuture<>((Void) null);
+		return ImmediateFuture.of(null);
+	}
+
+	public static IntFuture immediateIntFuture(int value) {
+		SettableIntFuture future = new SettableIntFuture();
+		future.setResultAsInt(value);
+		return future;
+	}
+
+	public static LongFuture immediateLongFuture(long value) {
+		SettableLongFuture future = new SettableLongFuture();
+		future.setResultAsLong(value);
+		return future;
+	}
+
+	public static DoubleFuture immediateDoubleFuture(double value) {
+		SettableDoubleFuture future = new SettableDoubleFuture();
+		future.setResultAsDouble(value);
+		return future;
+	}
+
+	public static BooleanFuture immediateBooleanFuture(boolean value) {
+		SettableBooleanFuture future = new SettableBooleanFuture();
+		future.setResultAsBoolean(value);
+		return future;
 	}
 
 	// This only exists for compatibility with Guava
@@ -70,10 +103,11 @@ public final class Futures {
 	}
 
 	public static Future<Void> whenAllComplete(Collection<? extends Future<?>> futures) {
-		VoidFutureCompleteCombiner<?> r = new VoidFutureCompleteCombiner<>(futures);
-		for (Future<?> fut : futures) {
-			fut.setListener(r);
+		if (futures.isEmpty()) {
+			return immediateVoidFuture();
 		}
+		VoidFutureCompleteCombiner<?> r = new VoidFutureCompleteCombiner<>(futures);
+		r.listenToParents();
 		return r;
 	}
 
@@ -82,10 +116,41 @@ public final class Futures {
 	}
 
 	public static Future<Void> whenAllSucceeded(Collection<? extends Future<?>> futures) {
+		if (futures.isEmpty()) {
+			return immediateVoidFuture();
+		}
 		VoidFutureSuccessCombiner<?> r = new VoidFutureSuccessCombiner<>(futures);
-		for (Future<?> fut : futures) {
-			fut.setListener(r);
+		r.listenToParents();
+		return r;
+	}
+
+	// Sums without boxing, or materializing a List<Integer>. The sum is a long, so it can't overflow.
+	public static LongFuture sumInts(Collection<? extends IntFuture> futures) {
+		if (futures.isEmpty()) {
+			return immediateLongFuture(0);
+		}
+		LongSumCombiner<Integer> r = new LongSumCombiner<>(futures);
+		r.listenToParents();
+		return r;
+	}
+
+	// Sums without boxing, or materializing a List<Long>.
+	public static LongFuture sumLongs(Collection<? extends LongFuture> futures) {
+		if (futures.isEmpty()) {
+			return immediateLongFuture(0);
+		}
+		LongSumCombiner<Long> r = new LongSumCombiner<>(futures);
+		r.listenToParents();
+		return r;
+	}
+
+	// Sums without boxing, or materializing a List<Double>.
+	public static DoubleFuture sumDoubles(Collection<? extends DoubleFuture> futures) {
+		if (futures.isEmpty()) {
+			return immediateDoubleFuture(0);
 		}
+		DoubleSumCombiner r = new DoubleSumCombiner(futures);
+		r.listenToParents();
 		return r;
 	}
 
@@ -158,4 +223,90 @@ public final class Futures {
 			setResult(list.build());
 		}
 	}
+
+	public static class LongSumCombiner<I extends Number> extends AbstractFutureSuccessCombiner<I, Long>
+			implements LongFuture
+	{
+		// only read after #finishPrimitiveResult publishes it
+		private long result;
+
+		protected LongSumCombiner(@NonNull Collection<? extends Future<? extends I>> futures)
+		{
+			super(futures, directExecutor());
+		}
+
+		@Override protected void execute() throws Exception {
+			long sum = 0;
+			for (Future<? extends I> future : getParents()) {
+				if (future instanceof LongFuture) {
+					sum += ((LongFuture) future).resultNowAsLong();
+				} else if (future instanceof IntFuture) {
+					sum += ((IntFuture) future).resultNowAsInt();
+				} else {
+					sum += future.resultNow().longValue();
+				}
+			}
+			if (!claimPrimitiveResult()) { // already complete: report it the usual way
+				setResult((Long) sum);
+				return;
+			}
+			result = sum;
+			finishPrimitiveResult();
+		}
+
+		@Override public long resultNowAsLong() {
+			return hasPrimitiveResult() ? result : resultNow();
+		}
+
+		@Override protected Long boxPrimitiveResult() {
+			return result;
+		}
+
+		@Override protected void notifyPrimitiveResult(FutureListener<? super Long> listener) {
+			if (listener instanceof LongFutureListener) {
+				((LongFutureListener) listener).onFutureSucceededAsLong(this, result);
+			} else {
+				listener.onFutureSucceeded(this, result);
+			}
+		}
+	}
+
+	public static class DoubleSumCombiner extends AbstractFutureSuccessCombiner<Double, Double> implements DoubleFuture {
+		// only read after #finishPrimitiveResult publishes it
+		private double result;
+
+		protected DoubleSumCombiner(@NonNull Collection<? extends DoubleFuture> futures)
+		{
+			super(futures, directExecutor());
+		}
+
+		@Override protected void execute() throws Exception {
+			double sum = 0;
+			for (Future<? extends Double> future : getParents()) {
+				sum += ((DoubleFuture) future).resultNowAsDouble();
+			}
+			if (!claimPrimitiveResult()) { // already complete: report it the usual way
+				setResult((Double) sum);
+				return;
+			}
+			result = sum;
+			finishPrimitiveResult();
+		}
+
+		@Override public double resultNowAsDouble() {
+			return hasPrimitiveResult() ? result : resultNow();
+		}
+
+		@Override protected Double boxPrimitiveResult() {
+			return result;
+		}
+
+		@Override protected void notifyPrimitiveResult(FutureListener<? super Double> listener) {
+			if (listener instanceof DoubleFutureListener) {
+				((DoubleFutureListener) listener).onFutureSucceededAsDouble(this, result);
+			} else {
+				listener.onFutureSucceeded(this, result);
+			}
+		}
+	}
 }
@@ -1,9 +1,17 @@
 package com.mpd.concurrent.futures;
 
+import com.google.common.collect.ImmutableList;
 import com.mpd.concurrent.futures.atomic.AbstractFuture;
+import java.util.Collections;
+import java.util.function.Function;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class ImmediateFuture<O> extends AbstractFuture<O> {
+	private static final ConstantFuture<Object> NULL = new ConstantFuture<>(null);
+	private static final ConstantFuture<Boolean> TRUE = new ConstantFuture<>(Boolean.TRUE);
+	private static final ConstantFuture<Boolean> FALSE = new ConstantFuture<>(Boolean.FALSE);
+	private static final ConstantFuture<ImmutableList<Object>> EMPTY_LIST = new ConstantFuture<>(ImmutableList.of());
+
 	public ImmediateFuture(@Nullable O result) {
 		super(result);
 	}
@@ -11,4 +19,80 @@ public class ImmediateFuture<O> extends AbstractFuture<O> {
 	public ImmediateFuture(Throwable exception) {
 		super(exception);
 	}
+
+	// A completed future for the result, reusing a shared instance for null, booleans, and the empty list
+	public static <O> Future<O> of(@Nullable O result) {
+		Object constant;
+		if (result == null) {
+			constant = NULL;
+		} else if (result == Boolean.TRUE) {
+			constant = TRUE;
+		} else if (result == Boolean.FALSE) {
+			constant = FALSE;
+		} else if (result == ImmutableList.of() || result == Collections.emptyList()) {
+			constant = EMPTY_LIST;
+		} else {
+			return new ImmediateFuture<>(result);
+		}
+		//noinspection unchecked
+		return (Future<O>) constant;
+	}
+
+	// #transform of a completed parent on the direct executor, without the listener state machine
+	static <I, O> Future<O> transformNow(Future<? extends I> parent, Function<? super I, ? extends O> function) {
+		parent.setListener(FoldedListener.INSTANCE);
+		Throwable exception = parent.exceptionNow();
+		if (exception != null) {
+			return new ImmediateFuture<>(exception);
+		}
+		try {
+			return of(function.apply(parent.resultNow()));
+		} catch (Throwable e) {
+			return new ImmediateFuture<>(e);
+		}
+	}
+
+	// #catching of a completed parent on the direct executor, without the listener state machine
+	static <E extends Throwable, O> Future<O> catchingNow(
+			Future<? extends O> parent, Class<E> exceptionClass, Function<? super E, ? extends O> function)
+	{
+		parent.setListener(FoldedListener.INSTANCE);
+		Throwable exception = parent.exceptionNow();
+		if (exception == null) {
+			return of(parent.resultNow());
+		} else if (!exceptionClass.isInstance(exception)) {
+			return new ImmediateFuture<>(exception);
+		}
+		try {
+			return of(function.apply(exceptionClass.cast(exception)));
+		} catch (Throwable e) {
+			return new ImmediateFuture<>(e);
+		}
+	}
+
+	// Shared by every caller, so it notifies each listener without storing it
+	private static final class ConstantFuture<O> extends ImmediateFuture<O> {
+		ConstantFuture(@Nullable O result) {
+			super(result);
+		}
+
+		//noinspection MissingSuperCall
+		@Override public <Listener extends FutureListener<? super O>> Listener setListener(Listener listener) {
+			listener.onFutureSucceeded(this, resultNow());
+			return listener;
+		}
+	}
+
+	// Marks a folded parent as handled. Its completion was already passed on to the folded future.
+	private static final class FoldedListener implements FutureListener<Object> {
+		static final FoldedListener INSTANCE = new FoldedListener();
+
+		@Override public void onFutureSucceeded(Future<?> future, Object result) {}
+
+		@Override public void onFutureFailed(Future<?> future, Throwable exception, boolean mayInterruptIfRunning) {}
+
+		@Override public String toString() {
+			return "FoldedListener";
+		}
+	}
 }
@@ -0,0 +1,23 @@
+package com.mpd.concurrent.futures;
+
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.atomic.FutureToIntFunction;
+import java.util.function.IntUnaryOperator;
+
+// A Future<Integer> that can hand its result to IntFutureListener, and to int-typed transforms, without boxing it.
+public interface IntFuture extends Future<Integer> {
+	int resultNowAsInt(); //or throws FutureNotCompleteException, or the completed RuntimeException, or AsyncCheckedException
+
+	default IntFuture transformInt(IntUnaryOperator function) {
+		return transformInt(function, futureConfig.getDefaultExecutor());
+	}
+
+	default IntFuture transformInt(IntUnaryOperator function, Executor executor) {
+		return setListener(new FutureToIntFunction<>(this, function, executor));
+	}
+
+	// Futures that complete with a primitive notify listeners implementing this instead of #onFutureSucceeded.
+	interface IntFutureListener {
+		void onFutureSucceededAsInt(Future<?> future, int result);
+	}
+}
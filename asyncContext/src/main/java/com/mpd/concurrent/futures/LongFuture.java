@@ -0,0 +1,23 @@
+package com.mpd.concurrent.futures;
+
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.atomic.FutureToLongFunction;
+import java.util.function.LongUnaryOperator;
+
+// A Future<Long> that can hand its result to LongFutureListener, and to long-typed transforms, without boxing it.
+public interface LongFuture extends Future<Long> {
+	long resultNowAsLong(); //or throws FutureNotCompleteException, or the completed RuntimeException, or AsyncCheckedException
+
+	default LongFuture transformLong(LongUnaryOperator function) {
+		return transformLong(function, futureConfig.getDefaultExecutor());
+	}
+
+	default LongFuture transformLong(LongUnaryOperator function, Executor executor) {
+		return setListener(new FutureToLongFunction<>(this, function, executor));
+	}
+
+	// Futures that complete with a primitive notify listeners implementing this instead of #onFutureSucceeded.
+	interface LongFutureListener {
+		void onFutureSucceededAsLong(Future<?> future, long result);
+	}
+}
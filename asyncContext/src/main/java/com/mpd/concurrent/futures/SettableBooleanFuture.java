@@ -0,0 +1,33 @@
+package com.mpd.concurrent.futures;
+
+import com.mpd.concurrent.futures.BooleanFuture.BooleanFutureListener;
+
+public class SettableBooleanFuture extends SettableFuture<Boolean> implements BooleanFuture {
+	// only read after #finishPrimitiveResult publishes it
+	private boolean result;
+
+	public boolean setResultAsBoolean(boolean result) {
+		if (!claimPrimitiveResult()) { // already complete: report it the usual way
+			return setResult((Boolean) result);
+		}
+		this.result = result;
+		finishPrimitiveResult();
+		return true;
+	}
+
+	@Override public boolean resultNowAsBoolean() {
+		return hasPrimitiveResult() ? result : resultNow();
+	}
+
+	@Override protected Boolean boxPrimitiveResult() {
+		return result;
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Boolean> listener) {
+		if (listener instanceof BooleanFutureListener) {
+			((BooleanFutureListener) listener).onFutureSucceededAsBoolean(this, result);
+		} else {
+			listener.onFutureSucceeded(this, result);
+		}
+	}
+}
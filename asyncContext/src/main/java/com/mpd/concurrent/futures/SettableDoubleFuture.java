@@ -0,0 +1,33 @@
+package com.mpd.concurrent.futures;
+
+import com.mpd.concurrent.futures.DoubleFuture.DoubleFutureListener;
+
+public class SettableDoubleFuture extends SettableFuture<Double> implements DoubleFuture {
+	// only read after #finishPrimitiveResult publishes it
+	private double result;
+
+	public boolean setResultAsDouble(double result) {
+		if (!claimPrimitiveResult()) { // already complete: report it the usual way
+			return setResult((Double) result);
+		}
+		this.result = result;
+		finishPrimitiveResult();
+		return true;
+	}
+
+	@Override public double resultNowAsDouble() {
+		return hasPrimitiveResult() ? result : resultNow();
+	}
+
+	@Override protected Double boxPrimitiveResult() {
+		return result;
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Double> listener) {
+		if (listener instanceof DoubleFutureListener) {
+			((DoubleFutureListener) listener).onFutureSucceededAsDouble(this, result);
+		} else {
+			listener.onFutureSucceeded(this, result);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.mpd.concurrent.futures;
+
+import com.mpd.concurrent.futures.IntFuture.IntFutureListener;
+
+public class SettableIntFuture extends SettableFuture<Integer> implements IntFuture {
+	// only read after #finishPrimitiveResult publishes it
+	private int result;
+
+	public boolean setResultAsInt(int result) {
+		if (!claimPrimitiveResult()) { // already complete: report it the usual way
+			return setResult((Integer) result);
+		}
+		this.result = result;
+		finishPrimitiveResult();
+		return true;
+	}
+
+	@Override public int resultNowAsInt() {
+		return hasPrimitiveResult() ? result : resultNow();
+	}
+
+	@Override protected Integer boxPrimitiveResult() {
+		return result;
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Integer> listener) {
+		if (listener instanceof IntFutureListener) {
+			((IntFutureListener) listener).onFutureSucceededAsInt(this, result);
+		} else {
+			listener.onFutureSucceeded(this, result);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.mpd.concurrent.futures;
+
+import com.mpd.concurrent.futures.LongFuture.LongFutureListener;
+
+public class SettableLongFuture extends SettableFuture<Long> implements LongFuture {
+	// only read after #finishPrimitiveResult publishes it
+	private long result;
+
+	public boolean setResultAsLong(long result) {
+		if (!claimPrimitiveResult()) { // already complete: report it the usual way
+			return setResult((Long) result);
+		}
+		this.result = result;
+		finishPrimitiveResult();
+		return true;
+	}
+
+	@Override public long resultNowAsLong() {
+		return hasPrimitiveResult() ? result : resultNow();
+	}
+
+	@Override protected Long boxPrimitiveResult() {
+		return result;
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Long> listener) {
+		if (listener instanceof LongFutureListener) {
+			((LongFutureListener) listener).onFutureSucceededAsLong(this, result);
+		} else {
+			listener.onFutureSucceeded(this, result);
+		}
+	}
+}
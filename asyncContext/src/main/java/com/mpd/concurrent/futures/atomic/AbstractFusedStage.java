@@ -0,0 +1,170 @@
+package com.mpd.concurrent.futures.atomic;
+
+import androidx.annotation.CallSuper;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.asyncContext.AsyncContextScope;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.executors.MoreExecutors;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.concurrent.CancellationException;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A transform that was fused into the transform before it, because both run on the same executor.
+ *
+ * <p>A fused stage is not submitted on its own. When the parent completes on the thread that is running the head of
+ * the segment (or on the direct executor), the stage's function runs inline, so a segment of N transforms costs one
+ * submission instead of N. Stages have no AsyncContext scope of their own, and run in the scope the segment was built
+ * in. If the parent completes on some other thread, the stage falls back to submitting its function to the executor.
+ *
+ * <p>Each stage is still a separate Future, so intermediate results stay observable and #addPendingString still
+ * reports each stage's function.
+ */
+public abstract class AbstractFusedStage<I, O> extends AbstractFuture<O> {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+
+	private final Executor executor;
+	private final AsyncContextScope scope;
+	// TODO parent to use stub instead of Nullable?
+	private volatile @Nullable Future<? extends I> parent;
+	private volatile @Nullable AbstractSubmittableFuture<?> head;
+
+	protected AbstractFusedStage(
+			@NonNull Future<? extends I> parent, @NonNull AbstractSubmittableFuture<?> head, @NonNull Executor executor)
+	{
+		this.parent = parent;
+		this.head = head;
+		this.executor = executor;
+		this.scope = AsyncContextScope.getCurrentAsyncContextScope();
+	}
+
+	/**
+	 * Finds the head of the segment that a transform of {@code parent} on {@code executor} can fuse into.
+	 *
+	 * @return the head, or null if the transform must be a normal node
+	 */
+	public static @Nullable AbstractSubmittableFuture<?> fusableHead(Future<?> parent, Executor executor) {
+		AbstractSubmittableFuture<?> head;
+		if (parent instanceof AbstractFusedStage) {
+			AbstractFusedStage<?, ?> stage = (AbstractFusedStage<?, ?>) parent;
+			if (stage.executor != executor) {
+				return null;
+			}
+			head = stage.head;
+		} else if (parent instanceof FutureFunction || parent instanceof FutureCatchingFunction) {
+			if (((AbstractListenerFuture<?>) parent).getPendingExecutor() != executor) { // other executor, or submitted
+				return null;
+			}
+			head = (AbstractSubmittableFuture<?>) parent;
+		} else {
+			return null;
+		}
+		AbstractFuture<?> parentFuture = (AbstractFuture<?>) parent;
+		if (head == null || parentFuture.isDone() || parentFuture.getListener() != null) {
+			return null;
+		}
+		// the fused functions run in the head's scope, so only fuse work built in that same scope
+		if (head.getParentScope() != AsyncContextScope.currentScope.get()) {
+			return null;
+		}
+		return head;
+	}
+
+	protected @Nullable Future<? extends I> getParent() {
+		return parent;
+	}
+
+	// true if this completion needs the stage's function. Otherwise it's passed through inline.
+	protected abstract boolean needsFunction(Throwable exception);
+
+	// completes this future from the parent's completion
+	protected abstract void onParentCompleteFused(
+			@Nullable Object result, Throwable exception, boolean mayInterruptIfRunning) throws Exception;
+
+	@Override protected boolean onParentComplete(
+			Future<?> future, @Nullable Object result, @Nullable Throwable exception, boolean mayInterruptIfRunning)
+	{
+		if (super.onParentComplete(future, result, exception, mayInterruptIfRunning)) {
+			return true;
+		} else if (future != parent || exception == null) {
+			return false;
+		} else if (!needsFunction(exception)) {
+			runStage(result, exception, mayInterruptIfRunning);
+		} else if (canRunInline()) {
+			log.atFinest().log("%s notified %s of completion, so running inline", future, this);
+			runStage(result, exception, mayInterruptIfRunning);
+		} else {
+			log.atFinest().log("%s notified %s of completion on another thread, so submitting to %s",
+					future,
+					this,
+					executor);
+			executor.submit(() -> runStage(result, exception, mayInterruptIfRunning)).end();
+		}
+		return true;
+	}
+
+	private boolean canRunInline() {
+		if (executor == MoreExecutors.directExecutor()) {
+			return true;
+		}
+		AbstractSubmittableFuture<?> head = this.head;
+		return (head != null && head.isRunningInCurrentThread())
+				|| ListenerTrampoline.tryClaimInlineContinuation(executor);
+	}
+
+	private void runStage(@Nullable Object result, Throwable exception, boolean mayInterruptIfRunning) {
+		if (isDone()) { // cancelled while queued
+			return;
+		}
+		AsyncContextScope previousScope = AsyncContextScope.currentScope.get();
+		AsyncContextScope.currentScope.set(scope);
+		try {
+			onParentCompleteFused(result, exception, mayInterruptIfRunning);
+		} catch (Throwable e) {
+			log.atFinest().log("%s stage threw %s", this, e);
+			setException(e);
+		} finally {
+			AsyncContextScope.currentScope.set(previousScope);
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable O result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super O> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		this.parent = null;
+		this.head = null;
+	}
+
+	@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
+		Future<?> parent = this.parent;
+		super.onCancelled(exception, mayInterruptIfRunning);
+		if (parent != null) {
+			parent.cancel(exception, mayInterruptIfRunning);
+		}
+	}
+
+	@Override @CallSuper public void addPendingString(StringBuilder sb, int maxDepth) {
+		Future<?> parent = this.parent;
+		super.addPendingString(sb, maxDepth);
+		if (parent != null && maxDepth > 1) {
+			parent.addPendingString(sb, maxDepth - 1);
+		}
+	}
+
+	@CallSuper protected void toStringAppendState(
+			@Nullable O result, @Nullable Throwable exception, @Nullable Future<? extends O> setAsync, StringBuilder sb)
+	{
+		AbstractSubmittableFuture<?> head = this.head;
+		super.toStringAppendState(result, exception, setAsync, sb);
+		if (head != null) {
+			sb.append(" fusedInto=");
+			head.toString(sb, TO_STRING_NO_STATE);
+		}
+	}
+}
@@ -10,6 +10,7 @@ import com.mpd.concurrent.executors.MoreExecutors;
 import com.mpd.concurrent.futures.Future;
 import com.mpd.concurrent.futures.FutureListener;
 import com.mpd.concurrent.futures.atomic.AbstractListenerFuture.SucceededBeforeParentException;
+import com.mpd.concurrent.futures.atomic.FutureLeakDetector.LeakTracker;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.CancellationException;
@@ -17,20 +18,24 @@ import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 // FutureListener<Object>, because derived classes listen to multiple other futures of various types in addition
 public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Object> {
 	private static final FluentLogger log = FluentLogger.forEnclosingClass();
-	// Enables additional logging for leaked futures, at the expense of dramatically slower constructors.
-	private static final boolean DEBUG_LEAKED_FUTURES = true;
 
 	protected static final long NOT_SCHEDULED = Long.MIN_VALUE;
 	protected static final RuntimeException SUCCESS_EXCEPTION = new SuccessException();
-	private static final int NANOS_PER_MILLI = 1000000;
 	private static final int NANOS_PER_SECOND = 1000000000;
 	private static final ListenerAlreadyDispatched LISTENER_ALREADY_DISPATCHED = new ListenerAlreadyDispatched();
+	// #state of a future that succeeded with null. Every other successful future stores the result itself.
+	private static final Object NULL_RESULT = new NullResult();
+	// #state of a future whose subclass holds the result in a primitive field, so that it's never boxed unless asked for
+	private static final Object PRIMITIVE_RESULT = new PrimitiveResult();
+	// #state while a subclass writes its primitive result, after claiming the completion
+	private static final Object COMPLETING = new Completing();
 	/**
 	 * @noinspection unchecked
 	 */
@@ -39,68 +44,74 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 			AtomicReferenceFieldUpdater.newUpdater((Class<AbstractFuture<?>>) (Class<?>) AbstractFuture.class,
 					(Class<FutureListener<?>>) (Class<?>) FutureListener.class,
 					"listener");
-	// the generic type
 	/**
 	 * @noinspection unchecked
 	 */
-	private static final AtomicReferenceFieldUpdater<AbstractFuture<?>, Future<?>>
-			atomicSetAsync =
+	private static final AtomicReferenceFieldUpdater<AbstractFuture<?>, Object>
+			atomicState =
 			AtomicReferenceFieldUpdater.newUpdater((Class<AbstractFuture<?>>) (Class<?>) AbstractFuture.class,
-					(Class<Future<?>>) (Class<?>) Future.class,
-					"setAsync");
+					Object.class,
+					"state");
 	/**
 	 * @noinspection unchecked
 	 */
-	private static final AtomicReferenceFieldUpdater<AbstractFuture<?>, Throwable>
-			atomicException =
+	private static final AtomicReferenceFieldUpdater<AbstractFuture<?>, Waiter>
+			atomicWaiters =
 			AtomicReferenceFieldUpdater.newUpdater((Class<AbstractFuture<?>>) (Class<?>) AbstractFuture.class,
-					Throwable.class,
-					"exception");
+					Waiter.class,
+					"waiters");
 
 	@SuppressWarnings("ConstantConditions") protected final @Nullable O FAILED_RESULT = null; //pseudo-static
 
-	// TODO listener + setAsync to use stubs instead of Nullable?
+	// TODO listener to use stubs instead of Nullable?
 	private final long scheduledSystemNanoTime;
-	private final @MonotonicNonNull RuntimeException futureConstructionLocation;
-	private volatile @Nullable Future<? extends O> setAsync = null; // TODO: atomicSetAsync
-	private volatile @MonotonicNonNull Throwable exception = null; // TODO: atomicExeption
-	private volatile @MonotonicNonNull O result = null;
-	private volatile @MonotonicNonNull RuntimeException wrappedException = null;
-	private volatile @MonotonicNonNull Throwable wasInterrupted = null;
+	// Only non-null if this future was chosen by the FutureConfig#getLeakDetectionMode
+	private final @Nullable LeakTracker leakTracker;
+	// The "source of truth" for future completeness, so that completion is a single CAS:
+	// null: pending
+	// SetAsync: pending, waiting on the result of another future
+	// COMPLETING: pending, but a primitive result is being written
+	// Failure: failed
+	// NULL_RESULT: succeeded with null
+	// PRIMITIVE_RESULT: succeeded with the result in the subclass's primitive field
+	// anything else: succeeded with that result
+	private volatile @Nullable Object state = null;
+	// Treiber stack of threads blocked in #get. Only #get pushes, so completion is wait-free when nobody is blocked.
+	private volatile @Nullable Waiter waiters = null;
 	private volatile @MonotonicNonNull FutureListener<? super O> listener = null; // TODO: atomicListener
 
 	protected AbstractFuture() {
 		scheduledSystemNanoTime = NOT_SCHEDULED;
-		futureConstructionLocation = DEBUG_LEAKED_FUTURES ? new LeakedFutureException("Future created here") : null;
+		leakTracker = FutureLeakDetector.track(this);
 	}
 
 	@RequiresApi(api = VERSION_CODES.O) protected AbstractFuture(Instant time) {
 		long offsetNanos = Duration.between(Instant.now(), time).toNanos();
 		scheduledSystemNanoTime = offsetNanos + System.nanoTime(); //ensure System.nanoTime() is last for most accuracy.
-		futureConstructionLocation = DEBUG_LEAKED_FUTURES ? new LeakedFutureException("Future created here") : null;
+		leakTracker = FutureLeakDetector.track(this);
 	}
 
 	protected AbstractFuture(long delay, TimeUnit delayUnit) {
 		scheduledSystemNanoTime = System.nanoTime() + delayUnit.toNanos(delay);
-		futureConstructionLocation = DEBUG_LEAKED_FUTURES ? new LeakedFutureException("Future created here") : null;
+		leakTracker = FutureLeakDetector.track(this);
 	}
 
 	protected AbstractFuture(@Nullable O result) {
-		this.exception = SUCCESS_EXCEPTION;
-		this.wrappedException = SUCCESS_EXCEPTION;
-		this.result = result;
+		this.state = (result != null) ? result : NULL_RESULT;
 		scheduledSystemNanoTime = NOT_SCHEDULED;
-		futureConstructionLocation = DEBUG_LEAKED_FUTURES ? new LeakedFutureException("Future created here") : null;
+		leakTracker = FutureLeakDetector.track(this);
+		if (leakTracker != null) {
+			leakTracker.onComplete();
+		}
 	}
 
 	protected AbstractFuture(Throwable exception) {
-		this.exception = exception;
-		this.wrappedException =
-				(exception instanceof RuntimeException)
-						? ((RuntimeException) exception)
-						: (new AsyncCheckedException(exception));
+		this.state = new Failure(exception, NO_INTERRUPT, null);
 		scheduledSystemNanoTime = NOT_SCHEDULED;
-		futureConstructionLocation = DEBUG_LEAKED_FUTURES ? new LeakedFutureException("Future created here") : null;
+		leakTracker = FutureLeakDetector.track(this);
+		if (leakTracker != null) {
+			leakTracker.onComplete();
+		}
 	}
 
 	protected static void toStringAppendLimitedRecursion(StringBuilder sb, @Nullable Object object) {
@@ -118,50 +129,47 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 		}
 	}
 
-	@CallSuper protected void onCompletingLocked(
-			@Nullable O result, Throwable exception, boolean mayInterruptIfRunning)
-	{
-		this.result = result;
-		wasInterrupted = mayInterruptIfRunning ? exception : null;
-		wrappedException = exception instanceof RuntimeException ? (RuntimeException) exception : new AsyncCheckedException(
-				exception);
-	}
-
 	@CallSuper protected boolean setComplete(
 			@Nullable O result, Throwable exception, boolean mayInterruptIfRunning)
 	{
 		try {
-			Throwable oldException;
-			// This is the only real lock in the Futures. It ensures that #result, #interrupted, and #wrapped
-			// are stable after #execption is finalized. It also gives us a way to release Threads blocked by #get.
-
-			synchronized (this) {
-				oldException = atomicException.get(this);
-				// exception is the "source of truth" for future completeness
-				if (oldException == null) {
+			Object oldState;
+			while (true) {
+				oldState = atomicState.get(this);
+				if (oldState != null && !(oldState instanceof SetAsync)) {
+					break;
+				}
+				Object newState;
+				if (exception == SUCCESS_EXCEPTION) {
+					newState = (result != null) ? result : NULL_RESULT;
+				} else {
+					// remember the async work only if we'll need to cancel or interrupt it in #afterDone
+					boolean propagate = mayInterruptIfRunning || exception instanceof CancellationException;
+					newState = new Failure(exception,
+							mayInterruptIfRunning,
+							(propagate && oldState != null) ? ((SetAsync) oldState).future : null);
+				}
+				// we successfully completed the future
+				if (atomicState.compareAndSet(this, oldState, newState)) {
 					if (exception == SUCCESS_EXCEPTION) {
-						log.atFinest().log("Completing %s with success %s", this, result);
+						log.atFinest().log("Completed %s with success %s", this, result);
 					} else {
-						log.atFinest().log(
-								"Completing %s with exception %s (interrupt=%s)",
-								this,
-								exception,
-								mayInterruptIfRunning);
+						log.atFinest().log("Completed %s with exception %s (interrupt=%s)", this, exception, mayInterruptIfRunning);
 					}
-					onCompletingLocked(result, exception, mayInterruptIfRunning);
-					atomicException.set(this, exception);
-					this.notifyAll();
+					releaseWaiters();
+					if (leakTracker != null) {
+						leakTracker.onComplete();
+					}
+					afterDone(result, exception, mayInterruptIfRunning, getListener());
+					return true;
 				}
 			}
-			// we successfully completed the future
-			if (oldException == null) {
-				afterDone(result, exception, mayInterruptIfRunning, getListener());
-				return true;
-			}
 
 			// this future was already completed:
+			Throwable oldException = exceptionOf(oldState);
 			if (exception == SUCCESS_EXCEPTION) {
 				if (oldException == SUCCESS_EXCEPTION) { // if already succeeded, throw FutureSucceededTwiceException
+					Object oldResult = resultOf(oldState);
 					Future.futureConfig.onUnhandledException(new FutureSucceededTwiceException(
 							"setComplete tried to succeed with \""
 									+ result
@@ -170,9 +178,9 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 									+ ") but future \""
 									+ this
 									+ "\" had already succeeded with \""
-									+ this.result
+									+ oldResult
 									+ "\" (@"
-									+ System.identityHashCode(result)
+									+ System.identityHashCode(oldResult)
 									+ ")"));
 				} //else was already failed: silently drop result
 			} else if (exception == oldException) {
@@ -193,6 +201,15 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 		}
 	}
 
+	private void releaseWaiters() {
+		if (atomicWaiters.get(this) == null) { // nobody is blocked in #get
+			return;
+		}
+		for (Waiter waiter = atomicWaiters.getAndSet(this, null); waiter != null; waiter = waiter.next) {
+			waiter.unpark();
+		}
+	}
+
 	@CallSuper protected void afterDone(
 			@Nullable O result, Throwable exception, boolean mayInterruptIfRunning, FutureListener<? super O> listener)
 	{
@@ -204,44 +221,98 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 			log.atFinest().log("%s cancelling with %s", this, exception);
 			onCancelled(((CancellationException) exception), mayInterruptIfRunning);
 		}
-		if (listener != null && atomicListener.compareAndSet(this, listener, LISTENER_ALREADY_DISPATCHED)) {
+		// a racing #setListener may have seen this complete and dispatched the listener itself
+		if (listener != null
+				&& listener != LISTENER_ALREADY_DISPATCHED
+				&& atomicListener.compareAndSet(this, listener, LISTENER_ALREADY_DISPATCHED)) {
 			log.atFinest().log("%s completed. Notifying %s", this, listener);
-			if (exception == SUCCESS_EXCEPTION) {
-				listener.onFutureSucceeded(this, result);
-			} else {
-				listener.onFutureFailed(this, exception, mayInterruptIfRunning);
-			}
+			onListenerDispatched();
+			ListenerTrampoline.dispatch(this, listener);
+		}
+	}
+
+	// Called by the ListenerTrampoline, after this future completed and the listener was claimed
+	void notifyListener(FutureListener<? super O> listener) {
+		Object state = atomicState.get(this);
+		if (state instanceof Failure) {
+			listener.onFutureFailed(this, ((Failure) state).exception, ((Failure) state).interrupted);
+		} else if (state == PRIMITIVE_RESULT) {
+			notifyPrimitiveResult(listener);
+		} else {
+			//noinspection unchecked
+			listener.onFutureSucceeded(this, (O) resultOf(state));
 		}
-		atomicSetAsync.lazySet(this, null);
 	}
 
 	@CallSuper protected boolean setResult(O result) {
 		return setComplete(result, SUCCESS_EXCEPTION, NO_INTERRUPT);
 	}
 
+	/**
+	 * Claims the completion of this future for a primitive result, which the subclass then writes to its own field before
+	 * calling {@link #finishPrimitiveResult}. Claiming first means a losing thread never overwrites the winner's result.
+	 *
+	 * @return false if this future was already complete, or being completed
+	 */
+	protected final boolean claimPrimitiveResult() {
+		while (true) {
+			Object oldState = atomicState.get(this);
+			if (oldState != null && !(oldState instanceof SetAsync)) {
+				return false;
+			} else if (atomicState.compareAndSet(this, oldState, COMPLETING)) {
+				return true;
+			}
+		}
+	}
+
+	// Completes this future, after #claimPrimitiveResult succeeded and the subclass wrote its result
+	protected final void finishPrimitiveResult() {
+		atomicState.set(this, PRIMITIVE_RESULT);
+		log.atFinest().log("Completed %s with primitive success", this);
+		releaseWaiters();
+		if (leakTracker != null) {
+			leakTracker.onComplete();
+		}
+		// the result is only boxed if something asks for it, so #afterDone doesn't receive it
+		afterDone(FAILED_RESULT, SUCCESS_EXCEPTION, NO_INTERRUPT, getListener());
+	}
+
+	protected final boolean hasPrimitiveResult() {
+		return atomicState.get(this) == PRIMITIVE_RESULT;
+	}
+
+	// Only called if this future completed with #finishPrimitiveResult, and something needs the boxed result.
+	protected @Nullable O boxPrimitiveResult() {
+		throw new UnsupportedOperationException(this + " completed with a primitive result, but can't box it");
+	}
+
+	// Subclasses with a primitive result should notify listeners that accept it without boxing.
+	protected void notifyPrimitiveResult(FutureListener<? super O> listener) {
+		listener.onFutureSucceeded(this, boxPrimitiveResult());
+	}
+
 	@CallSuper protected boolean setResult(Future<? extends O> asyncWork) {
-		Throwable oldException = atomicException.get(this);
-		boolean didSetAsync = (oldException == null) && atomicSetAsync.compareAndSet(this, null, asyncWork);
-		oldException = atomicException.get(this);
-		Future<?> oldListener = atomicSetAsync.get(this);
-		if (!didSetAsync && oldListener == asyncWork) {
+		Object oldState = atomicState.get(this);
+		boolean didSetAsync = (oldState == null) && atomicState.compareAndSet(this, null, new SetAsync(asyncWork));
+		if (!didSetAsync) {
+			oldState = atomicState.get(this);
+		}
+		if (!didSetAsync && oldState instanceof SetAsync && ((SetAsync) oldState).future == asyncWork) {
 			log.atFinest().log("Future#setResult called twice on %s with the same %s. Weird, but ok", this, asyncWork);
 			return true;
-		} else if (oldException == SUCCESS_EXCEPTION) {
-			atomicSetAsync.compareAndSet(this, asyncWork, null);
+		} else if (exceptionOf(oldState) == SUCCESS_EXCEPTION) {
 			SetResultCalledAfterSuccessException e = new SetResultCalledAfterSuccessException(
 					"setResult tried to set the result of \""
 							+ this
 							+ "\" with the result of \""
 							+ asyncWork
 							+ "\" but this has already succeeded with \""
-							+ this.result
+							+ resultOf(oldState)
 							+ "\"");
 			handleSetResultFailure(asyncWork, e);
 			Future.futureConfig.onUnhandledException(e);
 			return false;
-		} else if (oldException != null) {
-			atomicSetAsync.compareAndSet(this, asyncWork, null);
+		} else if (oldState instanceof Failure) {
 			log.atFinest().log("%s #setResult(%s) called after already failed, but sometimes that just happens during "
 					+ "cancellation, so we'll just ensure uncaught exceptions get handled", this, asyncWork);
 			SetResultCalledAfterFailureException e = new SetResultCalledAfterFailureException(
@@ -289,34 +360,64 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 	}
 
 	protected @Nullable Future<? extends O> getSetAsync() {
+		Object state = atomicState.get(this);
 		//noinspection unchecked
-		return (@Nullable Future<? extends O>) atomicSetAsync.get(this);
+		return (state instanceof SetAsync) ? (Future<? extends O>) ((SetAsync) state).future : null;
+	}
+
+	private static boolean isDone(@Nullable Object state) {
+		return state != null && state != COMPLETING && !(state instanceof SetAsync);
+	}
+
+	private static @Nullable Throwable exceptionOf(@Nullable Object state) {
+		if (state instanceof Failure) {
+			return ((Failure) state).exception;
+		}
+		return isDone(state) ? SUCCESS_EXCEPTION : null;
+	}
+
+	private @Nullable Object resultOf(@Nullable Object state) {
+		if (state == NULL_RESULT || !isDone(state) || state instanceof Failure) {
+			return null;
+		} else if (state == PRIMITIVE_RESULT) {
+			return boxPrimitiveResult();
+		}
+		return state;
+	}
+
+	// AsyncCheckedException is only allocated when something actually needs to throw the checked exception
+	private static RuntimeException wrap(Throwable exception) {
+		return (exception instanceof RuntimeException)
+				? ((RuntimeException) exception)
+				: (new AsyncCheckedException(exception));
 	}
 
 	@Override public boolean isDone() {
-		return atomicException.get(this) != null;
+		return isDone(atomicState.get(this));
 	}
 
 	@Override public O resultNow() {
-		RuntimeException exception = wrappedException;
-		if (exception == null) {
+		Object state = atomicState.get(this);
+		if (!isDone(state)) {
 			throw new FutureNotCompleteException("resultNow called on incomplete future " + this);
-		} else if (exception == SUCCESS_EXCEPTION) {
-			return result;
-		} else {
+		} else if (state instanceof Failure) {
+			Throwable exception = ((Failure) state).exception;
 			log.atFiner().withStackTrace(StackSize.SMALL).log("Future resultNow throwing %s", exception);
-			throw exception;
+			throw wrap(exception);
+		} else {
+			//noinspection unchecked
+			return (O) resultOf(state);
 		}
 	}
 
 	@Override public @MonotonicNonNull Throwable exceptionNow() {
-		Throwable exception = atomicException.get(this);
-		if (exception == null) {
+		Object state = atomicState.get(this);
+		if (!isDone(state)) {
 			throw new FutureNotCompleteException("exceptionNow called on incomplete future " + this);
-		} else if (exception == SUCCESS_EXCEPTION) {
-			return null;
+		} else if (state instanceof Failure) {
+			return ((Failure) state).exception;
 		} else {
-			return exception;
+			return null;
 		}
 	}
 
@@ -332,54 +433,99 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 	@Override public O get(long timeout, TimeUnit unit) throws TimeoutException {
 		long timeoutNs = unit.toNanos(timeout);
 		long startTimeNanos = System.nanoTime();
-		try {
-			long untilNs = startTimeNanos + timeoutNs;
-			synchronized (this) {
-				while (true) {
-					RuntimeException exception = wrappedException;
-					if (exception == SUCCESS_EXCEPTION) {
-						return result;
-					} else if (exception != null) {
-						log.atFiner().withStackTrace(StackSize.SMALL).log("Future get throwing %s", exception);
-						throw exception;
-					}
-					long remainingNs = untilNs - System.nanoTime();
-					if (remainingNs > 0) {
-						log.atFine().log(
-								"%s blocking for up to %d.%ds, out of a maximum of %d.%ds, waiting for %s to complete",
-								Thread.currentThread(),
-								remainingNs / NANOS_PER_SECOND,
-								remainingNs % NANOS_PER_SECOND,
-								timeoutNs / NANOS_PER_SECOND,
-								timeoutNs % NANOS_PER_SECOND,
-								this);
-						this.wait(remainingNs / NANOS_PER_MILLI, (int) (remainingNs % NANOS_PER_MILLI));
-					} else {
-						long blockedTime = System.nanoTime() - startTimeNanos;
-						throw new TimeoutException(Thread.currentThread()
-								+ " timed out after "
-								+ blockedTime
-								+ "ns out of a "
-								+ "maximum of "
-								+ timeoutNs
-								+ "ns, waiting for "
-								+ this
-								+ " to complete");
-					}
+		long untilNs = startTimeNanos + timeoutNs;
+		@Nullable Waiter waiter = null;
+		while (true) {
+			Object state = atomicState.get(this);
+			if (isDone(state)) {
+				if (waiter != null) {
+					removeWaiter(waiter);
 				}
+				if (state instanceof Failure) {
+					Throwable exception = ((Failure) state).exception;
+					log.atFiner().withStackTrace(StackSize.SMALL).log("Future get throwing %s", exception);
+					throw wrap(exception);
+				}
+				//noinspection unchecked
+				return (O) resultOf(state);
+			}
+			long remainingNs = untilNs - System.nanoTime();
+			if (remainingNs <= 0) {
+				if (waiter != null) {
+					removeWaiter(waiter);
+				}
+				long blockedTime = System.nanoTime() - startTimeNanos;
+				throw new TimeoutException(Thread.currentThread()
+						+ " timed out after "
+						+ blockedTime
+						+ "ns out of a "
+						+ "maximum of "
+						+ timeoutNs
+						+ "ns, waiting for "
+						+ this
+						+ " to complete");
+			}
+			if (waiter == null) {
+				// push ourselves, and then loop to check for completion again, in case we raced with #setComplete
+				waiter = new Waiter();
+				Waiter head;
+				do {
+					head = atomicWaiters.get(this);
+					waiter.next = head;
+				} while (!atomicWaiters.compareAndSet(this, head, waiter));
+				continue;
 			}
-		} catch (InterruptedException e) {
-			long remainingNanos = System.nanoTime() - startTimeNanos;
 			log.atFine().log(
-					"%s interrupted after %d.%ds out of a maximum of %d.%dns, while waiting for %s to complete",
+					"%s blocking for up to %d.%ds, out of a maximum of %d.%ds, waiting for %s to complete",
 					Thread.currentThread(),
-					remainingNanos / NANOS_PER_SECOND,
-					remainingNanos % NANOS_PER_SECOND,
+					remainingNs / NANOS_PER_SECOND,
+					remainingNs % NANOS_PER_SECOND,
 					timeoutNs / NANOS_PER_SECOND,
 					timeoutNs % NANOS_PER_SECOND,
 					this);
-			Thread.currentThread().interrupt();
-			throw new AsyncCheckedException(e);
+			LockSupport.parkNanos(this, remainingNs);
+			if (Thread.interrupted()) {
+				removeWaiter(waiter);
+				long remainingNanos = System.nanoTime() - startTimeNanos;
+				log.atFine().log(
+						"%s interrupted after %d.%ds out of a maximum of %d.%dns, while waiting for %s to complete",
+						Thread.currentThread(),
+						remainingNanos / NANOS_PER_SECOND,
+						remainingNanos % NANOS_PER_SECOND,
+						timeoutNs / NANOS_PER_SECOND,
+						timeoutNs % NANOS_PER_SECOND,
+						this);
+				Thread.currentThread().interrupt();
+				throw new AsyncCheckedException(new InterruptedException(Thread.currentThread()
+						+ " interrupted while waiting for "
+						+ this
+						+ " to complete"));
+			}
+		}
+	}
+
+	// Unlinks every waiter whose thread is gone. Based on Guava's AbstractFuture#removeWaiter.
+	private void removeWaiter(Waiter node) {
+		node.thread = null;
+		restart:
+		while (true) {
+			Waiter pred = null;
+			Waiter curr = atomicWaiters.get(this);
+			while (curr != null) {
+				Waiter succ = curr.next;
+				if (curr.thread != null) {
+					pred = curr;
+				} else if (pred != null) {
+					pred.next = succ;
+					if (pred.thread == null) { // pred was concurrently removed, so we may have relinked a removed node
+						continue restart;
+					}
+				} else if (!atomicWaiters.compareAndSet(this, curr, succ)) {
+					continue restart;
+				}
+				curr = succ;
+			}
+			return;
 		}
 	}
 
@@ -405,23 +551,26 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 					+ "\" already had listener \""
 					+ oldListener);
 		}
-		Throwable exception = atomicException.get(this);
+		Object state = atomicState.get(this);
 		// if this was already complete, then notify the listener immediately
-		if (exception != null && atomicListener.compareAndSet(this, listener, LISTENER_ALREADY_DISPATCHED)) {
+		if (isDone(state) && atomicListener.compareAndSet(this, listener, LISTENER_ALREADY_DISPATCHED)) {
 			log.atFinest().log("%s #setListener(%s) succeeded. Since this future was already complete, notifying immediately",
 					this,
 					listener);
-			if (exception == SUCCESS_EXCEPTION) {
-				listener.onFutureSucceeded(this, result);
-			} else {
-				listener.onFutureFailed(this, exception, wasInterrupted != null);
-			}
+			onListenerDispatched();
+			ListenerTrampoline.dispatch(this, listener);
 		} else {
 			log.atFinest().log("%s #setListener(%s) succeeded. Waiting for completion", this, listener);
 		}
 		return listener;
 	}
 
+	private void onListenerDispatched() {
+		if (leakTracker != null) {
+			leakTracker.onListenerDispatched();
+		}
+	}
+
 	@Override @CallSuper public void addPendingString(StringBuilder sb, int maxDepth) {
 		sb.append("\n  at ");
 		Class<?> sourceClass = sourceClass();
@@ -481,19 +630,28 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 	}
 
 	protected @Nullable O getResultProtected() {
-		return result;
+		//noinspection unchecked
+		return (O) resultOf(atomicState.get(this));
 	}
 
 	protected @Nullable Throwable getExceptionProtected() {
-		return atomicException.get(this);
+		return exceptionOf(atomicState.get(this));
 	}
 
 	protected @Nullable RuntimeException getWrappedExceptionProtected() {
-		return wrappedException;
+		Throwable exception = exceptionOf(atomicState.get(this));
+		return (exception != null) ? wrap(exception) : null;
 	}
 
 	protected @Nullable Throwable getInterrupt() {
-		return wasInterrupted;
+		Object state = atomicState.get(this);
+		return (state instanceof Failure && ((Failure) state).interrupted) ? ((Failure) state).exception : null;
+	}
+
+	// the async work that was pending when this future was cancelled or interrupted
+	private @Nullable Future<?> getInterruptedAsync() {
+		Object state = atomicState.get(this);
+		return (state instanceof Failure) ? ((Failure) state).async : null;
 	}
 
 	/**
@@ -540,7 +698,7 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 	}
 
 	@CallSuper protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
-		Future<? extends O> setAsync = getSetAsync();
+		Future<?> setAsync = getInterruptedAsync();
 		if (setAsync != null) {
 			setAsync.cancel(exception, mayInterruptIfRunning);
 		}
@@ -605,7 +763,7 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 	}
 
 	@CallSuper protected void interruptTask(Throwable exception) {
-		Throwable realException = atomicException.get(this);
+		Throwable realException = getExceptionProtected();
 		if (exception != realException) {
 			log.atFinest().log("%s originally interrupted %s, but now interrupted with %s", this, realException, exception);
 			setException(new OnFutureCompleteCalledTwiceException("interruptTask called on " + this + " with \""
@@ -616,7 +774,7 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 					+ "\".\nIf caller was attempting to interrupt a future, "
 					+ "then it should call #cancel or #setException or #setComplete instead of #interruptTask.", exception));
 		}
-		Future<?> setAsync = atomicSetAsync.get(this);
+		Future<?> setAsync = getInterruptedAsync();
 		if (setAsync != null) {
 			setAsync.setException(exception, MAY_INTERRUPT);
 		}
@@ -673,18 +831,6 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 		return sb.toString();
 	}
 
-	@Override protected void finalize() throws Throwable {
-		if (atomicListener.get(this) != LISTENER_ALREADY_DISPATCHED) {
-			Future.futureConfig.onUnhandledException(new LeakedFutureException(((atomicException.get(this) == null)
-					? "Completed future \""
-					: "Incomplete future \"")
-					+ this
-					+ "\" was leaked without having a listener set or #end() being called. This silently drops exceptions,"
-					+ " which makes bugs virtually impossible to detect, diagnose, or debug.", futureConstructionLocation));
-		}
-		super.finalize();
-	}
-
 	protected static final class ListenerAlreadyDispatched implements FutureListener<Object> {
 		@Override public void onFutureSucceeded(Future<?> future, Object result) {
 			throw new UnsupportedOperationException("ListenerAlreadyDispatched should never be called");
@@ -695,6 +841,59 @@ public abstract class AbstractFuture<O> implements Future<O>, FutureListener<Obj
 		}
 	}
 
+	private static final class NullResult {
+		@NonNull @Override public String toString() {
+			return "null";
+		}
+	}
+
+	private static final class PrimitiveResult {
+		@NonNull @Override public String toString() {
+			return "primitive";
+		}
+	}
+
+	private static final class Completing {
+		@NonNull @Override public String toString() {
+			return "completing";
+		}
+	}
+
+	// #state while waiting on the result of another future
+	private static final class SetAsync {
+		final Future<?> future;
+
+		SetAsync(Future<?> future) {
+			this.future = future;
+		}
+	}
+
+	// #state of a failed future. Successful futures don't allocate anything.
+	private static final class Failure {
+		final Throwable exception;
+		final boolean interrupted;
+		final @Nullable Future<?> async;
+
+		Failure(Throwable exception, boolean interrupted, @Nullable Future<?> async) {
+			this.exception = exception;
+			this.interrupted = interrupted;
+			this.async = async;
+		}
+	}
+
+	private static final class Waiter {
+		volatile @Nullable Thread thread = Thread.currentThread();
+		volatile @Nullable Waiter next;
+
+		void unpark() {
+			Thread thread = this.thread;
+			if (thread != null) {
+				this.thread = null;
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+
 	public static class SetResultCalledAfterSuccessException extends IllegalStateException {
 		public SetResultCalledAfterSuccessException() {}
 
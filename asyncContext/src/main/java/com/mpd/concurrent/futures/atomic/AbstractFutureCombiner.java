@@ -0,0 +1,237 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.BooleanFuture.BooleanFutureListener;
+import com.mpd.concurrent.futures.DoubleFuture.DoubleFutureListener;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import com.mpd.concurrent.futures.IntFuture.IntFutureListener;
+import com.mpd.concurrent.futures.LongFuture.LongFutureListener;
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Listens to many parents, and then executes itself on the executor.
+ *
+ * <p>Each parent gets its own {@link ParentSlot} listener that knows the parent's index, so a completion is matched
+ * to its parent in O(1), and completions are counted with an atomic down-counter. With more than
+ * {@link #HIERARCHICAL_THRESHOLD} parents, slots first count down a counter shared with {@link #GROUP_SIZE} siblings,
+ * and only the last slot of each group counts down the combiner, which spreads contention across many counters.
+ *
+ * <p>Parents must be attached with {@link #listenToParents} after construction.
+ */
+public abstract class AbstractFutureCombiner<I, O> extends AbstractListenerFuture<O> {
+	static final int HIERARCHICAL_THRESHOLD = 8192;
+	static final int GROUP_SIZE = 64;
+
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	/**
+	 * @noinspection unchecked
+	 */
+	private static final AtomicIntegerFieldUpdater<AbstractFutureCombiner<?, ?>> atomicRemaining =
+			AtomicIntegerFieldUpdater.newUpdater((Class<AbstractFutureCombiner<?, ?>>) (Class<?>) AbstractFutureCombiner.class,
+					"remaining");
+
+	// parents when flat, or groups when hierarchical
+	private final int counterUnits;
+	private final boolean hierarchical;
+	private volatile int remaining;
+	// TODO parent to use stub instead of Nullable?
+	private volatile @Nullable ImmutableList<Future<? extends I>> parents;
+
+	protected AbstractFutureCombiner(Future<? extends I>[] futures, Executor executor)
+	{
+		this(ImmutableList.copyOf(futures), executor);
+	}
+
+	protected AbstractFutureCombiner(@NonNull Collection<? extends Future<? extends I>> futures, Executor executor)
+	{
+		super(executor);
+		ImmutableList<Future<? extends I>> parents;
+		if (futures instanceof ImmutableList) {
+			//noinspection unchecked
+			parents = (ImmutableList<Future<? extends I>>) futures;
+		} else {
+			parents = ImmutableList.copyOf(futures);
+		}
+		this.parents = parents;
+		this.hierarchical = parents.size() > HIERARCHICAL_THRESHOLD;
+		this.counterUnits = hierarchical ? (parents.size() + GROUP_SIZE - 1) / GROUP_SIZE : parents.size();
+		this.remaining = counterUnits;
+	}
+
+	// Sets a ParentSlot as the listener of each parent. Parents that are already complete notify immediately.
+	public void listenToParents() {
+		ImmutableList<Future<? extends I>> parents = getParents();
+		SlotGroup group = null;
+		for (int i = 0; i < parents.size(); i++) {
+			if (hierarchical && i % GROUP_SIZE == 0) {
+				group = new SlotGroup(Math.min(GROUP_SIZE, parents.size() - i));
+			}
+			parents.get(i).setListener(new ParentSlot(this, group, i));
+		}
+	}
+
+	protected ImmutableList<Future<? extends I>> getParents() {
+		return checkNotNull(parents);
+	}
+
+	// If true, the parent's completion is passed on immediately, without waiting for the rest of its group.
+	protected abstract boolean isCompletionUrgent(Throwable exception);
+
+	/**
+	 * @return true if this was the last parent (or group of parents) to complete
+	 */
+	protected final boolean countDownParent(Future<?> parent) {
+		int newRemaining = atomicRemaining.decrementAndGet(this);
+		if (newRemaining < 0) {
+			throw new ParentSucceededTwiceException(parent
+					+ " notifying "
+					+ this
+					+ " of completion, but all "
+					+ counterUnits
+					+ " parents had already completed");
+		}
+		return newRemaining == 0;
+	}
+
+	void onSlotComplete(
+			ParentSlot slot, Future<?> parent, @Nullable Object result, Throwable exception, boolean mayInterruptIfRunning)
+	{
+		ImmutableList<Future<? extends I>> parents = this.parents;
+		if (parents != null && parents.get(slot.index) != parent) {
+			setException(new WrongParentFutureException(parent
+					+ " notifying "
+					+ this
+					+ " of completion("
+					+ exception
+					+ ", "
+					+ result
+					+ ") but slot "
+					+ slot.index
+					+ " was listening to "
+					+ parents.get(slot.index)
+					+ ". Failing", exception == SUCCESS_EXCEPTION ? null : exception));
+			return;
+		}
+		if (!isCompletionUrgent(exception) && slot.group != null && !slot.group.countDown()) {
+			log.atFinest().log("%s notified %s of completion, but the rest of its group is still pending", parent, this);
+			return;
+		}
+		if (exception == SUCCESS_EXCEPTION) {
+			onFutureSucceeded(parent, result);
+		} else {
+			onFutureFailed(parent, exception, mayInterruptIfRunning);
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable O result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super O> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		parents = null;
+	}
+
+	@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
+		ImmutableList<Future<? extends I>> parents = this.parents;
+		super.onCancelled(exception, mayInterruptIfRunning);
+		if (parents != null) {
+			for (Future<?> parent : parents) {
+				parent.cancel(exception, mayInterruptIfRunning);
+			}
+		}
+	}
+
+	@CallSuper protected void toStringAppendState(
+			@Nullable O result, @Nullable Throwable exception, @Nullable Future<? extends O> setAsync, StringBuilder sb)
+	{
+		super.toStringAppendState(result, exception, setAsync, sb);
+		sb.append(hierarchical ? " completedGroups=" : " completed=")
+				.append(counterUnits - atomicRemaining.get(this))
+				.append("/")
+				.append(counterUnits);
+	}
+
+	@Override @CallSuper public void addPendingString(StringBuilder sb, int maxDepth) {
+		ImmutableList<Future<? extends I>> parents = this.parents;
+		super.addPendingString(sb, maxDepth);
+		if (parents != null) {
+			for (Future<?> parent : parents) {
+				if (!parent.isDone() && maxDepth > 1) {
+					parent.addPendingString(sb, maxDepth - 1);
+				}
+			}
+		}
+	}
+
+	// The listener of a single parent. Combiners read primitive results from the parents, so those aren't boxed here.
+	static final class ParentSlot
+			implements FutureListener<Object>, IntFutureListener, LongFutureListener, DoubleFutureListener,
+			BooleanFutureListener
+	{
+		private final AbstractFutureCombiner<?, ?> combiner;
+		private final @Nullable SlotGroup group;
+		final int index;
+
+		ParentSlot(AbstractFutureCombiner<?, ?> combiner, @Nullable SlotGroup group, int index) {
+			this.combiner = combiner;
+			this.group = group;
+			this.index = index;
+		}
+
+		@Override public void onFutureSucceeded(Future<?> future, Object result) {
+			combiner.onSlotComplete(this, future, result, SUCCESS_EXCEPTION, NO_INTERRUPT);
+		}
+
+		@Override public void onFutureFailed(Future<?> future, Throwable exception, boolean mayInterruptIfRunning) {
+			combiner.onSlotComplete(this, future, null, exception, mayInterruptIfRunning);
+		}
+
+		@Override public void onFutureSucceededAsInt(Future<?> future, int result) {
+			combiner.onSlotComplete(this, future, null, SUCCESS_EXCEPTION, NO_INTERRUPT);
+		}
+
+		@Override public void onFutureSucceededAsLong(Future<?> future, long result) {
+			combiner.onSlotComplete(this, future, null, SUCCESS_EXCEPTION, NO_INTERRUPT);
+		}
+
+		@Override public void onFutureSucceededAsDouble(Future<?> future, double result) {
+			combiner.onSlotComplete(this, future, null, SUCCESS_EXCEPTION, NO_INTERRUPT);
+		}
+
+		@Override public void onFutureSucceededAsBoolean(Future<?> future, boolean result) {
+			combiner.onSlotComplete(this, future, null, SUCCESS_EXCEPTION, NO_INTERRUPT);
+		}
+
+		@Override public String toString() {
+			return "ParentSlot[" + index + " of " + combiner + "]";
+		}
+	}
+
+	// Counts the completions of up to GROUP_SIZE adjacent parents
+	static final class SlotGroup {
+		private static final AtomicIntegerFieldUpdater<SlotGroup> atomicRemaining =
+				AtomicIntegerFieldUpdater.newUpdater(SlotGroup.class, "remaining");
+
+		private volatile int remaining;
+
+		SlotGroup(int size) {
+			this.remaining = size;
+		}
+
+		boolean countDown() {
+			return atomicRemaining.decrementAndGet(this) == 0;
+		}
+	}
+}
@@ -52,6 +52,11 @@ public abstract class AbstractListenerFuture<O> extends AbstractSubmittableFutur
 		this.executor = executor;
 	}
 
+	// The executor this will be submitted to, or null once it's been submitted
+	@Nullable Executor getPendingExecutor() {
+		return atomicExecutor.get(this);
+	}
+
 	// if it wants to immediately complete the future, then it may call {@link setResult or setException or setComplete}
 	abstract protected boolean shouldQueueExecutionAfterParentComplete(
 			Future<?> parent, @Nullable Object result, @Nullable Throwable exception, boolean mayInterruptIfRunning);
@@ -80,6 +85,12 @@ public abstract class AbstractListenerFuture<O> extends AbstractSubmittableFutur
 			if (interrupt != null) { // interrupted.
 				log.atFinest().log("%s notified %s of completion(%s, %s), but we were already interrupted, so set that now");
 				setException(interrupt, MAY_INTERRUPT);
+			} else if (ListenerTrampoline.tryClaimInlineContinuation(oldExecutor)) {
+				log.atFinest().log("%s notified %s of completion on a thread owned by %s, so running inline",
+						future,
+						this,
+						oldExecutor);
+				runInline();
 			} else {
 				log.atFiner().withStackTrace(StackSize.SMALL).log(
 						"%s notified %s of completion(%s, %s), so submitting to %s",
@@ -107,7 +107,7 @@ public final class AbstractListenerFutures {
 								+ ". Failing", exception),
 						NO_INTERRUPT);
 				return false;
-			} else if (exception != null) {
+			} else if (exception != SUCCESS_EXCEPTION) {
 				setComplete(FAILED_RESULT, exception, mayInterruptIfRunning);
 				return false;
 			} else {
@@ -184,7 +184,7 @@ public final class AbstractListenerFutures {
 								+ ". Failing", exception),
 						NO_INTERRUPT);
 				return false;
-			} else if (exceptionClass.isInstance(exception)) {
+			} else if (exception != SUCCESS_EXCEPTION && exceptionClass.isInstance(exception)) {
 				return true;
 			} else {
 				//noinspection unchecked
@@ -226,9 +226,9 @@ public final class AbstractListenerFutures {
 		 */
 		private static final AtomicIntegerFieldUpdater<TwoParentAbstractListenerFuture<?, ?, ?>>
 				atomicComplete =
-				AtomicIntegerFieldUpdater.newUpdater((Class<TwoParentAbstractListenerFuture<?, ?, ?>>) (Class<?>) AbstractFuture.class,
-						"atomicComplete");
-		private final int completeBitfield = 0; // TODO: completeBitfield
+				AtomicIntegerFieldUpdater.newUpdater((Class<TwoParentAbstractListenerFuture<?, ?, ?>>) (Class<?>) TwoParentAbstractListenerFuture.class,
+						"completeBitfield");
+		private volatile int completeBitfield = 0;
 
 		// TODO parent to use stub instead of Nullable?
 		private volatile @Nullable Future<? extends I1> parent1;
@@ -0,0 +1,69 @@
+package com.mpd.concurrent.futures.atomic;
+
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.BooleanFuture.BooleanFutureListener;
+import com.mpd.concurrent.futures.DoubleFuture.DoubleFutureListener;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.IntFuture.IntFutureListener;
+import com.mpd.concurrent.futures.LongFuture.LongFutureListener;
+import com.mpd.concurrent.futures.atomic.AbstractListenerFutures.SingleParentTransformListenerFuture;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A transform whose result is a primitive, stored as raw bits so that it's never boxed unless asked for.
+ *
+ * <p>Transforms read their parent's result in #execute, so primitive parents notify this without boxing either.
+ */
+public abstract class AbstractPrimitiveTransformFuture<I, O> extends SingleParentTransformListenerFuture<I, O>
+		implements IntFutureListener, LongFutureListener, DoubleFutureListener, BooleanFutureListener
+{
+	// only read after #finishPrimitiveResult publishes it
+	private long resultBits;
+
+	protected AbstractPrimitiveTransformFuture(@NonNull Future<? extends I> parent, Executor executor) {
+		super(parent, executor);
+	}
+
+	protected abstract O boxResultBits(long bits);
+
+	protected final boolean setResultBits(long bits) {
+		if (!claimPrimitiveResult()) { // already complete: report it the usual way
+			return setResult(boxResultBits(bits));
+		}
+		resultBits = bits;
+		finishPrimitiveResult();
+		return true;
+	}
+
+	protected final long getResultBits() {
+		return resultBits;
+	}
+
+	@Override protected O boxPrimitiveResult() {
+		return boxResultBits(resultBits);
+	}
+
+	private void onPrimitiveParentSucceeded(Future<?> future) {
+		if (future == getSetAsync()) {
+			onFutureSucceeded(future, future.resultNow());
+		} else {
+			onFutureSucceeded(future, null);
+		}
+	}
+
+	@Override public void onFutureSucceededAsInt(Future<?> future, int result) {
+		onPrimitiveParentSucceeded(future);
+	}
+
+	@Override public void onFutureSucceededAsLong(Future<?> future, long result) {
+		onPrimitiveParentSucceeded(future);
+	}
+
+	@Override public void onFutureSucceededAsDouble(Future<?> future, double result) {
+		onPrimitiveParentSucceeded(future);
+	}
+
+	@Override public void onFutureSucceededAsBoolean(Future<?> future, boolean result) {
+		onPrimitiveParentSucceeded(future);
+	}
+}
@@ -99,6 +99,11 @@ public abstract class AbstractSubmittableFuture<O> extends AsyncContextScopeFutu
 		}
 	}
 
+	// True while #execute runs on the current thread, including while its completion notifies listeners
+	boolean isRunningInCurrentThread() {
+		return atomicThread.get(this) == Thread.currentThread();
+	}
+
 	@Override public final void run() {
 		try (AsyncContextScope ignored = resumeAsyncContext()) {
 			try {
@@ -113,6 +118,17 @@ public abstract class AbstractSubmittableFuture<O> extends AsyncContextScopeFutu
 		}
 	}
 
+	// Runs this on the current thread while it's running some other future, as if this had been submitted
+	void runInline() {
+		AsyncContextScope previousScope = AsyncContextScope.currentScope.get();
+		AsyncContextScope.currentScope.set(getParentScope()); // the scope this would have been submitted from
+		try {
+			run();
+		} finally {
+			AsyncContextScope.currentScope.set(previousScope);
+		}
+	}
+
 	@CallSuper @Override protected void afterDone(
 			@Nullable O result,
 			@Nullable Throwable exception,
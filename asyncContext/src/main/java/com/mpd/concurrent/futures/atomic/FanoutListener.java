@@ -0,0 +1,206 @@
+package com.mpd.concurrent.futures.atomic;
+
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.AsyncFunction;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The single listener of a shared future, which notifies any number of downstream listeners when it completes.
+ *
+ * <p>Every downstream listener receives the same result instance, so the result should be immutable. Each transform
+ * listens to its own branch of the shared future, so cancelling one of them only cancels its branch, and never the
+ * shared future or the other downstream listeners. To cancel them all, cancel {@link #getSource}.
+ *
+ * <p>If the shared future fails before any listener was added, the failure is reported as unhandled, like
+ * {@link EndListener}. Downstream futures are separate chains, and each still needs its own end.
+ */
+public final class FanoutListener<O> implements FutureListener<O> {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	private static final FutureListener<?>[] NO_LISTENERS = new FutureListener<?>[0];
+	// replaces the listeners once they've been notified, after which new listeners are notified immediately
+	private static final FutureListener<?>[] LISTENERS_DISPATCHED = new FutureListener<?>[0];
+
+	/**
+	 * @noinspection unchecked
+	 */
+	private static final AtomicReferenceFieldUpdater<FanoutListener<?>, FutureListener[]> atomicListeners =
+			AtomicReferenceFieldUpdater.newUpdater((Class<FanoutListener<?>>) (Class<?>) FanoutListener.class,
+					FutureListener[].class,
+					"listeners");
+
+	private final Future<O> source;
+	// copied on every append, so dispatch can iterate a snapshot without locking
+	private volatile FutureListener<?>[] listeners = NO_LISTENERS;
+	// written before LISTENERS_DISPATCHED is published, and only read after it's observed
+	private @Nullable O result;
+	private @Nullable Throwable exception;
+	private boolean mayInterruptIfRunning;
+
+	public FanoutListener(Future<O> source) {
+		this.source = source;
+	}
+
+	public Future<O> getSource() {
+		return source;
+	}
+
+	@SuppressWarnings("UnusedReturnValue") public <Listener extends FutureListener<? super O>> Listener addListener(
+			Listener listener)
+	{
+		FutureListener<?>[] old;
+		do {
+			old = atomicListeners.get(this);
+			if (old == LISTENERS_DISPATCHED) {
+				log.atFinest().log("%s already complete, so notifying %s immediately", this, listener);
+				notify(listener);
+				return listener;
+			}
+		} while (!atomicListeners.compareAndSet(this, old, append(old, listener)));
+		return listener;
+	}
+
+	private static FutureListener<?>[] append(FutureListener<?>[] old, FutureListener<?> listener) {
+		FutureListener<?>[] updated = Arrays.copyOf(old, old.length + 1);
+		updated[old.length] = listener;
+		return updated;
+	}
+
+	public <U> Future<U> transform(Function<? super O, ? extends U> function) {
+		return transform(function, Future.futureConfig.getDefaultExecutor());
+	}
+
+	public <U> Future<U> transform(Function<? super O, ? extends U> function, Executor executor) {
+		Branch<O> branch = addBranch();
+		return branch.setListener(new FutureFunction<>(branch, function, executor));
+	}
+
+	public <U> Future<U> transformAsync(AsyncFunction<? super O, U> function, Executor executor) {
+		Branch<O> branch = addBranch();
+		return branch.setListener(new FutureAsyncFunction<>(branch, function, executor));
+	}
+
+	public <E extends Throwable> Future<O> catching(Class<E> exceptionClass, Function<? super E, ? extends O> fallback) {
+		return catching(exceptionClass, fallback, Future.futureConfig.getDefaultExecutor());
+	}
+
+	public <E extends Throwable> Future<O> catching(
+			Class<E> exceptionClass, Function<? super E, ? extends O> fallback, Executor executor)
+	{
+		Branch<O> branch = addBranch();
+		return branch.setListener(new FutureCatchingFunction<>(branch, fallback, exceptionClass, executor));
+	}
+
+	public <E extends Throwable> Future<O> catchingAsync(
+			Class<E> exceptionClass, AsyncFunction<? super E, O> fallback, Executor executor)
+	{
+		Branch<O> branch = addBranch();
+		return branch.setListener(new FutureCatchingAsyncFunction<>(exceptionClass, branch, fallback, executor));
+	}
+
+	private Branch<O> addBranch() {
+		return addListener(new Branch<>(source));
+	}
+
+	// Reports failures as unhandled, even if other listeners handle them.
+	public void end() {
+		addListener(EndListener.INSTANCE);
+	}
+
+	@Override public void onFutureSucceeded(Future<? extends O> future, O result) {
+		this.result = result;
+		dispatch(future, null, false);
+	}
+
+	@Override public void onFutureFailed(Future<? extends O> future, Throwable exception, boolean mayInterruptIfRunning) {
+		this.exception = exception;
+		this.mayInterruptIfRunning = mayInterruptIfRunning;
+		dispatch(future, exception, mayInterruptIfRunning);
+	}
+
+	private void dispatch(Future<? extends O> future, @Nullable Throwable exception, boolean mayInterruptIfRunning) {
+		if (future != source) {
+			Future.futureConfig.onUnhandledException(new WrongParentFutureException(future
+					+ " notifying "
+					+ this
+					+ " of completion, but was listening to "
+					+ source));
+			return;
+		}
+		FutureListener<?>[] listeners = atomicListeners.getAndSet(this, LISTENERS_DISPATCHED);
+		if (listeners == LISTENERS_DISPATCHED) {
+			Future.futureConfig.onUnhandledException(new OnFutureCompleteCalledTwiceException(source
+					+ " notified "
+					+ this
+					+ " of completion twice"));
+			return;
+		}
+		if (listeners.length == 0 && exception != null) {
+			log.atFinest().log("%s failed before any listeners were added to %s", source, this);
+			Future.futureConfig.onUnhandledException(exception);
+			return;
+		}
+		log.atFinest().log("%s notifying %d listeners of completion of %s", this, listeners.length, source);
+		for (FutureListener<?> listener : listeners) {
+			notify(listener);
+		}
+	}
+
+	private void notify(FutureListener<?> untypedListener) {
+		//noinspection unchecked
+		FutureListener<? super O> listener = (FutureListener<? super O>) untypedListener;
+		try {
+			Throwable exception = this.exception;
+			if (exception != null) {
+				listener.onFutureFailed(source, exception, mayInterruptIfRunning);
+			} else {
+				listener.onFutureSucceeded(source, result);
+			}
+		} catch (RuntimeException e) {
+			log.atFinest().log("%s threw %s when notified by %s", listener, e, this);
+			Future.futureConfig.onUnhandledException(e);
+		}
+	}
+
+	@Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FanoutListener@").append(System.identityHashCode(this)).append("[source=");
+		source.toString(sb, Future.TO_STRING_NO_STATE);
+		FutureListener<?>[] listeners = this.listeners;
+		if (listeners == LISTENERS_DISPATCHED) {
+			sb.append(" dispatched");
+		} else {
+			sb.append(" listeners=").append(listeners.length);
+		}
+		return sb.append(']').toString();
+	}
+
+	// A downstream future's parent, which it may cancel without cancelling the shared future
+	private static final class Branch<O> extends AbstractFuture<O> {
+		private final Future<O> source;
+
+		Branch(Future<O> source) {
+			this.source = source;
+		}
+
+		@Override protected boolean onParentComplete(
+				Future<?> future, @Nullable Object result, @Nullable Throwable exception, boolean mayInterruptIfRunning)
+		{
+			if (future == source && exception != SUCCESS_EXCEPTION && isCancelled()) {
+				return true; // the branch has no consumer, and the other listeners may still handle the failure
+			} else if (super.onParentComplete(future, result, exception, mayInterruptIfRunning)) {
+				return true;
+			} else if (future != source) {
+				return false;
+			}
+			//noinspection unchecked
+			setComplete((O) result, exception, mayInterruptIfRunning);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.function.Function;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// A FutureCatchingFunction that was fused into the transform before it
+public class FusedCatchingStage<E extends Throwable, O> extends AbstractFusedStage<O, O> {
+	private final Class<E> exceptionClass;
+	// TODO function to use stub instead of Nullable?
+	private final Class<? extends Function> functionClass;
+	private volatile @Nullable Function<? super E, ? extends O> function;
+
+	public FusedCatchingStage(
+			@NonNull Future<? extends O> parent,
+			@NonNull AbstractSubmittableFuture<?> head,
+			@NonNull Function<? super E, ? extends O> function,
+			Class<E> exceptionClass,
+			@NonNull Executor executor)
+	{
+		super(parent, head, executor);
+		this.exceptionClass = exceptionClass;
+		this.function = function;
+		this.functionClass = function.getClass();
+	}
+
+	@Override protected boolean needsFunction(Throwable exception) {
+		return exception != SUCCESS_EXCEPTION && exceptionClass.isInstance(exception);
+	}
+
+	@Override protected void onParentCompleteFused(
+			@Nullable Object result, Throwable exception, boolean mayInterruptIfRunning)
+	{
+		if (exception == SUCCESS_EXCEPTION) {
+			//noinspection unchecked
+			setResult((O) result);
+		} else if (exceptionClass.isInstance(exception)) {
+			setResult(checkNotNull(function).apply(exceptionClass.cast(exception)));
+		} else {
+			setException(exception, mayInterruptIfRunning);
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable O result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super O> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		this.function = null;
+	}
+
+	protected Class<?> sourceClass() {
+		return functionClass;
+	}
+
+	protected @Nullable String sourceMethodName() {
+		return "apply";
+	}
+}
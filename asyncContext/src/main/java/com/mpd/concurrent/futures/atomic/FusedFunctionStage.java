@@ -0,0 +1,62 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.function.Function;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// A FutureFunction that was fused into the transform before it
+public class FusedFunctionStage<I, O> extends AbstractFusedStage<I, O> {
+	// TODO function to use stub instead of Nullable?
+	private final Class<? extends Function> functionClass;
+	private volatile @Nullable Function<? super I, ? extends O> function;
+
+	public FusedFunctionStage(
+			@NonNull Future<? extends I> parent,
+			@NonNull AbstractSubmittableFuture<?> head,
+			@NonNull Function<? super I, ? extends O> function,
+			@NonNull Executor executor)
+	{
+		super(parent, head, executor);
+		this.function = function;
+		this.functionClass = function.getClass();
+	}
+
+	@Override protected boolean needsFunction(Throwable exception) {
+		return exception == SUCCESS_EXCEPTION;
+	}
+
+	@Override protected void onParentCompleteFused(
+			@Nullable Object result, Throwable exception, boolean mayInterruptIfRunning)
+	{
+		if (exception != SUCCESS_EXCEPTION) {
+			setException(exception, mayInterruptIfRunning);
+		} else {
+			//noinspection unchecked
+			setResult(checkNotNull(function).apply((I) result));
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable O result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super O> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		this.function = null;
+	}
+
+	protected Class<?> sourceClass() {
+		return functionClass;
+	}
+
+	protected @Nullable String sourceMethodName() {
+		return "apply";
+	}
+}
@@ -0,0 +1,104 @@
+package com.mpd.concurrent.futures.atomic;
+
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureConfig;
+import com.mpd.concurrent.futures.atomic.AbstractFuture.LeakedFutureException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Tracks a subset of futures with PhantomReferences, and reports the ones that are garbage collected before their
+ * listener was notified. Untracked futures cost nothing, and unlike #finalize, tracked futures don't delay collection.
+ */
+final class FutureLeakDetector {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+
+	private FutureLeakDetector() {}
+
+	static @Nullable LeakTracker track(AbstractFuture<?> future) {
+		FutureConfig config = Future.futureConfig;
+		switch (config.getLeakDetectionMode()) {
+			case OFF:
+				return null;
+			case SAMPLED:
+				int sampleRate = config.getLeakDetectionSampleRate();
+				if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+					return null;
+				}
+				break;
+			case FULL:
+				break;
+		}
+		return Reaper.INSTANCE.track(future);
+	}
+
+	static final class LeakTracker extends PhantomReference<AbstractFuture<?>> {
+		private final String futureClassName;
+		private final LeakedFutureException constructionLocation;
+		private volatile boolean completed = false;
+
+		LeakTracker(AbstractFuture<?> future, ReferenceQueue<AbstractFuture<?>> queue) {
+			super(future, queue);
+			this.futureClassName = future.getClass().getName();
+			this.constructionLocation = new LeakedFutureException("Future created here");
+		}
+
+		void onComplete() {
+			completed = true;
+		}
+
+		void onListenerDispatched() {
+			clear();
+			Reaper.INSTANCE.trackers.remove(this);
+		}
+
+		LeakedFutureException toLeakedException() {
+			return new LeakedFutureException((completed ? "Completed future \"" : "Incomplete future \"")
+					+ futureClassName
+					+ "\" was leaked without having a listener set or #end() being called. This silently drops exceptions,"
+					+ " which makes bugs virtually impossible to detect, diagnose, or debug.", constructionLocation);
+		}
+	}
+
+	// Lazily started on the first tracked future, so OFF never creates the thread.
+	private static final class Reaper implements Runnable {
+		static final Reaper INSTANCE = new Reaper();
+
+		final ReferenceQueue<AbstractFuture<?>> queue = new ReferenceQueue<>();
+		// PhantomReferences are only enqueued if they're still reachable themselves
+		final Set<LeakTracker> trackers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+		private Reaper() {
+			Thread thread = new Thread(this, "FutureLeakDetector");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		LeakTracker track(AbstractFuture<?> future) {
+			LeakTracker tracker = new LeakTracker(future, queue);
+			trackers.add(tracker);
+			return tracker;
+		}
+
+		@Override public void run() {
+			while (true) {
+				LeakTracker tracker;
+				try {
+					tracker = (LeakTracker) queue.remove();
+				} catch (InterruptedException e) {
+					log.atFine().log("%s interrupted. Leak detection continues.", this);
+					continue;
+				}
+				if (trackers.remove(tracker)) {
+					Future.futureConfig.onUnhandledException(tracker.toLeakedException());
+				}
+			}
+		}
+	}
+}
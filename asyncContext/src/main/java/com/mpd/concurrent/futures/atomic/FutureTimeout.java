@@ -1,6 +1,8 @@
 package com.mpd.concurrent.futures.atomic;
 
 import androidx.annotation.CallSuper;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.executors.HashedWheelTimer;
 import com.mpd.concurrent.futures.Future;
 import com.mpd.concurrent.futures.FutureListener;
 import java.util.concurrent.CancellationException;
@@ -9,11 +11,22 @@ import java.util.concurrent.TimeoutException;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-public class FutureTimeout<O> extends AbstractListenerFuture<O> {
-	// TODO parent and exceptionOnTimeout to use stub instead of Nullable?
+/**
+ * Completes with the parent's result, or fails the parent if it doesn't complete before the delay.
+ *
+ * <p>The timeout is registered with {@link com.mpd.concurrent.futures.FutureConfig#getTimeoutTimer()}, and is cancelled
+ * as soon as this completes. The TimeoutException is only created if the timeout actually fires.
+ */
+public class FutureTimeout<O> extends AbstractFuture<O> {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+
+	private final long delay;
+	private final TimeUnit delayUnit;
 	private final boolean interruptOnTimeout;
 	private volatile @Nullable Future<? extends O> parent;
+	// null uses a TimeoutException
 	private volatile @Nullable Throwable exceptionOnTimeout;
+	private volatile HashedWheelTimer.@Nullable Timeout timeout;
 
 	public FutureTimeout(
 			@NonNull Future<? extends O> parent,
@@ -22,24 +35,50 @@ public class FutureTimeout<O> extends AbstractListenerFuture<O> {
 			@Nullable Throwable exceptionOnTimeout,
 			boolean interruptOnTimeout)
 	{
-		super(Future.futureConfig.getDelegateScheduledExecutor(), delay, delayUnit);
+		super(delay, delayUnit);
 		this.parent = parent;
-		this.exceptionOnTimeout = exceptionOnTimeout != null ? exceptionOnTimeout : new TimeoutException(parent
-				+ " timed"
-				+ " out after "
-				+ delay
-				+ delayUnit);
+		this.delay = delay;
+		this.delayUnit = delayUnit;
+		this.exceptionOnTimeout = exceptionOnTimeout;
 		this.interruptOnTimeout = interruptOnTimeout;
 		parent.setListener(this);
-		Future.futureConfig.getDelegateScheduledExecutor().submit(this);
+		if (isDone()) { // parent was already complete
+			return;
+		}
+		HashedWheelTimer.Timeout timeout = Future.futureConfig.getTimeoutTimer().newTimeout(this::onTimeout,
+				delay,
+				delayUnit);
+		this.timeout = timeout;
+		if (isDone()) { // completed before the timeout was published, so afterDone couldn't cancel it
+			timeout.cancel();
+		}
 	}
 
-	@Override protected boolean shouldQueueExecutionAfterParentComplete(
-			Future<?> parent, @Nullable Object result, @Nullable Throwable exception, boolean mayInterruptIfRunning)
+	@Override protected boolean onParentComplete(
+			Future<?> future, @Nullable Object result, @Nullable Throwable exception, boolean mayInterruptIfRunning)
 	{
+		if (super.onParentComplete(future, result, exception, mayInterruptIfRunning)) {
+			return true;
+		} else if (future != parent) {
+			return false;
+		}
 		//noinspection unchecked
 		setComplete((O) result, exception, mayInterruptIfRunning);
-		return false;
+		return true;
+	}
+
+	// runs on the timer's thread
+	private void onTimeout() {
+		Future<?> parent = this.parent;
+		if (parent == null || parent.isDone()) {
+			return;
+		}
+		Throwable exception = exceptionOnTimeout;
+		if (exception == null) {
+			exception = new TimeoutException(parent + " timed out after " + delay + " " + delayUnit);
+		}
+		log.atFinest().log("%s timed out, so failing %s with %s", this, parent, exception);
+		parent.setException(exception, interruptOnTimeout);
 	}
 
 	@CallSuper @Override protected void afterDone(
@@ -49,22 +88,28 @@ public class FutureTimeout<O> extends AbstractListenerFuture<O> {
 			FutureListener<? super O> listener)
 	{
 		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		HashedWheelTimer.Timeout timeout = this.timeout;
+		if (timeout != null) {
+			timeout.cancel();
+			this.timeout = null;
+		}
 		this.parent = null;
 		this.exceptionOnTimeout = null;
 	}
 
-	@Override protected void execute() throws Exception {
+	@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
 		Future<?> parent = this.parent;
+		super.onCancelled(exception, mayInterruptIfRunning);
 		if (parent != null) {
-			parent.setException(exceptionOnTimeout, interruptOnTimeout);
+			parent.cancel(exception, mayInterruptIfRunning);
 		}
 	}
 
-	@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
+	@Override @CallSuper public void addPendingString(StringBuilder sb, int maxDepth) {
 		Future<?> parent = this.parent;
-		super.onCancelled(exception, mayInterruptIfRunning);
-		if (parent != null) {
-			parent.cancel(exception, mayInterruptIfRunning);
+		super.addPendingString(sb, maxDepth);
+		if (parent != null && maxDepth > 1) {
+			parent.addPendingString(sb, maxDepth - 1);
 		}
 	}
 }
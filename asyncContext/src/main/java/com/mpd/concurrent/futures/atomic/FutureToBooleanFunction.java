@@ -0,0 +1,69 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.BooleanFuture;
+import com.mpd.concurrent.futures.BooleanFuture.BooleanFutureListener;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+public class FutureToBooleanFunction<I> extends AbstractPrimitiveTransformFuture<I, Boolean> implements BooleanFuture {
+	// TODO function to use stub instead of Nullable?
+	private final Class<?> functionClass;
+	private volatile @Nullable Predicate<? super I> function;
+
+	public FutureToBooleanFunction(
+			@NonNull Future<? extends I> parent, @NonNull Predicate<? super I> function, @NonNull Executor executor)
+	{
+		super(parent, executor);
+		this.function = function;
+		this.functionClass = function.getClass();
+	}
+
+	@Override protected void execute() {
+		setResultAsBoolean(checkNotNull(function).test(checkNotNull(getParent()).resultNow()));
+	}
+
+	protected boolean setResultAsBoolean(boolean result) {
+		return setResultBits(result ? 1 : 0);
+	}
+
+	@Override public boolean resultNowAsBoolean() {
+		return hasPrimitiveResult() ? getResultBits() != 0 : resultNow();
+	}
+
+	@Override protected Boolean boxResultBits(long bits) {
+		return bits != 0;
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Boolean> listener) {
+		if (listener instanceof BooleanFutureListener) {
+			((BooleanFutureListener) listener).onFutureSucceededAsBoolean(this, getResultBits() != 0);
+		} else {
+			listener.onFutureSucceeded(this, boxPrimitiveResult());
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable Boolean result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super Boolean> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		this.function = null;
+	}
+
+	protected Class<?> sourceClass() {
+		return functionClass;
+	}
+
+	protected @Nullable String sourceMethodName() {
+		return "test";
+	}
+}
@@ -0,0 +1,88 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.DoubleFuture;
+import com.mpd.concurrent.futures.DoubleFuture.DoubleFutureListener;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+public class FutureToDoubleFunction<I> extends AbstractPrimitiveTransformFuture<I, Double> implements DoubleFuture {
+	// TODO function to use stub instead of Nullable?
+	private final Class<?> functionClass;
+	private volatile @Nullable ToDoubleFunction<? super I> function;
+	private volatile @Nullable DoubleUnaryOperator doubleFunction;
+
+	public FutureToDoubleFunction(
+			@NonNull Future<? extends I> parent, @NonNull ToDoubleFunction<? super I> function, @NonNull Executor executor)
+	{
+		super(parent, executor);
+		this.function = function;
+		this.functionClass = function.getClass();
+	}
+
+	// Reads the parent's result without boxing it
+	public FutureToDoubleFunction(
+			@NonNull DoubleFuture parent, @NonNull DoubleUnaryOperator function, @NonNull Executor executor)
+	{
+		//noinspection unchecked
+		super((Future<? extends I>) (Future<?>) parent, executor);
+		this.doubleFunction = function;
+		this.functionClass = function.getClass();
+	}
+
+	@Override protected void execute() {
+		Future<? extends I> parent = checkNotNull(getParent());
+		DoubleUnaryOperator doubleFunction = this.doubleFunction;
+		if (doubleFunction != null) {
+			setResultAsDouble(doubleFunction.applyAsDouble(((DoubleFuture) parent).resultNowAsDouble()));
+		} else {
+			setResultAsDouble(checkNotNull(function).applyAsDouble(parent.resultNow()));
+		}
+	}
+
+	protected boolean setResultAsDouble(double result) {
+		return setResultBits(Double.doubleToRawLongBits(result));
+	}
+
+	@Override public double resultNowAsDouble() {
+		return hasPrimitiveResult() ? Double.longBitsToDouble(getResultBits()) : resultNow();
+	}
+
+	@Override protected Double boxResultBits(long bits) {
+		return Double.longBitsToDouble(bits);
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Double> listener) {
+		if (listener instanceof DoubleFutureListener) {
+			((DoubleFutureListener) listener).onFutureSucceededAsDouble(this, Double.longBitsToDouble(getResultBits()));
+		} else {
+			listener.onFutureSucceeded(this, boxPrimitiveResult());
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable Double result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super Double> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		this.function = null;
+		this.doubleFunction = null;
+	}
+
+	protected Class<?> sourceClass() {
+		return functionClass;
+	}
+
+	protected @Nullable String sourceMethodName() {
+		return "applyAsDouble";
+	}
+}
@@ -0,0 +1,88 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import com.mpd.concurrent.futures.IntFuture;
+import com.mpd.concurrent.futures.IntFuture.IntFutureListener;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+public class FutureToIntFunction<I> extends AbstractPrimitiveTransformFuture<I, Integer> implements IntFuture {
+	// TODO function to use stub instead of Nullable?
+	private final Class<?> functionClass;
+	private volatile @Nullable ToIntFunction<? super I> function;
+	private volatile @Nullable IntUnaryOperator intFunction;
+
+	public FutureToIntFunction(
+			@NonNull Future<? extends I> parent, @NonNull ToIntFunction<? super I> function, @NonNull Executor executor)
+	{
+		super(parent, executor);
+		this.function = function;
+		this.functionClass = function.getClass();
+	}
+
+	// Reads the parent's result without boxing it
+	public FutureToIntFunction(
+			@NonNull IntFuture parent, @NonNull IntUnaryOperator function, @NonNull Executor executor)
+	{
+		//noinspection unchecked
+		super((Future<? extends I>) (Future<?>) parent, executor);
+		this.intFunction = function;
+		this.functionClass = function.getClass();
+	}
+
+	@Override protected void execute() {
+		Future<? extends I> parent = checkNotNull(getParent());
+		IntUnaryOperator intFunction = this.intFunction;
+		if (intFunction != null) {
+			setResultAsInt(intFunction.applyAsInt(((IntFuture) parent).resultNowAsInt()));
+		} else {
+			setResultAsInt(checkNotNull(function).applyAsInt(parent.resultNow()));
+		}
+	}
+
+	protected boolean setResultAsInt(int result) {
+		return setResultBits(result);
+	}
+
+	@Override public int resultNowAsInt() {
+		return hasPrimitiveResult() ? (int) getResultBits() : resultNow();
+	}
+
+	@Override protected Integer boxResultBits(long bits) {
+		return (int) bits;
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Integer> listener) {
+		if (listener instanceof IntFutureListener) {
+			((IntFutureListener) listener).onFutureSucceededAsInt(this, (int) getResultBits());
+		} else {
+			listener.onFutureSucceeded(this, boxPrimitiveResult());
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable Integer result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super Integer> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		this.function = null;
+		this.intFunction = null;
+	}
+
+	protected Class<?> sourceClass() {
+		return functionClass;
+	}
+
+	protected @Nullable String sourceMethodName() {
+		return "applyAsInt";
+	}
+}
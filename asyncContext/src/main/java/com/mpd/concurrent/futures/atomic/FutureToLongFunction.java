@@ -0,0 +1,88 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import androidx.annotation.CallSuper;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import com.mpd.concurrent.futures.LongFuture;
+import com.mpd.concurrent.futures.LongFuture.LongFutureListener;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ToLongFunction;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+public class FutureToLongFunction<I> extends AbstractPrimitiveTransformFuture<I, Long> implements LongFuture {
+	// TODO function to use stub instead of Nullable?
+	private final Class<?> functionClass;
+	private volatile @Nullable ToLongFunction<? super I> function;
+	private volatile @Nullable LongUnaryOperator longFunction;
+
+	public FutureToLongFunction(
+			@NonNull Future<? extends I> parent, @NonNull ToLongFunction<? super I> function, @NonNull Executor executor)
+	{
+		super(parent, executor);
+		this.function = function;
+		this.functionClass = function.getClass();
+	}
+
+	// Reads the parent's result without boxing it
+	public FutureToLongFunction(
+			@NonNull LongFuture parent, @NonNull LongUnaryOperator function, @NonNull Executor executor)
+	{
+		//noinspection unchecked
+		super((Future<? extends I>) (Future<?>) parent, executor);
+		this.longFunction = function;
+		this.functionClass = function.getClass();
+	}
+
+	@Override protected void execute() {
+		Future<? extends I> parent = checkNotNull(getParent());
+		LongUnaryOperator longFunction = this.longFunction;
+		if (longFunction != null) {
+			setResultAsLong(longFunction.applyAsLong(((LongFuture) parent).resultNowAsLong()));
+		} else {
+			setResultAsLong(checkNotNull(function).applyAsLong(parent.resultNow()));
+		}
+	}
+
+	protected boolean setResultAsLong(long result) {
+		return setResultBits(result);
+	}
+
+	@Override public long resultNowAsLong() {
+		return hasPrimitiveResult() ? getResultBits() : resultNow();
+	}
+
+	@Override protected Long boxResultBits(long bits) {
+		return bits;
+	}
+
+	@Override protected void notifyPrimitiveResult(FutureListener<? super Long> listener) {
+		if (listener instanceof LongFutureListener) {
+			((LongFutureListener) listener).onFutureSucceededAsLong(this, getResultBits());
+		} else {
+			listener.onFutureSucceeded(this, boxPrimitiveResult());
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable Long result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super Long> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		this.function = null;
+		this.longFunction = null;
+	}
+
+	protected Class<?> sourceClass() {
+		return functionClass;
+	}
+
+	protected @Nullable String sourceMethodName() {
+		return "applyAsLong";
+	}
+}
@@ -0,0 +1,184 @@
+package com.mpd.concurrent.futures.atomic;
+
+import androidx.annotation.CallSuper;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.AsyncCallable;
+import com.mpd.concurrent.AsyncFunction;
+import com.mpd.concurrent.asyncContext.AsyncContextScope;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A future that doesn't start its work until a consumer sets a listener.
+ *
+ * <p>Setting a real listener starts the work, and this completes with its result. Ending this (or cancelling it)
+ * before then cancels it without ever running the work. Transforms of a lazy future are lazy too, and when one of them
+ * is ended without a consumer, the lazy futures it was waiting on are ended as well. So a speculative chain that's
+ * never consumed never runs any of its work.
+ */
+public class LazyFuture<O> extends AbstractFuture<O> {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	/**
+	 * @noinspection unchecked
+	 */
+	private static final AtomicReferenceFieldUpdater<LazyFuture<?>, AsyncCallable<?>> atomicWork =
+			AtomicReferenceFieldUpdater.newUpdater((Class<LazyFuture<?>>) (Class<?>) LazyFuture.class,
+					(Class<AsyncCallable<?>>) (Class<?>) AsyncCallable.class,
+					"work");
+
+	private final Class<?> workClass;
+	private final AsyncContextScope scope;
+	// null once started or cancelled
+	private volatile @Nullable AsyncCallable<O> work;
+	// the lazy future that #work will consume, if any
+	private volatile @Nullable LazyFuture<?> parent;
+
+	public LazyFuture(@NonNull AsyncCallable<O> work) {
+		this(work, work.getClass(), null);
+	}
+
+	// a lazy transform of parent, where workClass is the transform's function
+	protected LazyFuture(@NonNull AsyncCallable<O> work, Class<?> workClass, @Nullable LazyFuture<?> parent) {
+		this.work = work;
+		this.workClass = workClass;
+		this.parent = parent;
+		this.scope = AsyncContextScope.getCurrentAsyncContextScope();
+	}
+
+	public boolean isStarted() {
+		return atomicWork.get(this) == null && !isDone();
+	}
+
+	@CallSuper @Override public <Listener extends FutureListener<? super O>> Listener setListener(Listener listener) {
+		super.setListener(listener);
+		if (!(listener instanceof EndListener)) {
+			start();
+		} else if (atomicWork.get(this) != null) {
+			log.atFinest().log("%s ended before it was started, so cancelling it", this);
+			cancel(new CancellationException(this + " was ended before anything consumed its result"), NO_INTERRUPT);
+		}
+		return listener;
+	}
+
+	private void start() {
+		//noinspection unchecked
+		AsyncCallable<O> work = (AsyncCallable<O>) atomicWork.getAndSet(this, null);
+		if (work == null) { // already started or cancelled
+			return;
+		}
+		parent = null;
+		log.atFinest().log("%s has a consumer, so starting", this);
+		AsyncContextScope previousScope = AsyncContextScope.currentScope.get();
+		AsyncContextScope.currentScope.set(scope);
+		try {
+			setResult(work.call());
+		} catch (Throwable e) {
+			log.atFinest().log("%s start threw %s", this, e);
+			setException(e);
+		} finally {
+			AsyncContextScope.currentScope.set(previousScope);
+		}
+	}
+
+	// If this never started, forgets its work, and returns the lazy parent that now has no consumer either
+	private @Nullable LazyFuture<?> takeUnneededParent() {
+		if (atomicWork.getAndSet(this, null) == null) {
+			return null;
+		}
+		LazyFuture<?> parent = this.parent;
+		this.parent = null;
+		return parent;
+	}
+
+	// Ends this because its only consumer went away. Returns the next parent to release, so that chains don't recurse.
+	private @Nullable LazyFuture<?> releaseFromConsumer(CancellationException exception) {
+		// like #takeUnneededParent, but a root has no parent, so only the work shows whether this still needs ending
+		if (atomicWork.getAndSet(this, null) == null) {
+			return null; // already started or cancelled, so its listener isn't the consumer that went away
+		}
+		LazyFuture<?> parent = this.parent;
+		this.parent = null;
+		super.setListener(EndListener.INSTANCE);
+		cancel(exception, NO_INTERRUPT);
+		return parent;
+	}
+
+	@CallSuper @Override protected void onCancelled(CancellationException exception, boolean mayInterruptIfRunning) {
+		super.onCancelled(exception, mayInterruptIfRunning);
+		LazyFuture<?> parent = takeUnneededParent();
+		while (parent != null) {
+			parent = parent.releaseFromConsumer(exception);
+		}
+	}
+
+	@CallSuper @Override protected void afterDone(
+			@Nullable O result,
+			@Nullable Throwable exception,
+			boolean mayInterruptIfRunning,
+			FutureListener<? super O> listener)
+	{
+		super.afterDone(result, exception, mayInterruptIfRunning, listener);
+		parent = null;
+	}
+
+	@Override public <U> Future<U> transform(Function<? super O, ? extends U> function, Executor executor) {
+		return new LazyFuture<>(() -> setListener(new FutureFunction<>(this, function, executor)),
+				function.getClass(),
+				this);
+	}
+
+	@Override public <U> Future<U> transformAsync(AsyncFunction<? super O, U> function, Executor executor) {
+		return new LazyFuture<>(() -> setListener(new FutureAsyncFunction<>(this, function, executor)),
+				function.getClass(),
+				this);
+	}
+
+	@Override public <E extends Throwable, FV extends O> Future<O> catching(
+			Class<E> exceptionClass, Function<? super E, FV> function, Executor executor)
+	{
+		return new LazyFuture<>(() -> setListener(new FutureCatchingFunction<>(this, function, exceptionClass, executor)),
+				function.getClass(),
+				this);
+	}
+
+	@Override public <E extends Throwable> Future<? super O> catchingAsync(
+			Class<E> exceptionClass, AsyncFunction<? super E, O> function, Executor executor)
+	{
+		return new LazyFuture<>(() -> setListener(new FutureCatchingAsyncFunction<>(exceptionClass,
+				this,
+				function,
+				executor)), function.getClass(), this);
+	}
+
+	@Override @CallSuper public void addPendingString(StringBuilder sb, int maxDepth) {
+		LazyFuture<?> parent = this.parent;
+		super.addPendingString(sb, maxDepth);
+		if (parent != null && maxDepth > 1) {
+			parent.addPendingString(sb, maxDepth - 1);
+		}
+	}
+
+	protected Class<?> sourceClass() {
+		return workClass;
+	}
+
+	protected @Nullable String sourceMethodName() {
+		return AsyncCallable.class.isAssignableFrom(workClass) ? "call" : "apply";
+	}
+
+	@CallSuper protected void toStringAppendState(
+			@Nullable O result, @Nullable Throwable exception, @Nullable Future<? extends O> setAsync, StringBuilder sb)
+	{
+		boolean unstarted = atomicWork.get(this) != null;
+		super.toStringAppendState(result, exception, setAsync, sb);
+		if (unstarted) {
+			sb.append(" lazy");
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.mpd.concurrent.futures.atomic;
+
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.executors.Executor;
+import com.mpd.concurrent.executors.Executor.ThreadInExecutorEnum;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import java.util.ArrayDeque;
+
+/**
+ * Per-thread queue of listener notifications.
+ *
+ * <p>Notifying a listener usually completes another future, which notifies its own listener, and so on. Rather than
+ * recursing, the outermost notification on each thread drains the rest in a loop, so chains of any length use a
+ * constant amount of stack.
+ *
+ * <p>The trampoline also budgets inline continuations: while draining, a listener whose executor owns this thread may
+ * run immediately instead of being submitted, up to the executor's {@link Executor#getMaxInlineContinuations} per
+ * drain. The budget resets when the outermost notification returns, which is when the thread goes back to its
+ * executor's queue.
+ */
+final class ListenerTrampoline {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	private static final ThreadLocal<ListenerTrampoline> trampolines = new ThreadLocal<ListenerTrampoline>() {
+		@Override protected ListenerTrampoline initialValue() {
+			return new ListenerTrampoline();
+		}
+	};
+
+	// alternating future, listener pairs, so queueing a notification doesn't allocate
+	private final ArrayDeque<Object> pending = new ArrayDeque<>();
+	private boolean draining = false;
+	private int inlineContinuations = 0;
+
+	private ListenerTrampoline() {}
+
+	static <O> void dispatch(AbstractFuture<O> future, FutureListener<? super O> listener) {
+		ListenerTrampoline trampoline = trampolines.get();
+		trampoline.pending.addLast(future);
+		trampoline.pending.addLast(listener);
+		if (trampoline.draining) {
+			log.atFinest().log("%s completed while notifying another listener. Queued notifying %s", future, listener);
+			return;
+		}
+		trampoline.draining = true;
+		try {
+			trampoline.drain();
+		} finally {
+			// only non-empty if reporting a listener's exception threw, and then a later dispatch mustn't run stale pairs
+			trampoline.pending.clear();
+			trampoline.draining = false;
+			trampoline.inlineContinuations = 0;
+		}
+	}
+
+	// true if the caller may run a continuation for this executor inline, rather than submitting it
+	static boolean tryClaimInlineContinuation(Executor executor) {
+		ListenerTrampoline trampoline = trampolines.get();
+		if (!trampoline.draining || trampoline.inlineContinuations >= executor.getMaxInlineContinuations()) {
+			return false;
+		}
+		if (executor.ownsThread(Thread.currentThread()) != ThreadInExecutorEnum.THREAD_IN_EXECUTOR) {
+			return false;
+		}
+		trampoline.inlineContinuations++;
+		return true;
+	}
+
+	private void drain() {
+		Object next;
+		while ((next = pending.pollFirst()) != null) {
+			//noinspection unchecked
+			AbstractFuture<Object> future = (AbstractFuture<Object>) next;
+			//noinspection unchecked
+			FutureListener<Object> listener = (FutureListener<Object>) pending.pollFirst();
+			try {
+				future.notifyListener(listener);
+			} catch (Throwable e) { // an Error mustn't strand the notifications queued behind it
+				log.atFinest().log("%s threw %s when notified by %s", listener, e, future);
+				Future.futureConfig.onUnhandledException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+import com.mpd.concurrent.executors.Executor.RunnablePriority;
+import com.mpd.concurrent.executors.Executor.ThreadInExecutorEnum;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class AsyncRateLimiterTest extends TestWithStandardRules {
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final int ACQUISITIONS = 5;
+	private static final int BURST = 2;
+
+	@Test public void reserve_spendsTheBurstThenPacesPermits_andKeepsReservedPermitsForUrgentWork() {
+		AsyncRateLimiter limiter = new AsyncRateLimiter(MoreExecutors.directExecutor(), 1000, 4);
+		limiter.setReservedPermits(RunnablePriority.PRIORITY_UI_USER_WAITING_FOR_RESULT, 2);
+		long now = System.nanoTime();
+
+		// background work may only spend the unreserved half of the burst, and then waits its turn
+		collector.checkThat(limiter.reserve(2, RunnablePriority.PRIORITY_BG_METRICS, now), equalTo(now));
+		collector.checkThat(limiter.reserve(1, RunnablePriority.PRIORITY_BG_METRICS, now), equalTo(now + MS));
+		collector.checkThat(limiter.reserve(1, RunnablePriority.PRIORITY_BG_METRICS, now), equalTo(now + 2 * MS));
+		// urgent work skips the timeline while the reserve lasts
+		collector.checkThat(limiter.reserve(2, RunnablePriority.PRIORITY_UI_USER_WAITING_FOR_RESULT, now), equalTo(now));
+		collector.checkThat(limiter.reserve(1, RunnablePriority.PRIORITY_UI_USER_WAITING_FOR_RESULT, now),
+				equalTo(now + 3 * MS));
+
+		// once idle for longer than the burst takes to accrue, the bucket is full again, but no fuller
+		long later = now + 100 * MS;
+		collector.checkThat(limiter.reserve(4, RunnablePriority.PRIORITY_UI_USER_WAITING_FOR_RESULT, later),
+				equalTo(later));
+		collector.checkThat(limiter.reserve(1, RunnablePriority.PRIORITY_UI_USER_WAITING_FOR_RESULT, later),
+				equalTo(later + MS));
+	}
+
+	@Test public void acquire_completesDelayedAcquisitionsOnTheExecutor_noEarlierThanTheirPermitsAccrue()
+			throws Throwable
+	{
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(2);
+		// listens to a delayed acquisition first, since loading the classes that takes is slow enough to refill the
+		// bucket, or to miss a completion, mid-test
+		Future<Void> warmUp = new AsyncRateLimiter(executor, 1000, 1).acquire(3, RunnablePriority.PRIORITY_DEFAULT);
+		CountDownLatch warmedUp = new CountDownLatch(1);
+		warmUp.setListener(warmedUp::countDown, MoreExecutors.directExecutor());
+		collector.checkThat(warmedUp.await(5, SECONDS), equalTo(true));
+		warmUp.end();
+		long[] doneNanos = new long[ACQUISITIONS];
+		int[] doneThreads = new int[ACQUISITIONS];
+		CountDownLatch notified = new CountDownLatch(ACQUISITIONS - BURST);
+		Runnable[] listeners = new Runnable[ACQUISITIONS];
+		for (int i = BURST; i < ACQUISITIONS; i++) {
+			int index = i;
+			listeners[i] = () -> {
+				doneNanos[index] = System.nanoTime();
+				doneThreads[index] = executor.ownsThread(Thread.currentThread());
+				notified.countDown();
+			};
+		}
+
+		long start = System.nanoTime(); // the limiter's timeline starts no earlier than this
+		AsyncRateLimiter limiter = new AsyncRateLimiter(executor, 10, BURST);
+		@SuppressWarnings("unchecked") Future<Void>[] acquired = new Future[ACQUISITIONS];
+		for (int i = 0; i < ACQUISITIONS; i++) {
+			acquired[i] = limiter.acquire(1, RunnablePriority.PRIORITY_DEFAULT);
+		}
+		// the burst covers the first acquisitions at once, and the rest wait 100ms apart
+		for (int i = 0; i < ACQUISITIONS; i++) {
+			collector.checkThat(acquired[i].isDone(), equalTo(i < BURST));
+		}
+		for (int i = BURST; i < ACQUISITIONS; i++) {
+			acquired[i].setListener(listeners[i], MoreExecutors.directExecutor());
+		}
+		collector.checkThat(notified.await(5, SECONDS), equalTo(true));
+		for (int i = BURST; i < ACQUISITIONS; i++) {
+			collector.checkThat(doneNanos[i] - start, greaterThanOrEqualTo((i + 1 - BURST) * 100 * MS));
+			collector.checkThat(doneThreads[i], equalTo(ThreadInExecutorEnum.THREAD_IN_EXECUTOR));
+		}
+		for (Future<Void> future : acquired) {
+			future.end();
+		}
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+}
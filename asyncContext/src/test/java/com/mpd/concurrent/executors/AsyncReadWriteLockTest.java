@@ -0,0 +1,114 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.mpd.concurrent.executors.AsyncReadWriteLock.Guard;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class AsyncReadWriteLockTest extends TestWithStandardRules {
+	private static final int RELEASE_ROUNDS = 1000;
+
+	@Test public void acquire_readersShare_andQueuedReadersBatchAfterTheWriter() throws Throwable {
+		AsyncReadWriteLock lock = new AsyncReadWriteLock();
+		Future<Guard> reader1 = lock.acquireRead();
+		Future<Guard> reader2 = lock.acquireRead();
+		Future<Guard> writer = lock.acquireWrite();
+		Future<Guard> reader3 = lock.acquireRead(); // queues behind the writer
+		Future<Guard> reader4 = lock.acquireRead();
+		collector.checkThat(reader2.isDone(), equalTo(true));
+		collector.checkThat(reader3.isDone(), equalTo(false));
+
+		reader1.resultNow().release();
+		reader1.end();
+		collector.checkThat(writer.isDone(), equalTo(false));
+		reader2.resultNow().release();
+		reader2.end();
+		collector.checkThat(writer.isDone(), equalTo(true));
+		collector.checkThat(reader3.isDone(), equalTo(false));
+
+		writer.resultNow().release();
+		writer.end();
+		collector.checkThat(reader3.isDone(), equalTo(true));
+		collector.checkThat(reader4.isDone(), equalTo(true));
+		collector.checkThat(lock.getReadLockCount(), equalTo(2));
+		reader3.resultNow().release();
+		reader3.end();
+		reader4.resultNow().release();
+		reader4.end();
+		collector.checkThat(lock.getReadLockCount(), equalTo(0));
+	}
+
+	@Test public void withWriteLock_holdsTheLockUntilTheChainCompletes() throws Throwable {
+		AsyncReadWriteLock lock = new AsyncReadWriteLock();
+		SettableFuture<String> chain = new SettableFuture<>();
+		Future<String> locked = lock.withWriteLock(() -> chain, MoreExecutors.directExecutor());
+		Future<String> reader = lock.withReadLock(() -> Futures.immediateFuture("read"), MoreExecutors.directExecutor());
+		collector.checkThat(lock.isWriteLocked(), equalTo(true));
+		collector.checkThat(reader.isDone(), equalTo(false));
+
+		chain.setResult("written");
+		collector.checkThat(locked.resultNow(), equalTo("written"));
+		locked.end();
+		collector.checkThat(reader.resultNow(), equalTo("read"));
+		reader.end();
+		collector.checkThat(lock.isWriteLocked(), equalTo(false));
+		collector.checkThat(lock.getReadLockCount(), equalTo(0));
+	}
+
+	@Test public void withWriteLock_releasesTheLockBeforePublishingTheResult() throws Throwable {
+		AsyncReadWriteLock lock = new AsyncReadWriteLock();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1);
+		int stillLocked = 0;
+		for (int i = 0; i < RELEASE_ROUNDS; i++) {
+			Future<Integer> locked = lock.withWriteLock(() -> Futures.immediateFuture(1), executor);
+			collector.checkSucceeds(() -> locked.get(5, SECONDS), equalTo(1));
+			locked.end();
+			if (lock.isWriteLocked()) {
+				stillLocked++;
+			}
+		}
+		collector.checkThat("locked after get() returned", stillLocked, equalTo(0));
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void cancelRunningWriter_holdsTheLockUntilItsBodyReturns() throws Throwable {
+		AsyncReadWriteLock lock = new AsyncReadWriteLock();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(2);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean firstReturned = new AtomicBoolean();
+
+		Future<String> first = lock.withWriteLock(() -> {
+			started.countDown();
+			Uninterruptibles.awaitUninterruptibly(release);
+			firstReturned.set(true);
+			return Futures.immediateFuture("first");
+		}, executor);
+		Future<Boolean> second = lock.withWriteLock(() -> Futures.immediateFuture(firstReturned.get()), executor);
+		collector.checkThat(started.await(5, SECONDS), equalTo(true));
+		first.cancel(new CancellationException("test"), false);
+		first.end();
+		Thread.sleep(50);
+		collector.checkThat(lock.isWriteLocked(), equalTo(true));
+		collector.checkThat(second.isDone(), equalTo(false));
+		release.countDown();
+
+		collector.checkSucceeds(() -> second.get(5, SECONDS), equalTo(true));
+		second.end();
+		collector.checkThat(lock.isWriteLocked(), equalTo(false));
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+}
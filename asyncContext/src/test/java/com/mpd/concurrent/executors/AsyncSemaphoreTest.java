@@ -0,0 +1,44 @@
+package com.mpd.concurrent.executors;
+
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.executors.AsyncSemaphore.Permit;
+import com.mpd.concurrent.executors.Executor.RunnablePriority;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class AsyncSemaphoreTest extends TestWithStandardRules {
+	@Test public void acquire_grantsInPriorityOrder_andCancelledWaitersReturnTheirTurn() throws Throwable {
+		AsyncSemaphore semaphore = new AsyncSemaphore(10);
+		Future<Permit> held = semaphore.acquire(6, RunnablePriority.PRIORITY_DEFAULT);
+		Future<Permit> large = semaphore.acquire(8, RunnablePriority.PRIORITY_DEFAULT);
+		Future<Permit> background = semaphore.acquire(2, RunnablePriority.PRIORITY_BG_METRICS);
+		Future<Permit> urgent = semaphore.acquire(3, RunnablePriority.PRIORITY_UI_USER_WAITING_FOR_RESULT);
+		collector.checkThat(held.isDone(), equalTo(true));
+		collector.checkThat(semaphore.getQueueLength(), equalTo(3));
+
+		held.resultNow().release();
+		held.end();
+		// urgent jumps the queue, then large doesn't fit, and blocks background behind it
+		collector.checkThat(urgent.isDone(), equalTo(true));
+		collector.checkThat(large.isDone(), equalTo(false));
+		collector.checkThat(background.isDone(), equalTo(false));
+
+		large.cancel(new CancellationException("test"), false);
+		large.end();
+		collector.checkThat(background.isDone(), equalTo(true));
+		collector.checkThat(semaphore.getQueueLength(), equalTo(0));
+		collector.checkThat(semaphore.getAvailablePermits(), equalTo(5));
+
+		urgent.resultNow().release();
+		urgent.resultNow().release(); // releasing twice does nothing
+		urgent.end();
+		background.resultNow().close();
+		background.end();
+		collector.checkThat(semaphore.getAvailablePermits(), equalTo(10));
+	}
+}
@@ -0,0 +1,157 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.mpd.concurrent.executors.Executor.ThreadInExecutorEnum;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.SchedulableFuture;
+import com.mpd.concurrent.futures.SubmittableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.mpd.concurrent.futures.atomic.FutureRunnable;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class DelaySchedulerTest extends TestWithStandardRules {
+	private static final String SCHEDULER_NAME = "DelaySchedulerTest";
+
+	private final DelayScheduler scheduler = new DelayScheduler(SCHEDULER_NAME);
+	private final RecordingExecutor executor = new RecordingExecutor();
+
+	@After public void stopSchedulerAndExecutor() throws InterruptedException {
+		scheduler.stop();
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	private static FutureRunnable<Void> delayed(Runnable runnable, long delayMillis) {
+		return new FutureRunnable<>(runnable, delayMillis, MILLISECONDS);
+	}
+
+	private static void awaitDone(Future<?> future) throws InterruptedException {
+		long deadline = System.nanoTime() + SECONDS.toNanos(5);
+		while (!future.isDone() && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+
+	@Test public void schedule_firesInDeadlineOrder_ontoTheTargetExecutor() throws Throwable {
+		List<Integer> fired = new CopyOnWriteArrayList<>();
+		List<Integer> ownedThreads = new CopyOnWriteArrayList<>();
+		long[] delaysMillis = {60, 20, 40};
+		SchedulableFuture<?>[] tasks = new SchedulableFuture<?>[delaysMillis.length];
+		for (int i = 0; i < delaysMillis.length; i++) {
+			int index = i;
+			tasks[i] = scheduler.schedule(delayed(() -> {
+				fired.add(index);
+				ownedThreads.add(executor.ownsThread(Thread.currentThread()));
+			}, delaysMillis[i]), executor);
+		}
+
+		for (SchedulableFuture<?> task : tasks) {
+			collector.checkSucceeds(() -> task.get(5, SECONDS), equalTo(null));
+			task.end();
+		}
+		collector.checkThat(fired, contains(1, 2, 0));
+		collector.checkThat(ownedThreads,
+				contains(ThreadInExecutorEnum.THREAD_IN_EXECUTOR,
+						ThreadInExecutorEnum.THREAD_IN_EXECUTOR,
+						ThreadInExecutorEnum.THREAD_IN_EXECUTOR));
+	}
+
+	@Test public void cancelledWhileWaiting_isNotSubmitted() throws Throwable {
+		SchedulableFuture<Void> cancelled = scheduler.schedule(delayed(() -> {}, 20), executor);
+		SchedulableFuture<Void> later = scheduler.schedule(delayed(() -> {}, 40), executor);
+
+		cancelled.cancel(new CancellationException("cancelledWhileWaiting_isNotSubmitted"), false);
+		cancelled.end();
+
+		collector.checkSucceeds(() -> later.get(5, SECONDS), equalTo(null));
+		later.end();
+		collector.checkThat(executor.submitted, contains(later));
+	}
+
+	@Test public void rejectingExecutor_failsTheTask() throws Throwable {
+		ThreadPoolExecutor stopped = new ThreadPoolExecutor(1);
+		stopped.shutdown();
+
+		SchedulableFuture<Void> task = scheduler.schedule(delayed(() -> {}, 10), stopped);
+		awaitDone(task);
+
+		collector.checkThat(task.exceptionNow(), instanceOf(RejectedExecutionException.class));
+		task.catching(RejectedExecutionException.class, e -> null, MoreExecutors.directExecutor()).end();
+	}
+
+	@Test public void throwingExecutor_failsTheTask_andTheThreadSurvives() throws Throwable {
+		IllegalStateException broken = new IllegalStateException("throwingExecutor_failsTheTask_andTheThreadSurvives");
+		uncaughtExceptionRule.expectUncaughtExceptionInAnyThread(sameInstance(broken));
+		executor.throwOnSubmit = broken;
+
+		SchedulableFuture<Void> failed = scheduler.schedule(delayed(() -> {}, 10), executor);
+		awaitDone(failed);
+		executor.throwOnSubmit = null;
+		SchedulableFuture<Void> next = scheduler.schedule(delayed(() -> {}, 10), executor);
+
+		collector.checkThat(failed.exceptionNow(), sameInstance(broken));
+		failed.catching(IllegalStateException.class, e -> null, MoreExecutors.directExecutor()).end();
+		collector.checkSucceeds(() -> next.get(5, SECONDS), equalTo(null));
+		next.end();
+	}
+
+	@Test public void directExecutor_runsOffTheSchedulerThread() throws Throwable {
+		String[] threadName = new String[1];
+		Runnable recordThread = () -> threadName[0] = Thread.currentThread().getName();
+
+		SchedulableFuture<Void> task = scheduler.schedule(delayed(recordThread, 10), MoreExecutors.directExecutor());
+
+		collector.checkSucceeds(() -> task.get(5, SECONDS), equalTo(null));
+		task.end();
+		collector.checkThat(threadName[0], not(SCHEDULER_NAME));
+	}
+
+	@Test public void stop_dropsWaitingTasks_andRejectsNewOnes() throws Throwable {
+		SchedulableFuture<Void> waiting = scheduler.schedule(delayed(() -> {}, 50), executor);
+
+		scheduler.stop();
+		Thread.sleep(100);
+
+		collector.checkThat(waiting.isDone(), equalTo(false));
+		collector.checkThat(executor.submitted.isEmpty(), equalTo(true));
+		collector.checkThrows(RejectedExecutionException.class,
+				() -> scheduler.schedule(delayed(() -> {}, 10), executor),
+				instanceOf(RejectedExecutionException.class));
+		waiting.cancel(new CancellationException("stop_dropsWaitingTasks_andRejectsNewOnes"), false);
+		waiting.end();
+	}
+
+	// Records what the scheduler submits, and can be told to throw instead of accepting it
+	private static final class RecordingExecutor extends ThreadPoolExecutor {
+		final List<SubmittableFuture<?>> submitted = new CopyOnWriteArrayList<>();
+		volatile @Nullable RuntimeException throwOnSubmit;
+
+		RecordingExecutor() {
+			super(2);
+		}
+
+		@Override public <O> SubmittableFuture<O> submit(SubmittableFuture<O> task) {
+			submitted.add(task);
+			RuntimeException exception = throwOnSubmit;
+			if (exception != null) {
+				throw exception;
+			}
+			return super.submit(task);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class HashedWheelTimerTest extends TestWithStandardRules {
+	private static final int FIRST_USE_ROUNDS = 200;
+	private static final int FIRST_USE_THREADS = 4;
+
+	@Test public void newTimeout_firesAfterTheDelay_unlessCancelled() throws Throwable {
+		HashedWheelTimer timer = new HashedWheelTimer("HashedWheelTimerTest", 1, MILLISECONDS, 64);
+		CountDownLatch fired = new CountDownLatch(1);
+		boolean[] cancelledFired = new boolean[1];
+		long start = System.nanoTime();
+
+		timer.newTimeout(fired::countDown, 20, MILLISECONDS);
+		HashedWheelTimer.Timeout cancelled = timer.newTimeout(() -> cancelledFired[0] = true, 10, MILLISECONDS);
+		collector.checkThat(cancelled.cancel(), equalTo(true));
+
+		collector.checkThat(fired.await(5, SECONDS), equalTo(true));
+		collector.checkThat(System.nanoTime() - start >= MILLISECONDS.toNanos(20), equalTo(true));
+		collector.checkThat(cancelledFired[0], equalTo(false));
+		timer.stop();
+	}
+
+	@Test public void newTimeout_racingTheFirstUse_firesEveryTimeout() throws Throwable {
+		int neverFired = 0;
+		for (int round = 0; round < FIRST_USE_ROUNDS; round++) {
+			HashedWheelTimer timer = new HashedWheelTimer("HashedWheelTimerTest-" + round, 1, MILLISECONDS, 64);
+			CountDownLatch fired = new CountDownLatch(FIRST_USE_THREADS);
+			// released together, so each thread may be the one that starts the timer
+			CyclicBarrier barrier = new CyclicBarrier(FIRST_USE_THREADS);
+			List<Thread> threads = new ArrayList<>(FIRST_USE_THREADS);
+			for (int i = 0; i < FIRST_USE_THREADS; i++) {
+				Thread thread = new Thread(() -> {
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						throw new AssertionError(e);
+					}
+					timer.newTimeout(fired::countDown, 1, MILLISECONDS);
+				}, "first-use-" + i);
+				threads.add(thread);
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join(SECONDS.toMillis(5));
+			}
+			if (!fired.await(5, SECONDS)) {
+				neverFired++;
+			}
+			timer.stop();
+		}
+		collector.checkThat("rounds with a timeout that never fired", neverFired, equalTo(0));
+	}
+}
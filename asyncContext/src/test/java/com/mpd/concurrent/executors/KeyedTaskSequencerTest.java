@@ -0,0 +1,83 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class KeyedTaskSequencerTest extends TestWithStandardRules {
+	private static final int KEY_COUNT = 8;
+	private static final int TASKS_PER_KEY = 100;
+
+	@Test public void submit_serializesPerKey_andEvictsIdleLanes() throws Throwable {
+		ThreadPoolExecutor delegate = new ThreadPoolExecutor(4);
+		KeyedTaskSequencer<Integer> sequencer = new KeyedTaskSequencer<>(delegate);
+		AtomicIntegerArray running = new AtomicIntegerArray(KEY_COUNT);
+		AtomicInteger overlaps = new AtomicInteger();
+		List<Future<Integer>> results = new ArrayList<>(KEY_COUNT * TASKS_PER_KEY);
+
+		for (int i = 0; i < TASKS_PER_KEY; i++) {
+			for (int key = 0; key < KEY_COUNT; key++) {
+				int lane = key;
+				int value = i;
+				results.add(sequencer.submit(lane, () -> {
+					if (running.incrementAndGet(lane) > 1) {
+						overlaps.incrementAndGet();
+					}
+					running.decrementAndGet(lane);
+					return value;
+				}));
+			}
+		}
+
+		for (int i = 0; i < results.size(); i++) {
+			int expected = i / KEY_COUNT;
+			Future<Integer> result = results.get(i);
+			collector.checkSucceeds(() -> result.get(5, SECONDS), equalTo(expected));
+			result.end();
+		}
+		collector.checkThat(overlaps.get(), equalTo(0));
+		delegate.awaitIdle(5, SECONDS); // lanes are evicted just after their last result is set
+		collector.checkThat(sequencer.getActiveKeyCount(), equalTo(0));
+		delegate.shutdown();
+		collector.checkThat(delegate.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void cancelRunningChain_holdsTheKeyUntilItsBodyReturns() throws Throwable {
+		ThreadPoolExecutor delegate = new ThreadPoolExecutor(2);
+		KeyedTaskSequencer<String> sequencer = new KeyedTaskSequencer<>(delegate);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean firstReturned = new AtomicBoolean();
+
+		Future<String> first = sequencer.submit("key", () -> {
+			started.countDown();
+			release.await();
+			firstReturned.set(true);
+			return "first";
+		});
+		Future<Boolean> second = sequencer.submit("key", firstReturned::get);
+		collector.checkThat(started.await(5, SECONDS), equalTo(true));
+		first.cancel(new CancellationException("test"), false);
+		first.end();
+		Thread.sleep(50);
+		collector.checkThat(second.isDone(), equalTo(false));
+		release.countDown();
+
+		collector.checkSucceeds(() -> second.get(5, SECONDS), equalTo(true));
+		second.end();
+		delegate.shutdown();
+		collector.checkThat(delegate.awaitTermination(5, SECONDS), equalTo(true));
+	}
+}
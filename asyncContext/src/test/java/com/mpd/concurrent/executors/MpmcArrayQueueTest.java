@@ -0,0 +1,172 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class MpmcArrayQueueTest extends TestWithStandardRules {
+	private static final int PRODUCER_COUNT = 4;
+	private static final int CONSUMER_COUNT = 3;
+	private static final int PER_PRODUCER = 50000;
+
+	@Test public void offer_untilFull_thenRejectsAndPollsInOrder() throws Throwable {
+		MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(3);
+
+		collector.checkThat(queue.capacity(), equalTo(4));
+		for (int i = 0; i < 4; i++) {
+			collector.checkThat(queue.offer(i), equalTo(true));
+		}
+		collector.checkThat(queue.offer(4), equalTo(false));
+		collector.checkThat(queue.offer(4, 1, MILLISECONDS), equalTo(false));
+
+		List<Integer> polled = new ArrayList<>();
+		queue.drainTo(polled);
+		collector.checkThat(polled, contains(0, 1, 2, 3));
+		collector.checkThat(queue.poll(), nullValue());
+	}
+
+	@Test public void mpsc_wrapsAroundRing() {
+		MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(2);
+		List<Integer> polled = new ArrayList<>();
+
+		for (int i = 0; i < 5; i++) {
+			queue.offer(i);
+			polled.add(queue.poll());
+		}
+
+		collector.checkThat(polled, contains(0, 1, 2, 3, 4));
+		collector.checkThat(queue.isEmpty(), equalTo(true));
+	}
+
+	@Test public void remove_skippedByPoll_andKeepsItsSlotUntilPassed() {
+		MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(4);
+		for (int i = 0; i < 4; i++) {
+			queue.offer(i);
+		}
+
+		collector.checkThat(queue.remove(1), equalTo(true));
+		collector.checkThat(queue.remove(1), equalTo(false));
+		collector.checkThat(queue.remove(7), equalTo(false));
+		collector.checkThat(queue.removeIf(i -> i == 3), equalTo(true));
+		collector.checkThat(queue.size(), equalTo(2));
+		collector.checkThat(queue.remainingCapacity(), equalTo(0));
+		collector.checkThat(queue.offer(4), equalTo(false));
+		collector.checkThat(queue, contains(0, 2));
+
+		collector.checkThat(queue.poll(), equalTo(0));
+		collector.checkThat(queue.peek(), equalTo(2));
+		collector.checkThat(queue.poll(), equalTo(2));
+		collector.checkThat(queue.poll(), nullValue());
+		collector.checkThat(queue.remainingCapacity(), equalTo(4));
+	}
+
+	@Test public void mpsc_remove_skippedByPoll() {
+		MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(4);
+		for (int i = 0; i < 3; i++) {
+			queue.offer(i);
+		}
+
+		collector.checkThat(queue.remove(0), equalTo(true));
+		collector.checkThat(queue.peek(), equalTo(1));
+		collector.checkThat(queue.poll(), equalTo(1));
+		collector.checkThat(queue.poll(), equalTo(2));
+		collector.checkThat(queue.poll(), nullValue());
+		collector.checkThat(queue.isEmpty(), equalTo(true));
+	}
+
+	@Test public void unbounded_offerAcrossChunks_pollsInOrder_andRemoves() {
+		MpmcUnboundedArrayQueue<Integer> queue = new MpmcUnboundedArrayQueue<>(4);
+		for (int i = 0; i < 10; i++) {
+			collector.checkThat(queue.offer(i), equalTo(true));
+		}
+
+		collector.checkThat(queue.size(), equalTo(10));
+		collector.checkThat(queue.remainingCapacity(), equalTo(Integer.MAX_VALUE));
+		collector.checkThat(queue.remove(0), equalTo(true));
+		collector.checkThat(queue.removeIf(i -> i == 4 || i == 9), equalTo(true));
+		collector.checkThat(queue.size(), equalTo(7));
+		collector.checkThat(queue.peek(), equalTo(1));
+
+		List<Integer> polled = new ArrayList<>();
+		queue.drainTo(polled);
+		collector.checkThat(polled, contains(1, 2, 3, 5, 6, 7, 8));
+		collector.checkThat(queue.poll(), nullValue());
+		collector.checkThat(queue.isEmpty(), equalTo(true));
+		collector.checkThat(queue.size(), equalTo(0));
+	}
+
+	@Test public void unbounded_concurrentProducersAndConsumers_takeEveryElementExactlyOnce() throws Throwable {
+		checkTakenOnce(new MpmcUnboundedArrayQueue<>(16), CONSUMER_COUNT);
+	}
+
+	@Test public void mpscUnbounded_concurrentProducers_takeEveryElementExactlyOnce() throws Throwable {
+		checkTakenOnce(new MpscUnboundedArrayQueue<>(16), 1);
+	}
+
+	@Test public void bounded_concurrentProducersAndConsumers_takeEveryElementExactlyOnce() throws Throwable {
+		checkTakenOnce(new MpmcArrayQueue<>(64), CONSUMER_COUNT);
+	}
+
+	// Producers put, while consumers take until they've taken everything between them
+	private void checkTakenOnce(BlockingQueue<Integer> queue, int consumerCount) throws InterruptedException {
+		int total = PRODUCER_COUNT * PER_PRODUCER;
+		AtomicIntegerArray taken = new AtomicIntegerArray(total);
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < PRODUCER_COUNT; p++) {
+			int first = p * PER_PRODUCER;
+			threads.add(new Thread(() -> {
+				try {
+					for (int i = first; i < first + PER_PRODUCER; i++) {
+						queue.put(i);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "producer-" + p));
+		}
+		int perConsumer = total / consumerCount;
+		for (int c = 0; c < consumerCount; c++) {
+			int count = (c == consumerCount - 1) ? total - perConsumer * c : perConsumer;
+			threads.add(new Thread(() -> {
+				try {
+					for (int i = 0; i < count; i++) {
+						Integer element = queue.poll(5, SECONDS);
+						if (element == null) {
+							return;
+						}
+						taken.incrementAndGet(element);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "consumer-" + c));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(SECONDS.toMillis(10));
+			collector.checkThat(thread.isAlive(), equalTo(false));
+		}
+
+		int wrong = 0;
+		for (int i = 0; i < total; i++) {
+			if (taken.get(i) != 1) {
+				wrong++;
+			}
+		}
+		collector.checkThat("elements not taken exactly once", wrong, equalTo(0));
+		collector.checkThat(queue.isEmpty(), equalTo(true));
+	}
+}
@@ -0,0 +1,92 @@
+package com.mpd.concurrent.executors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.executors.Executor.RunnablePriority;
+import com.mpd.concurrent.futures.SubmittableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.mpd.concurrent.futures.atomic.FutureRunnable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class PriorityRunQueueTest extends TestWithStandardRules {
+	private static FutureRunnable<String> task(String name, RunnablePriority priority) {
+		FutureRunnable<String> task = new FutureRunnable<>(() -> {}, name);
+		task.getAsyncContext().put(RunnablePriority.class, priority);
+		return task;
+	}
+
+	private static List<String> drainAndRun(PriorityRunQueue queue) {
+		List<String> order = new ArrayList<>();
+		SubmittableFuture<?> task;
+		while ((task = queue.poll()) != null) {
+			task.run();
+			order.add((String) task.resultNow());
+			task.end();
+		}
+		return order;
+	}
+
+	@Test public void poll_mixedPriorities_mostUrgentFirstThenFifo() {
+		PriorityRunQueue queue = new PriorityRunQueue(100);
+		queue.add(task("bg", RunnablePriority.PRIORITY_BG_MAINTENANCE));
+		queue.add(task("default1", RunnablePriority.PRIORITY_DEFAULT));
+		queue.add(task("ui", RunnablePriority.PRIORITY_UI_INITIAL_LOAD));
+		queue.add(task("default2", RunnablePriority.PRIORITY_DEFAULT));
+
+		collector.checkThat(queue.size(), equalTo(4));
+		collector.checkThat(drainAndRun(queue), contains("ui", "default1", "default2", "bg"));
+		collector.checkThat(queue.size(), equalTo(0));
+	}
+
+	@Test public void poll_lowLanePassedOver_agesAndRuns() {
+		PriorityRunQueue queue = new PriorityRunQueue(2);
+		queue.add(task("bg", RunnablePriority.PRIORITY_BG_MAINTENANCE));
+		for (int i = 0; i < 4; i++) {
+			queue.add(task("ui" + i, RunnablePriority.PRIORITY_UI_INITIAL_LOAD));
+		}
+
+		collector.checkThat(drainAndRun(queue), contains("ui0", "bg", "ui1", "ui2", "ui3"));
+	}
+
+	@Test public void remainingCapacity_unboundedByDefault_andRealWhenBounded() {
+		PriorityRunQueue unbounded = new PriorityRunQueue();
+		PriorityRunQueue bounded = new PriorityRunQueue(PriorityRunQueue.DEFAULT_AGING_THRESHOLD, 2);
+		for (int i = 0; i < 2; i++) {
+			collector.checkThat(bounded.offer(task("ui" + i, RunnablePriority.PRIORITY_UI_INITIAL_LOAD)), equalTo(true));
+		}
+
+		collector.checkThat(unbounded.remainingCapacity(), equalTo(Integer.MAX_VALUE));
+		collector.checkThat(bounded.offer(task("ui2", RunnablePriority.PRIORITY_UI_INITIAL_LOAD)), equalTo(false));
+		collector.checkThat(bounded.remainingCapacity(), equalTo(0));
+		collector.checkThat(bounded.remainingCapacity(RunnablePriority.PRIORITY_UI_INITIAL_LOAD), equalTo(0));
+		collector.checkThat(bounded.remainingCapacity(RunnablePriority.PRIORITY_DEFAULT), equalTo(2));
+		collector.checkThat(drainAndRun(bounded), contains("ui0", "ui1"));
+	}
+
+	@Test public void removeAndRemoveIf_dropQueuedTasks() {
+		PriorityRunQueue queue = new PriorityRunQueue();
+		FutureRunnable<String> removed = task("removed", RunnablePriority.PRIORITY_DEFAULT);
+		FutureRunnable<String> cancelled = task("cancelled", RunnablePriority.PRIORITY_BG_MAINTENANCE);
+		queue.add(task("ui", RunnablePriority.PRIORITY_UI_INITIAL_LOAD));
+		queue.add(removed);
+		queue.add(task("default", RunnablePriority.PRIORITY_DEFAULT));
+		queue.add(cancelled);
+		cancelled.cancel(new CancellationException("removeAndRemoveIf_dropQueuedTasks"), false);
+
+		collector.checkThat(queue.remove(removed), equalTo(true));
+		collector.checkThat(queue.remove(removed), equalTo(false));
+		collector.checkThat(queue.removeIf(SubmittableFuture::isCancelled), equalTo(true));
+		collector.checkThat(queue.removeIf(SubmittableFuture::isCancelled), equalTo(false));
+		collector.checkThat(queue.size(), equalTo(2));
+		collector.checkThat(drainAndRun(queue), contains("ui", "default"));
+		collector.checkThat(queue.isEmpty(), equalTo(true));
+		removed.end();
+		cancelled.end();
+	}
+}
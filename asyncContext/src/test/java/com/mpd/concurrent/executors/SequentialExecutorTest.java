@@ -0,0 +1,59 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class SequentialExecutorTest extends TestWithStandardRules {
+	private static final int TASK_COUNT = 500;
+
+	@Test public void serialized_neverRunsTasksConcurrently() throws Throwable {
+		ThreadPoolExecutor delegate = new ThreadPoolExecutor(4);
+		SequentialExecutor executor = SequentialExecutor.serialized(delegate);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<Future<Integer>> tasks = new ArrayList<>(TASK_COUNT);
+
+		for (int i = 0; i < TASK_COUNT; i++) {
+			int value = i;
+			tasks.add(executor.submit(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				running.decrementAndGet();
+				return value;
+			}));
+		}
+
+		for (int i = 0; i < TASK_COUNT; i++) {
+			int expected = i;
+			Future<Integer> task = tasks.get(i);
+			collector.checkSucceeds(() -> task.get(5, SECONDS), equalTo(expected));
+			task.end();
+		}
+		collector.checkThat(maxRunning.get(), equalTo(1));
+		delegate.shutdown();
+		collector.checkThat(delegate.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void rejectingDelegate_failsQueuedTasks_andReleasesTheDrainer() throws Throwable {
+		ThreadPoolExecutor delegate = new ThreadPoolExecutor(1);
+		delegate.shutdown();
+		SequentialExecutor executor = SequentialExecutor.serialized(delegate);
+
+		// each submit gets its own drainer, so the failed one released its slot
+		for (int i = 0; i < 3; i++) {
+			Future<Integer> task = executor.submit(() -> 1);
+			collector.checkThat(task.exceptionNow(), instanceOf(RejectedExecutionException.class));
+			task.catching(RejectedExecutionException.class, e -> 0, MoreExecutors.directExecutor()).end();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.mpd.concurrent.futures.atomic.FutureAsyncCallable;
+import com.mpd.concurrent.futures.atomic.FutureCallable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class TaskSequencerTest extends TestWithStandardRules {
+	private static final int TASK_COUNT = 500;
+
+	@Test public void serialized_runsChainsInOrder_withEachDrainQuantum() throws Throwable {
+		ThreadPoolExecutor delegate = new ThreadPoolExecutor(4);
+		for (DrainQuantum drainQuantum : new DrainQuantum[]{DrainQuantum.ONE_TASK, DrainQuantum.DEFAULT}) {
+			TaskSequencer sequencer = TaskSequencer.serialized(delegate);
+			sequencer.setDrainQuantum(drainQuantum);
+			AtomicInteger running = new AtomicInteger();
+			AtomicInteger maxRunning = new AtomicInteger();
+			AtomicInteger nextExpected = new AtomicInteger();
+			AtomicInteger outOfOrder = new AtomicInteger();
+			List<Future<Integer>> results = new ArrayList<>(TASK_COUNT);
+
+			for (int i = 0; i < TASK_COUNT; i++) {
+				int value = i;
+				results.add(sequencer.submit(new FutureCallable<>(() -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					if (nextExpected.getAndIncrement() != value) {
+						outOfOrder.incrementAndGet();
+					}
+					running.decrementAndGet();
+					return value;
+				})));
+			}
+
+			for (int i = 0; i < TASK_COUNT; i++) {
+				int expected = i;
+				Future<Integer> result = results.get(i);
+				collector.checkSucceeds(() -> result.get(5, SECONDS), equalTo(expected));
+				result.end();
+			}
+			collector.checkThat(maxRunning.get(), equalTo(1));
+			collector.checkThat(outOfOrder.get(), equalTo(0));
+		}
+		delegate.shutdown();
+		collector.checkThat(delegate.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void cancel_freesTheChainsSlot_andSkipsQueuedTasks() throws Throwable {
+		ThreadPoolExecutor delegate = new ThreadPoolExecutor(2);
+		TaskSequencer sequencer = TaskSequencer.serialized(delegate);
+		SettableFuture<String> neverCompletes = new SettableFuture<>();
+		AtomicInteger skippedRuns = new AtomicInteger();
+
+		Future<String> running = sequencer.submit(new FutureAsyncCallable<>(() -> neverCompletes));
+		Future<String> queued = sequencer.submit(new FutureCallable<>(() -> {
+			skippedRuns.incrementAndGet();
+			return "skipped";
+		}));
+		Future<String> next = sequencer.submit(new FutureCallable<>(() -> "next"));
+		queued.cancel(new CancellationException("test"), false);
+		queued.end();
+		running.cancel(new CancellationException("test"), false);
+		running.end();
+
+		collector.checkSucceeds(() -> next.get(5, SECONDS), equalTo("next"));
+		next.end();
+		collector.checkThat(skippedRuns.get(), equalTo(0));
+		delegate.shutdown();
+		collector.checkThat(delegate.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void cancelRunningChain_holdsTheSlotUntilItsBodyReturns() throws Throwable {
+		ThreadPoolExecutor delegate = new ThreadPoolExecutor(2);
+		TaskSequencer sequencer = TaskSequencer.serialized(delegate);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean firstReturned = new AtomicBoolean();
+
+		Future<String> first = sequencer.submit(new FutureCallable<>(() -> {
+			started.countDown();
+			release.await();
+			firstReturned.set(true);
+			return "first";
+		}));
+		Future<Boolean> second = sequencer.submit(new FutureCallable<>(firstReturned::get));
+		collector.checkThat(started.await(5, SECONDS), equalTo(true));
+		first.cancel(new CancellationException("test"), false);
+		first.end();
+		Thread.sleep(50);
+		collector.checkThat(second.isDone(), equalTo(false));
+		release.countDown();
+
+		collector.checkSucceeds(() -> second.get(5, SECONDS), equalTo(true));
+		second.end();
+		delegate.shutdown();
+		collector.checkThat(delegate.awaitTermination(5, SECONDS), equalTo(true));
+	}
+}
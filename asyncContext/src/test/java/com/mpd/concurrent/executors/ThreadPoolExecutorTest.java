@@ -0,0 +1,144 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.mpd.concurrent.futures.atomic.FutureRunnable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class ThreadPoolExecutorTest extends TestWithStandardRules {
+	private static final int TASK_COUNT = 100;
+
+	@Test public void idleStrategies_runEveryTask_thenTerminate() throws Throwable {
+		IdleStrategy[] idleStrategies =
+				{IdleStrategy.parkOnly(), IdleStrategy.spinYieldPark(), IdleStrategy.spinYieldPark(0, 0)};
+		for (IdleStrategy idleStrategy : idleStrategies) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(2);
+			executor.setIdleStrategy(idleStrategy);
+			AtomicInteger ran = new AtomicInteger();
+
+			for (int i = 0; i < TASK_COUNT; i++) {
+				// wait for each task, so that idle threads are woken for the next one
+				int expected = i + 1;
+				Future<Integer> task = executor.submit(() -> ran.incrementAndGet());
+				collector.checkSucceeds(() -> task.get(5, SECONDS), equalTo(expected));
+			}
+
+			collector.checkThat(ran.get(), equalTo(TASK_COUNT));
+			executor.shutdown();
+			collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+		}
+	}
+
+	@Test public void poolSizer_queueBacksUp_growsPool() throws Throwable {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 8);
+		AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(1, MILLISECONDS, 10, MILLISECONDS);
+		executor.setPoolSizer(poolSizer);
+
+		for (int i = 0; i < TASK_COUNT; i++) {
+			executor.submit(() -> {
+				Thread.sleep(5);
+				return null;
+			}).end();
+		}
+		executor.awaitIdle(5, SECONDS);
+
+		collector.checkThat(executor.getCompletedTaskCount(), equalTo((long) TASK_COUNT));
+		collector.checkThat(poolSizer.getGrowCount(), greaterThan(0L));
+		collector.checkThat(executor.getLargestPoolSize(), greaterThan(1));
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void poolSizer_coreThreadsBlocked_growsPoolAsTasksQueue() throws Throwable {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 8);
+		AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(1, MILLISECONDS, 10, MILLISECONDS);
+		executor.setPoolSizer(poolSizer);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch queuedRan = new CountDownLatch(TASK_COUNT);
+		executor.submit(() -> {
+			release.await();
+			return null;
+		}).end();
+
+		// no task completes and no thread idles, so only queueing more can re-evaluate the pool's size
+		for (int i = 0; i < TASK_COUNT; i++) {
+			executor.submit(() -> {
+				queuedRan.countDown();
+				return null;
+			}).end();
+			Thread.sleep(1);
+		}
+
+		collector.checkThat(queuedRan.await(5, SECONDS), equalTo(true));
+		collector.checkThat(poolSizer.getGrowCount(), greaterThan(0L));
+		release.countDown();
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void submitAll_resultsInOrder() throws Throwable {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(2);
+		List<Callable<Integer>> tasks = new ArrayList<>(TASK_COUNT);
+		for (int i = 0; i < TASK_COUNT; i++) {
+			int value = i;
+			tasks.add(() -> value);
+		}
+
+		Future<List<Integer>> results = executor.submitAll(tasks);
+
+		collector.checkSucceeds(() -> results.get(5, SECONDS).get(TASK_COUNT - 1), equalTo(TASK_COUNT - 1));
+		collector.checkSucceeds(() -> results.get(5, SECONDS).size(), equalTo(TASK_COUNT));
+		results.end();
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void execute_pastAnyLaneSize_queuesEverything_andRemoveAndPurgeDropTasks() throws Throwable {
+		// far more than a single queue chunk, and more than the lanes used to hold
+		int queuedCount = 10000;
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger ran = new AtomicInteger();
+		executor.submit(() -> {
+			release.await();
+			return null;
+		}).end();
+		List<FutureRunnable<Void>> queued = new ArrayList<>(queuedCount);
+		for (int i = 0; i < queuedCount; i++) {
+			FutureRunnable<Void> task = new FutureRunnable<>(ran::incrementAndGet);
+			queued.add(task);
+			executor.execute(task);
+		}
+
+		collector.checkThat(executor.remove(queued.get(0)), equalTo(true));
+		collector.checkThat(executor.remove(queued.get(0)), equalTo(false));
+		for (int i = 1; i <= 10; i++) {
+			queued.get(i).cancel(new CancellationException("purged"), false);
+		}
+		executor.purge();
+		release.countDown();
+		executor.awaitIdle(5, SECONDS);
+
+		collector.checkThat(ran.get(), equalTo(queuedCount - 11));
+		collector.checkThat(executor.getCompletedTaskCount(), equalTo((long) queuedCount - 10));
+		collector.checkThat(executor.isIdleNow(), equalTo(true));
+		for (FutureRunnable<Void> task : queued) {
+			task.end();
+		}
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+}
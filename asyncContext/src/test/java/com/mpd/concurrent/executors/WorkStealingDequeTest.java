@@ -0,0 +1,151 @@
+package com.mpd.concurrent.executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class WorkStealingDequeTest extends TestWithStandardRules {
+	// several times the initial capacity, so the array grows repeatedly
+	private static final int GROWING_COUNT = 100000;
+	private static final int RACE_ROUNDS = 100000;
+	private static final int THIEF_COUNT = 3;
+
+	@Test public void popIsLifo_stealIsFifo() {
+		WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+		for (int i = 0; i < 4; i++) {
+			deque.push(i);
+		}
+
+		collector.checkThat(deque.pop(), equalTo(3));
+		collector.checkThat(deque.steal(), equalTo(0));
+		collector.checkThat(deque.pop(), equalTo(2));
+		collector.checkThat(deque.steal(), equalTo(1));
+		collector.checkThat(deque.isEmpty(), equalTo(true));
+		collector.checkThat(deque.pop(), nullValue());
+		collector.checkThat(deque.steal(), nullValue());
+	}
+
+	@Test public void lastElement_isTakenByOnlyOneOfPopAndSteal() {
+		WorkStealingDeque<String> deque = new WorkStealingDeque<>();
+
+		deque.push("stolen");
+		collector.checkThat(deque.steal(), equalTo("stolen"));
+		collector.checkThat(deque.pop(), nullValue());
+		collector.checkThat(deque.size(), equalTo(0));
+
+		deque.push("popped");
+		collector.checkThat(deque.pop(), equalTo("popped"));
+		collector.checkThat(deque.steal(), nullValue());
+		collector.checkThat(deque.size(), equalTo(0));
+
+		// the indexes have moved on, and the deque still works
+		deque.push("again");
+		collector.checkThat(deque.size(), equalTo(1));
+		collector.checkThat(deque.pop(), equalTo("again"));
+	}
+
+	@Test public void push_pastCapacity_growsAndKeepsOrder() {
+		WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+		// offsets the indexes, so that growing has to unwrap them
+		for (int i = 0; i < 10; i++) {
+			deque.push(-1);
+			deque.steal();
+		}
+		for (int i = 0; i < 1000; i++) {
+			deque.push(i);
+		}
+
+		collector.checkThat(deque.size(), equalTo(1000));
+		for (int i = 0; i < 500; i++) {
+			collector.checkThat(deque.steal(), equalTo(i));
+		}
+		for (int i = 999; i >= 500; i--) {
+			collector.checkThat(deque.pop(), equalTo(i));
+		}
+		collector.checkThat(deque.isEmpty(), equalTo(true));
+	}
+
+	@Test public void popRacingSteal_lastElement_isTakenExactlyOnce() throws Throwable {
+		WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+		AtomicIntegerArray taken = new AtomicIntegerArray(RACE_ROUNDS);
+
+		runWithThieves(deque, taken, () -> {
+			for (int i = 0; i < RACE_ROUNDS; i++) {
+				deque.push(i);
+				// usually the only element, so this races the thieves for it
+				Integer popped = deque.pop();
+				if (popped != null) {
+					taken.incrementAndGet(popped);
+				}
+			}
+		});
+
+		checkTakenOnce(taken);
+	}
+
+	@Test public void grow_whileThievesRead_takesEveryElementExactlyOnce() throws Throwable {
+		WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+		AtomicIntegerArray taken = new AtomicIntegerArray(GROWING_COUNT);
+
+		runWithThieves(deque, taken, () -> {
+			for (int i = 0; i < GROWING_COUNT; i++) {
+				deque.push(i);
+			}
+			Integer popped;
+			while ((popped = deque.pop()) != null) {
+				taken.incrementAndGet(popped);
+			}
+		});
+
+		checkTakenOnce(taken);
+	}
+
+	// Runs the owner on this thread, while thieves steal until it's done and the deque is empty
+	private void runWithThieves(WorkStealingDeque<Integer> deque, AtomicIntegerArray taken, Runnable owner)
+			throws InterruptedException
+	{
+		AtomicBoolean ownerDone = new AtomicBoolean();
+		List<Thread> thieves = new ArrayList<>(THIEF_COUNT);
+		for (int i = 0; i < THIEF_COUNT; i++) {
+			Thread thief = new Thread(() -> {
+				while (!ownerDone.get() || !deque.isEmpty()) {
+					Integer stolen = deque.steal();
+					if (stolen != null) {
+						taken.incrementAndGet(stolen);
+					}
+				}
+			}, "thief-" + i);
+			thieves.add(thief);
+			thief.start();
+		}
+		try {
+			owner.run();
+		} finally {
+			ownerDone.set(true);
+		}
+		for (Thread thief : thieves) {
+			thief.join(SECONDS.toMillis(5));
+			collector.checkThat(thief.isAlive(), equalTo(false));
+		}
+		collector.checkThat(deque.isEmpty(), equalTo(true));
+	}
+
+	private void checkTakenOnce(AtomicIntegerArray taken) {
+		int wrong = 0;
+		for (int i = 0; i < taken.length(); i++) {
+			if (taken.get(i) != 1) {
+				wrong++;
+			}
+		}
+		collector.checkThat("elements not taken exactly once", wrong, equalTo(0));
+	}
+}
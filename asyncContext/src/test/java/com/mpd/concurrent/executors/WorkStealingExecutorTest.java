@@ -0,0 +1,106 @@
+package com.mpd.concurrent.executors;
+
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+import com.mpd.concurrent.executors.Executor.ExecutorIdleLatchListener;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class WorkStealingExecutorTest extends TestWithStandardRules {
+	private static final int FAN_OUT = 100;
+	private static final int CHAIN_LENGTH = 10;
+	private static final int WORKERS = 4;
+	private static final int SUBTASKS = 200;
+
+	@Test public void fanOut_transformChains_allComplete() throws Throwable {
+		WorkStealingExecutor executor = new WorkStealingExecutor(4);
+		List<Future<Integer>> chains = new ArrayList<>(FAN_OUT);
+		for (int i = 0; i < FAN_OUT; i++) {
+			Future<Integer> chain = executor.submit(() -> 0);
+			for (int j = 0; j < CHAIN_LENGTH; j++) {
+				chain = chain.transformAsync(value -> Futures.immediateFuture(value + 1), executor);
+			}
+			chains.add(chain);
+		}
+
+		for (Future<Integer> chain : chains) {
+			collector.checkSucceeds(() -> chain.get(5, SECONDS), equalTo(CHAIN_LENGTH));
+			ensureTestComplete(chain);
+		}
+		ExecutorIdleLatchListener idle = new ExecutorIdleLatchListener();
+		executor.registerListener(idle);
+		collector.checkThat(idle.await(5, SECONDS), equalTo(true));
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void blockedWorker_otherWorkersStealItsTasks() throws Throwable {
+		WorkStealingExecutor executor = new WorkStealingExecutor(WORKERS);
+		CountDownLatch subtasksDone = new CountDownLatch(SUBTASKS);
+		Set<Thread> subtaskThreads = ConcurrentHashMap.newKeySet();
+
+		Future<Boolean> root = executor.submit(() -> {
+			for (int i = 0; i < SUBTASKS; i++) {
+				executor.submit(() -> {
+					subtaskThreads.add(Thread.currentThread());
+					subtasksDone.countDown();
+				}).end();
+			}
+			// the newest task waits in this worker's own slot, which thieves can't take, so push the others to its deque
+			executor.submit(() -> {}).end();
+			// this worker won't run anything else until the subtasks are done, so they must all be stolen
+			return subtasksDone.await(5, SECONDS) && !subtaskThreads.contains(Thread.currentThread());
+		});
+
+		collector.checkSucceeds(() -> root.get(10, SECONDS), equalTo(true));
+		root.end();
+		executor.shutdown();
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+	}
+
+	@Test public void shutdownNow_returnsEveryTaskThatDidNotRun() throws Throwable {
+		WorkStealingExecutor executor = new WorkStealingExecutor(2);
+		CountDownLatch blockersStarted = new CountDownLatch(2);
+		CountDownLatch neverReleased = new CountDownLatch(1);
+		AtomicInteger ran = new AtomicInteger();
+		int queuedCount = 0;
+
+		for (int i = 0; i < 2; i++) {
+			executor.submit(() -> {
+				// queues some tasks in this worker's deque too
+				for (int j = 0; j < SUBTASKS / 2; j++) {
+					executor.submit(ran::incrementAndGet).end();
+				}
+				blockersStarted.countDown();
+				neverReleased.await(); // until shutdownNow interrupts it
+				return null;
+			}).catching(InterruptedException.class, e -> null, MoreExecutors.directExecutor()).end();
+			queuedCount += SUBTASKS / 2;
+		}
+		collector.checkThat(blockersStarted.await(5, SECONDS), equalTo(true));
+		for (int i = 0; i < SUBTASKS; i++) {
+			executor.submit(ran::incrementAndGet).end();
+			queuedCount++;
+		}
+
+		List<Runnable> notRun = executor.shutdownNow();
+
+		collector.checkThat(executor.awaitTermination(5, SECONDS), equalTo(true));
+		// every task either ran before the shutdown, or was returned without running
+		collector.checkThat(ran.get() + notRun.size(), equalTo(queuedCount));
+		collector.checkThat(notRun.size(), greaterThan(0));
+	}
+}
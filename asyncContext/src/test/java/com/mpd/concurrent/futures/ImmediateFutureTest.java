@@ -2,10 +2,12 @@ package com.mpd.concurrent.futures;
 
 import static android.util.Log.DEBUG;
 import static android.util.Log.VERBOSE;
+import static com.mpd.concurrent.executors.MoreExecutors.directExecutor;
 import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
 import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
@@ -282,4 +284,30 @@ import org.robolectric.shadows.ShadowLog;
 		collector.checkSucceeds(fut::isCancelled, equalTo(true));
 		collector.checkSucceeds(fut::exceptionNow, sameInstance(expect));
 	}
-}
\ No newline at end of file
+
+	@Test public void forString_transformDirect_completesEagerly() throws Throwable {
+		fut = Futures.immediateFuture("forString_transformDirect_").transform(value -> value + "completesEagerly",
+				directExecutor());
+
+		collector.checkThat(fut, instanceOf(ImmediateFuture.class));
+		collector.checkSucceeds(fut::resultNow, equalTo("forString_transformDirect_completesEagerly"));
+	}
+
+	@Test public void forChecked_catchingDirect_completesEagerly() throws Throwable {
+		IOException expect = new IOException("forChecked_catchingDirect_completesEagerly");
+		fut = Futures.<String>immediateFailedFuture(expect).catching(IOException.class,
+				Throwable::getMessage,
+				directExecutor());
+
+		collector.checkThat(fut, instanceOf(ImmediateFuture.class));
+		collector.checkSucceeds(fut::resultNow, equalTo("forChecked_catchingDirect_completesEagerly"));
+	}
+
+	@Test public void forNull_immediateFuture_isSharedConstant() throws Throwable {
+		fut = Futures.immediateFuture(null);
+
+		collector.checkThat(fut, sameInstance((Object) Futures.immediateVoidFuture()));
+		Futures.immediateVoidFuture().end(); // shared constants accept any number of listeners
+		collector.checkSucceeds(fut::resultNow, nullValue());
+	}
+}
@@ -0,0 +1,71 @@
+package com.mpd.concurrent.futures;
+
+import static com.mpd.concurrent.executors.MoreExecutors.directExecutor;
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.futures.LongFuture.LongFutureListener;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class PrimitiveFutureTest extends TestWithStandardRules {
+	@Test public void transformToLong_chain_hasPrimitiveResults() {
+		SettableFuture<String> source = new SettableFuture<>();
+		LongFuture length = source.transformToLong(String::length, directExecutor());
+		LongFuture doubled = length.transformLong(value -> value * 2, directExecutor());
+		BooleanFuture isLong = doubled.transformToBoolean(value -> value > 10, directExecutor());
+
+		source.setResult("transformToLong_chain_hasPrimitiveResult");
+
+		collector.checkThat(length.resultNowAsLong(), equalTo(40L));
+		collector.checkThat(doubled.resultNowAsLong(), equalTo(80L));
+		collector.checkThat(doubled.resultNow(), equalTo(80L));
+		collector.checkThat(isLong.resultNowAsBoolean(), equalTo(true));
+		ensureTestComplete(isLong);
+	}
+
+	@Test public void setResultAsLong_primitiveListener_isNotifiedWithoutBoxing() {
+		SettableLongFuture future = new SettableLongFuture();
+		RecordingLongListener listener = future.setListener(new RecordingLongListener());
+
+		future.setResultAsLong(7);
+
+		collector.checkThat(listener.primitiveResult, equalTo(7L));
+		collector.checkThat(listener.boxedCalls, equalTo(0));
+	}
+
+	@Test public void sumLongs_allSucceed_sumsResults() {
+		List<SettableLongFuture> parents = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			parents.add(new SettableLongFuture());
+		}
+		LongFuture sum = Futures.sumLongs(parents);
+
+		for (int i = 0; i < parents.size(); i++) {
+			parents.get(i).setResultAsLong(i);
+		}
+
+		collector.checkThat(sum.resultNowAsLong(), equalTo(4950L));
+		ensureTestComplete(sum);
+	}
+
+	private static class RecordingLongListener implements FutureListener<Long>, LongFutureListener {
+		long primitiveResult = -1;
+		int boxedCalls = 0;
+
+		@Override public void onFutureSucceededAsLong(Future<?> future, long result) {
+			primitiveResult = result;
+		}
+
+		@Override public void onFutureSucceeded(Future<? extends Long> future, Long result) {
+			boxedCalls++;
+		}
+
+		@Override public void onFutureFailed(Future<? extends Long> future, Throwable exception, boolean mayInterrupt) {
+			throw new AssertionError("unexpected failure", exception);
+		}
+	}
+}
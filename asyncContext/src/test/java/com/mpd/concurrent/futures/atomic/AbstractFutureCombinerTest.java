@@ -0,0 +1,103 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import android.util.Log;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.tbohne.android.flogger.backend.AndroidBackend;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLog;
+
+@RunWith(RobolectricTestRunner.class) public class AbstractFutureCombinerTest extends TestWithStandardRules {
+	// large enough to count down in groups
+	private static final int HIERARCHICAL_COUNT = AbstractFutureCombiner.HIERARCHICAL_THRESHOLD * 2 + 3;
+
+	@Before public void disableLogging() {
+		// logging every parent would dominate the test
+		AndroidBackend.setLogLevelOverride(Log.ASSERT);
+		ShadowLog.setLoggable("atomic", Log.ASSERT);
+		ShadowLog.setLoggable("futures", Log.ASSERT);
+	}
+
+	private static List<SettableFuture<Integer>> newFutures(int count) {
+		List<SettableFuture<Integer>> futures = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			futures.add(new SettableFuture<>());
+		}
+		return futures;
+	}
+
+	@Test public void allAsList_hierarchical_completesInParentOrder() {
+		List<SettableFuture<Integer>> parents = newFutures(HIERARCHICAL_COUNT);
+		Future<List<Integer>> combined = Futures.allAsList(parents);
+
+		for (int i = parents.size() - 1; i > 0; i--) {
+			parents.get(i).setResult(i);
+		}
+		collector.checkThat(combined.isDone(), equalTo(false));
+		parents.get(0).setResult(0);
+
+		List<Integer> result = combined.resultNow();
+		collector.checkThat(result.size(), equalTo(HIERARCHICAL_COUNT));
+		collector.checkThat(result.get(0), equalTo(0));
+		collector.checkThat(result.get(HIERARCHICAL_COUNT - 1), equalTo(HIERARCHICAL_COUNT - 1));
+		ensureTestComplete(combined);
+	}
+
+	@Test public void whenAllSucceeded_hierarchical_failsOnFirstFailure() {
+		List<SettableFuture<Integer>> parents = newFutures(HIERARCHICAL_COUNT);
+		Future<Void> combined = Futures.whenAllSucceeded(parents);
+		IllegalStateException expected = new IllegalStateException("whenAllSucceeded_hierarchical_failsOnFirstFailure");
+
+		parents.get(HIERARCHICAL_COUNT / 2).setException(expected);
+
+		collector.checkThat(combined.exceptionNow(), sameInstance(expected));
+		for (SettableFuture<Integer> parent : parents) {
+			if (!parent.isDone()) {
+				parent.setResult(0); // late results are dropped
+			}
+		}
+		collector.checkThat(combined.exceptionNow(), sameInstance(expected));
+		ensureTestComplete(combined);
+	}
+
+	@Test public void whenAllComplete_someFailed_failsWithAllExceptions() {
+		List<SettableFuture<Integer>> parents = newFutures(10);
+		Future<Void> combined = Futures.whenAllComplete(parents);
+		IllegalStateException first = new IllegalStateException("first");
+		IllegalStateException second = new IllegalStateException("second");
+
+		for (int i = 0; i < parents.size(); i++) {
+			if (i == 3) {
+				parents.get(i).setException(first);
+			} else if (i == 7) {
+				parents.get(i).setException(second);
+			} else {
+				parents.get(i).setResult(i);
+			}
+		}
+
+		collector.checkThat(combined.exceptionNow(), sameInstance(first));
+		collector.checkThat(first.getSuppressed(), arrayWithSize(1));
+		ensureTestComplete(combined);
+	}
+
+	@Test public void whenAllComplete_empty_succeedsImmediately() {
+		Future<Void> combined = Futures.whenAllComplete(new ArrayList<Future<?>>());
+
+		collector.checkThat(combined.resultNow(), nullValue());
+		ensureTestComplete(combined);
+	}
+}
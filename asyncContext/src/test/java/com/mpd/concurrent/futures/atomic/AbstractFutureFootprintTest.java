@@ -0,0 +1,117 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.internal.matchers.ThrowableCauseMatcher.hasCause;
+
+import android.util.Log;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Future.AsyncCheckedException;
+import com.mpd.concurrent.futures.FutureConfig.DefaultFutureConfig;
+import com.mpd.concurrent.futures.FutureConfig.LeakDetectionMode;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.tbohne.android.flogger.backend.AndroidBackend;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLog;
+
+@RunWith(RobolectricTestRunner.class) public class AbstractFutureFootprintTest extends TestWithStandardRules {
+	// Before the state was collapsed, AbstractFuture had a long and 8 references: FAILED_RESULT,
+	// futureConstructionLocation, setAsync, exception, result, wrappedException, wasInterrupted, and listener.
+	private static final int PREVIOUS_INSTANCE_FIELDS = 9;
+	private static final int PREVIOUS_VOLATILE_FIELDS = 6;
+	private static final int FUTURE_COUNT = 10000;
+
+	private static long currentThreadAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread()
+				.getId());
+	}
+
+	private static SettableFuture<String>[] newEndedFutures() {
+		//noinspection unchecked
+		SettableFuture<String>[] futures = new SettableFuture[FUTURE_COUNT];
+		for (int i = 0; i < FUTURE_COUNT; i++) {
+			futures[i] = new SettableFuture<>();
+			futures[i].end();
+		}
+		return futures;
+	}
+
+	private LeakDetectionMode oldMode;
+
+	@Before public void disableLoggingAndLeakDetection() {
+		// logging and leak tracking both allocate, which would hide what the futures themselves allocate
+		AndroidBackend.setLogLevelOverride(Log.ASSERT);
+		ShadowLog.setLoggable("atomic", Log.ASSERT);
+		ShadowLog.setLoggable("futures", Log.ASSERT);
+		oldMode = Future.futureConfig.getLeakDetectionMode();
+		((DefaultFutureConfig) Future.futureConfig).setLeakDetectionMode(LeakDetectionMode.OFF);
+	}
+
+	@After public void restoreLeakDetection() {
+		((DefaultFutureConfig) Future.futureConfig).setLeakDetectionMode(oldMode);
+	}
+
+	@Test public void abstractFuture_hasFewerInstanceFields() {
+		int instanceFields = 0;
+		for (Field field : AbstractFuture.class.getDeclaredFields()) {
+			if (!Modifier.isStatic(field.getModifiers())) {
+				instanceFields++;
+			}
+		}
+		collector.checkThat(instanceFields, lessThan(PREVIOUS_INSTANCE_FIELDS));
+	}
+
+	@Test public void abstractFuture_hasFewerVolatileFields() {
+		int volatileFields = 0;
+		for (Field field : AbstractFuture.class.getDeclaredFields()) {
+			if (Modifier.isVolatile(field.getModifiers())) {
+				volatileFields++;
+			}
+		}
+		collector.checkThat(volatileFields, lessThan(PREVIOUS_VOLATILE_FIELDS));
+	}
+
+	@Test public void setResult_doesNotAllocate() {
+		// warm up, so that the JIT has settled before measuring
+		for (SettableFuture<String> future : newEndedFutures()) {
+			future.setResult("setResult_doesNotAllocate");
+		}
+		for (SettableFuture<String> future : newEndedFutures()) {
+			future.setResult((String) null);
+		}
+		SettableFuture<String>[] futures = newEndedFutures();
+
+		long before = currentThreadAllocatedBytes();
+		for (SettableFuture<String> future : futures) {
+			future.setResult("setResult_doesNotAllocate");
+		}
+		long allocated = currentThreadAllocatedBytes() - before;
+
+		// allows a little slack for lazily initialized thread state
+		collector.checkThat(allocated, lessThanOrEqualTo((long) FUTURE_COUNT));
+		collector.checkThat(futures[0].resultNow(), equalTo("setResult_doesNotAllocate"));
+	}
+
+	@Test public void setException_checked_wrapsLazily() {
+		IOException expected = new IOException("setException_checked_wrapsLazily");
+		SettableFuture<String> future = new SettableFuture<>();
+
+		future.setException(expected);
+
+		collector.checkThat(future.exceptionNow(), sameInstance(expected));
+		collector.checkThrows(AsyncCheckedException.class, future::resultNow, hasCause(sameInstance(expected)));
+		ensureTestComplete(future);
+	}
+}
@@ -0,0 +1,114 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class AbstractFutureWaitersTest extends TestWithStandardRules {
+	private static final int ROUNDS = 20;
+	private static final int BLOCKED_THREADS = 4;
+	private static final int TIMED_OUT_THREADS = 4;
+
+	// Walks the private Treiber stack, counting waiters that still have a thread
+	private static int countWaiters(AbstractFuture<?> future) throws ReflectiveOperationException {
+		Field waitersField = AbstractFuture.class.getDeclaredField("waiters");
+		waitersField.setAccessible(true);
+		Object waiter = waitersField.get(future);
+		int count = 0;
+		while (waiter != null) {
+			Field threadField = waiter.getClass().getDeclaredField("thread");
+			Field nextField = waiter.getClass().getDeclaredField("next");
+			threadField.setAccessible(true);
+			nextField.setAccessible(true);
+			if (threadField.get(waiter) != null) {
+				count++;
+			}
+			waiter = nextField.get(waiter);
+		}
+		return count;
+	}
+
+	private static int countAllNodes(AbstractFuture<?> future) throws ReflectiveOperationException {
+		Field waitersField = AbstractFuture.class.getDeclaredField("waiters");
+		waitersField.setAccessible(true);
+		Object waiter = waitersField.get(future);
+		int count = 0;
+		while (waiter != null) {
+			Field nextField = waiter.getClass().getDeclaredField("next");
+			nextField.setAccessible(true);
+			count++;
+			waiter = nextField.get(waiter);
+		}
+		return count;
+	}
+
+	@Test public void get_concurrentWaiters_timedOutUnlinkAndTheRestWake() throws Throwable {
+		for (int round = 0; round < ROUNDS; round++) {
+			SettableFuture<String> future = new SettableFuture<>();
+			CountDownLatch timedOut = new CountDownLatch(TIMED_OUT_THREADS);
+			AtomicInteger woken = new AtomicInteger();
+			AtomicInteger failures = new AtomicInteger();
+			List<Thread> threads = new ArrayList<>();
+			for (int i = 0; i < BLOCKED_THREADS; i++) {
+				boolean untimed = i % 2 == 0;
+				threads.add(new Thread(() -> {
+					try {
+						//noinspection deprecation
+						String result = untimed ? future.get() : future.get(10, SECONDS);
+						if ("done".equals(result)) {
+							woken.incrementAndGet();
+						}
+					} catch (Throwable e) {
+						failures.incrementAndGet();
+					}
+				}, "blocked-" + i));
+			}
+			for (int i = 0; i < TIMED_OUT_THREADS; i++) {
+				long timeoutMillis = 1 + i;
+				threads.add(new Thread(() -> {
+					try {
+						future.get(timeoutMillis, MILLISECONDS);
+						failures.incrementAndGet();
+					} catch (TimeoutException e) {
+						timedOut.countDown();
+					} catch (Throwable e) {
+						failures.incrementAndGet();
+					}
+				}, "timedOut-" + i));
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+
+			collector.checkThat(timedOut.await(5, SECONDS), equalTo(true));
+			long deadline = System.nanoTime() + SECONDS.toNanos(5);
+			while (countWaiters(future) < BLOCKED_THREADS && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+			}
+			// the timed out waiters unlinked themselves, leaving only the blocked ones
+			collector.checkThat(countWaiters(future), equalTo(BLOCKED_THREADS));
+			collector.checkThat(countAllNodes(future), equalTo(BLOCKED_THREADS));
+
+			future.setResult("done");
+			for (Thread thread : threads) {
+				thread.join(SECONDS.toMillis(5));
+			}
+			collector.checkThat(woken.get(), equalTo(BLOCKED_THREADS));
+			collector.checkThat(failures.get(), equalTo(0));
+			collector.checkThat(countAllNodes(future), equalTo(0));
+			future.end();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.executors.MoreExecutors.directExecutor;
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class FanoutListenerTest extends TestWithStandardRules {
+	@Test public void share_setResult_notifiesEveryListener() {
+		SettableFuture<String> source = new SettableFuture<>();
+		FanoutListener<String> shared = source.share();
+		Future<String> first = shared.transform(value -> value + "1", directExecutor());
+		Future<String> second = shared.transform(value -> value + "2", directExecutor());
+		Future<String> third = shared.transform(value -> value + "3", directExecutor());
+		collector.checkThat(source.getListener(), sameInstance(shared));
+
+		source.setResult("share_setResult_notifiesEveryListener");
+
+		collector.checkThat(first.resultNow(), equalTo("share_setResult_notifiesEveryListener1"));
+		collector.checkThat(second.resultNow(), equalTo("share_setResult_notifiesEveryListener2"));
+		collector.checkThat(third.resultNow(), equalTo("share_setResult_notifiesEveryListener3"));
+		ensureTestComplete(first);
+		ensureTestComplete(second);
+		ensureTestComplete(third);
+	}
+
+	@Test public void share_addListenerAfterComplete_notifiesImmediately() {
+		SettableFuture<String> source = new SettableFuture<>();
+		FanoutListener<String> shared = source.share();
+		source.setResult("share_addListenerAfterComplete_notifiesImmediately");
+
+		Future<String> late = shared.transform(value -> value, directExecutor());
+
+		collector.checkThat(late.resultNow(), equalTo("share_addListenerAfterComplete_notifiesImmediately"));
+		ensureTestComplete(late);
+	}
+
+	@Test public void share_setException_notifiesEveryListener() {
+		SettableFuture<String> source = new SettableFuture<>();
+		FanoutListener<String> shared = source.share();
+		Future<String> first = shared.catching(IllegalStateException.class, e -> "first", directExecutor());
+		Future<String> second = shared.catching(IllegalStateException.class, e -> "second", directExecutor());
+
+		source.setException(new IllegalStateException("share_setException_notifiesEveryListener"));
+
+		collector.checkThat(first.resultNow(), equalTo("first"));
+		collector.checkThat(second.resultNow(), equalTo("second"));
+		ensureTestComplete(first);
+		ensureTestComplete(second);
+	}
+
+	@Test public void share_cancelOneBranch_otherBranchesStillComplete() {
+		SettableFuture<String> source = new SettableFuture<>();
+		FanoutListener<String> shared = source.share();
+		Future<String> cancelled = shared.transform(value -> value + "1", directExecutor());
+		Future<String> second = shared.transform(value -> value + "2", directExecutor());
+		Future<String> third = shared.catching(IllegalStateException.class, e -> "third", directExecutor());
+
+		cancelled.cancel(new CancellationException("share_cancelOneBranch_otherBranchesStillComplete"), false);
+		source.setResult("share_cancelOneBranch_otherBranchesStillComplete");
+
+		collector.checkThat(cancelled.isCancelled(), equalTo(true));
+		collector.checkThat(source.isCancelled(), equalTo(false));
+		collector.checkThat(second.resultNow(), equalTo("share_cancelOneBranch_otherBranchesStillComplete2"));
+		collector.checkThat(third.resultNow(), equalTo("share_cancelOneBranch_otherBranchesStillComplete"));
+		ensureTestComplete(cancelled);
+		ensureTestComplete(second);
+		ensureTestComplete(third);
+	}
+
+	@Test public void share_cancelOneBranch_failureStillReachesOtherBranches() {
+		SettableFuture<String> source = new SettableFuture<>();
+		FanoutListener<String> shared = source.share();
+		Future<String> cancelled = shared.catching(IllegalStateException.class, e -> "cancelled", directExecutor());
+		Future<String> handled = shared.catching(IllegalStateException.class, e -> "handled", directExecutor());
+
+		cancelled.cancel(new CancellationException("share_cancelOneBranch_failureStillReachesOtherBranches"), false);
+		source.setException(new IllegalStateException("share_cancelOneBranch_failureStillReachesOtherBranches"));
+
+		collector.checkThat(cancelled.isCancelled(), equalTo(true));
+		collector.checkThat(handled.resultNow(), equalTo("handled"));
+		ensureTestComplete(cancelled);
+		ensureTestComplete(handled);
+	}
+}
@@ -0,0 +1,72 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+import com.mpd.concurrent.executors.locked.JavaAsMpdExecutor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayDeque;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class FusedStageTest extends TestWithStandardRules {
+	private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+	private final JavaAsMpdExecutor executor = new JavaAsMpdExecutor(queue::add, 1);
+
+	private void runQueue() {
+		while (!queue.isEmpty()) {
+			queue.poll().run();
+		}
+	}
+
+	@Test public void transform_sameExecutor_submitsOncePerSegment() {
+		SettableFuture<Integer> source = new SettableFuture<>();
+		Future<Integer> head = source.transform(value -> value + 1, executor);
+		Future<Integer> middle = head.transform(value -> value * 10, executor);
+		Future<Integer> last = middle.transform(value -> value - 1, executor);
+
+		source.setResult(1);
+
+		collector.checkThat(head, instanceOf(FutureFunction.class));
+		collector.checkThat(last, instanceOf(FusedFunctionStage.class));
+		collector.checkThat(queue.size(), equalTo(1));
+		runQueue();
+		collector.checkThat(middle.resultNow(), equalTo(20));
+		collector.checkThat(last.resultNow(), equalTo(19));
+		ensureTestComplete(last);
+	}
+
+	@Test public void catching_sameExecutor_catchesInline() {
+		SettableFuture<Integer> source = new SettableFuture<>();
+		Future<Integer> caught = source.<Integer>transform(value -> {
+			throw new IllegalStateException("catching_sameExecutor_catchesInline");
+		}, executor).catching(IllegalStateException.class, e -> -1, executor);
+
+		source.setResult(1);
+		runQueue();
+
+		collector.checkThat(caught, instanceOf(FusedCatchingStage.class));
+		collector.checkThat(caught.resultNow(), equalTo(-1));
+		ensureTestComplete(caught);
+	}
+
+	@Test public void addPendingString_fused_reportsEveryStage() {
+		SettableFuture<String> source = new SettableFuture<>();
+		Future<String> fused = source.transform(String::trim, executor).transform(String::toUpperCase, executor);
+
+		StringBuilder sb = new StringBuilder();
+		fused.addPendingString(sb, 4);
+
+		collector.checkThat(sb.toString(), containsString("FusedFunctionStage"));
+		collector.checkThat(sb.toString(), containsString("FutureFunction"));
+		source.setResult(" addPendingString_fused_reportsEveryStage ");
+		runQueue();
+		collector.checkThat(fused.resultNow(), equalTo("ADDPENDINGSTRING_FUSED_REPORTSEVERYSTAGE"));
+		ensureTestComplete(fused);
+	}
+}
@@ -0,0 +1,204 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureConfig.DefaultFutureConfig;
+import com.mpd.concurrent.futures.FutureConfig.LeakDetectionMode;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.mpd.concurrent.futures.atomic.AbstractFuture.LeakedFutureException;
+import com.mpd.concurrent.futures.atomic.FutureLeakDetector.LeakTracker;
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class FutureLeakDetectorTest extends TestWithStandardRules {
+	private static final int SAMPLED_TRACK_ATTEMPTS = 4000;
+	private static final int SAMPLE_RATE = 4;
+	private static final long GC_TIMEOUT_MILLIS = 10000;
+
+	private final CopyOnWriteArrayList<LeakedFutureException> leaks = new CopyOnWriteArrayList<>();
+	private LeakDetectionMode oldMode;
+	private int oldSampleRate;
+	private @Nullable UncaughtExceptionHandler oldHandler;
+
+	// The reaper reports to FutureConfig#onUnhandledException, which hands leaks to the default handler
+	@Before public void captureLeaks() {
+		oldMode = Future.futureConfig.getLeakDetectionMode();
+		oldSampleRate = Future.futureConfig.getLeakDetectionSampleRate();
+		oldHandler = Thread.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+			if (throwable instanceof LeakedFutureException) {
+				leaks.add((LeakedFutureException) throwable);
+			} else if (oldHandler != null) {
+				oldHandler.uncaughtException(thread, throwable);
+			}
+		});
+	}
+
+	@After public void restoreConfig() {
+		setLeakDetectionMode(oldMode, oldSampleRate);
+		Thread.setDefaultUncaughtExceptionHandler(oldHandler);
+	}
+
+	private static void setLeakDetectionMode(LeakDetectionMode mode, int sampleRate) {
+		((DefaultFutureConfig) Future.futureConfig).setLeakDetectionMode(mode, sampleRate);
+	}
+
+	// Untracks the tracker, so that the future isn't reported when it's collected
+	private static boolean trackAndRelease(AbstractFuture<?> future) {
+		@Nullable LeakTracker tracker = FutureLeakDetector.track(future);
+		if (tracker == null) {
+			return false;
+		}
+		tracker.onListenerDispatched();
+		return true;
+	}
+
+	private int countLeaksOf(Class<?> futureClass) {
+		int count = 0;
+		for (LeakedFutureException leak : leaks) {
+			if (leak.getMessage().contains('"' + futureClass.getName() + '"')) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static void awaitCollection(WeakReference<?> reference) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + GC_TIMEOUT_MILLIS;
+		while (reference.get() != null && System.currentTimeMillis() < deadline) {
+			System.gc();
+			Thread.sleep(10);
+		}
+	}
+
+	private void awaitLeakOf(Class<?> futureClass) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + GC_TIMEOUT_MILLIS;
+		while (countLeaksOf(futureClass) == 0 && System.currentTimeMillis() < deadline) {
+			System.gc();
+			Thread.sleep(10);
+		}
+	}
+
+	@Test public void off_tracksNothing() {
+		setLeakDetectionMode(LeakDetectionMode.OFF, 1);
+		SettableFuture<String> future = new SettableFuture<>();
+
+		collector.checkThat(FutureLeakDetector.track(future), nullValue());
+		future.setResult("done");
+		future.end();
+	}
+
+	@Test public void full_tracksEveryFuture() {
+		SettableFuture<String> future = new SettableFuture<>();
+
+		int tracked = 0;
+		for (int i = 0; i < SAMPLED_TRACK_ATTEMPTS; i++) {
+			setLeakDetectionMode(LeakDetectionMode.FULL, SAMPLE_RATE); // the rate only applies to SAMPLED
+			boolean wasTracked = trackAndRelease(future);
+			setLeakDetectionMode(LeakDetectionMode.OFF, 1);
+			if (wasTracked) {
+				tracked++;
+			}
+		}
+		collector.checkThat(tracked, equalTo(SAMPLED_TRACK_ATTEMPTS));
+		future.setResult("done");
+		future.end();
+	}
+
+	@Test public void sampled_tracksRoughlyOneInSampleRate() {
+		SettableFuture<String> future = new SettableFuture<>();
+
+		setLeakDetectionMode(LeakDetectionMode.SAMPLED, 1);
+		boolean trackedAtRateOne = trackAndRelease(future);
+		setLeakDetectionMode(LeakDetectionMode.OFF, 1);
+		collector.checkThat(trackedAtRateOne, equalTo(true));
+
+		int tracked = 0;
+		for (int i = 0; i < SAMPLED_TRACK_ATTEMPTS; i++) {
+			setLeakDetectionMode(LeakDetectionMode.SAMPLED, SAMPLE_RATE);
+			boolean wasTracked = trackAndRelease(future);
+			setLeakDetectionMode(LeakDetectionMode.OFF, 1);
+			if (wasTracked) {
+				tracked++;
+			}
+		}
+		// about 1000 expected, with a standard deviation of about 27
+		collector.checkThat(tracked, greaterThan(SAMPLED_TRACK_ATTEMPTS / SAMPLE_RATE / 2));
+		collector.checkThat(tracked, lessThan(SAMPLED_TRACK_ATTEMPTS / SAMPLE_RATE * 3 / 2));
+		future.setResult("done");
+		future.end();
+	}
+
+	@Test public void unendedFuture_isReportedAfterCollection() throws InterruptedException {
+		setLeakDetectionMode(LeakDetectionMode.FULL, 1);
+		LeakedFuture leaked = new LeakedFuture();
+		setLeakDetectionMode(LeakDetectionMode.OFF, 1);
+		WeakReference<LeakedFuture> reference = new WeakReference<>(leaked);
+		//noinspection UnusedAssignment
+		leaked = null;
+
+		awaitCollection(reference);
+		awaitLeakOf(LeakedFuture.class);
+
+		collector.checkThat(reference.get(), nullValue());
+		collector.checkThat(countLeaksOf(LeakedFuture.class), equalTo(1));
+		for (LeakedFutureException leak : leaks) {
+			if (!leak.getMessage().contains(LeakedFuture.class.getName())) {
+				continue;
+			}
+			collector.checkThat(leak.getMessage(), containsString("Incomplete future"));
+			collector.checkThat(leak.getCause(), notNullValue()); // the construction site
+		}
+	}
+
+	@Test public void endedOrDispatchedFutures_areNotReported() throws InterruptedException {
+		setLeakDetectionMode(LeakDetectionMode.FULL, 1);
+		EndedFuture ended = new EndedFuture();
+		DispatchedFuture dispatched = new DispatchedFuture();
+		// collected alongside the others, so once it's reported, the reaper has seen them too
+		LeakedFuture sentinel = new LeakedFuture();
+		setLeakDetectionMode(LeakDetectionMode.OFF, 1);
+		ended.setResult("done");
+		ended.end();
+		dispatched.setListener(EndListener.INSTANCE);
+		dispatched.setResult("done");
+		WeakReference<EndedFuture> endedReference = new WeakReference<>(ended);
+		WeakReference<DispatchedFuture> dispatchedReference = new WeakReference<>(dispatched);
+		//noinspection UnusedAssignment
+		ended = null;
+		//noinspection UnusedAssignment
+		dispatched = null;
+		//noinspection UnusedAssignment
+		sentinel = null;
+
+		awaitCollection(endedReference);
+		awaitCollection(dispatchedReference);
+		awaitLeakOf(LeakedFuture.class);
+
+		collector.checkThat(endedReference.get(), nullValue());
+		collector.checkThat(dispatchedReference.get(), nullValue());
+		collector.checkThat(countLeaksOf(LeakedFuture.class), equalTo(1));
+		collector.checkThat(countLeaksOf(EndedFuture.class), equalTo(0));
+		collector.checkThat(countLeaksOf(DispatchedFuture.class), equalTo(0));
+	}
+
+	private static final class LeakedFuture extends SettableFuture<String> {}
+
+	private static final class EndedFuture extends SettableFuture<String> {}
+
+	private static final class DispatchedFuture extends SettableFuture<String> {}
+}
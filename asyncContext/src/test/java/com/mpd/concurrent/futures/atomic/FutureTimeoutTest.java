@@ -0,0 +1,45 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class FutureTimeoutTest extends TestWithStandardRules {
+	@Test public void withTimeout_parentSucceedsFirst_passesResult() throws Throwable {
+		SettableFuture<Integer> parent = new SettableFuture<>();
+		Future<Integer> timeout = parent.withTimeout(1, SECONDS);
+
+		parent.setResult(3);
+
+		collector.checkSucceeds(timeout::resultNow, equalTo(3));
+		ensureTestComplete(timeout);
+	}
+
+	@Test public void withTimeout_parentAlreadyDone_passesResult() throws Throwable {
+		Future<Integer> timeout = Futures.immediateFuture(3).withTimeout(1, SECONDS);
+
+		collector.checkSucceeds(timeout::resultNow, equalTo(3));
+		ensureTestComplete(timeout);
+	}
+
+	@Test public void withTimeout_parentNeverCompletes_failsOffMainLooper() throws Throwable {
+		SettableFuture<Integer> parent = new SettableFuture<>();
+		ArithmeticException expect = new ArithmeticException("timed out");
+		Future<Integer> timeout = parent.withTimeout(10, MILLISECONDS, expect);
+
+		// the main looper isn't idled, so this only fires if the timer has its own thread
+		collector.checkThrows(ArithmeticException.class, () -> timeout.get(5, SECONDS), sameInstance(expect));
+		collector.checkSucceeds(parent::exceptionNow, sameInstance(expect));
+		ensureTestComplete(timeout);
+	}
+}
@@ -0,0 +1,79 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.mpd.concurrent.executors.locked.JavaAsMpdExecutor;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.ArrayDeque;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class InlineContinuationTest extends TestWithStandardRules {
+	private static final int CHAIN_LENGTH = 10;
+
+	private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+	private boolean draining = false;
+	private int submitted = 0;
+
+	// owns the test thread only while draining its queue
+	private JavaAsMpdExecutor newExecutor(int maxInlineContinuations) {
+		return new JavaAsMpdExecutor(runnable -> {
+			submitted++;
+			queue.add(runnable);
+		}, 1) {
+			@Override public int ownsThread(Thread thread) {
+				return draining ? ThreadInExecutorEnum.THREAD_IN_EXECUTOR : ThreadInExecutorEnum.THREAD_NOT_IN_EXECUTOR;
+			}
+
+			@Override public int getMaxInlineContinuations() {
+				return maxInlineContinuations;
+			}
+		};
+	}
+
+	private void runQueue() {
+		draining = true;
+		while (!queue.isEmpty()) {
+			queue.poll().run();
+		}
+		draining = false;
+	}
+
+	private Future<Integer> chainIncrements(Future<Integer> root, JavaAsMpdExecutor executor) {
+		Future<Integer> future = root;
+		for (int i = 0; i < CHAIN_LENGTH; i++) {
+			future = future.transformAsync(value -> Futures.immediateFuture(value + 1), executor);
+		}
+		return future;
+	}
+
+	@Test public void transformAsync_ownedThread_runsInlineWithinBudget() {
+		SettableFuture<Integer> root = new SettableFuture<>();
+		Future<Integer> last = chainIncrements(root, newExecutor(3));
+
+		root.setResult(0);
+		runQueue();
+
+		collector.checkThat(last.resultNow(), equalTo(CHAIN_LENGTH));
+		// the first is submitted from the test thread, then each run continues 3 more inline
+		collector.checkThat(submitted, equalTo(3));
+		ensureTestComplete(last);
+	}
+
+	@Test public void transformAsync_noBudget_submitsEveryContinuation() {
+		SettableFuture<Integer> root = new SettableFuture<>();
+		Future<Integer> last = chainIncrements(root, newExecutor(0));
+
+		root.setResult(0);
+		runQueue();
+
+		collector.checkThat(last.resultNow(), equalTo(CHAIN_LENGTH));
+		collector.checkThat(submitted, equalTo(CHAIN_LENGTH));
+		ensureTestComplete(last);
+	}
+}
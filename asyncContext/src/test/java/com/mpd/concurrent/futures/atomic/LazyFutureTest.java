@@ -0,0 +1,74 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.executors.MoreExecutors.directExecutor;
+import static com.mpd.concurrent.futures.atomic.AbstractFutureHelper.ensureTestComplete;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.Futures;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class) public class LazyFutureTest extends TestWithStandardRules {
+	private int calls = 0;
+
+	private Future<Integer> countingLazy() {
+		return Futures.lazy(() -> {
+			calls++;
+			return Futures.immediateFuture(1);
+		});
+	}
+
+	@Test public void lazy_noConsumer_doesNotStart() {
+		Future<Integer> future = countingLazy().transform(value -> value + 1, directExecutor());
+
+		collector.checkThat(calls, equalTo(0));
+		collector.checkThat(future.isDone(), equalTo(false));
+		ensureTestComplete(future);
+	}
+
+	@Test public void lazy_consumerAttached_startsWholeChain() {
+		Future<Integer> source = countingLazy();
+		Future<Integer> transformed = source.transform(value -> value + 1, directExecutor());
+		SettableFuture<Integer> consumer = new SettableFuture<>();
+
+		consumer.setResult(transformed);
+
+		collector.checkThat(calls, equalTo(1));
+		collector.checkThat(consumer.resultNow(), equalTo(2));
+		ensureTestComplete(consumer);
+	}
+
+	@Test public void lazy_endedWithoutConsumer_cancelsUpstream() {
+		Future<Integer> source = countingLazy();
+		Future<Integer> transformed = source.transform(value -> value + 1, directExecutor())
+				.transform(value -> value * 10, directExecutor());
+
+		transformed.end();
+
+		collector.checkThat(calls, equalTo(0));
+		collector.checkThat(transformed.exceptionNow(), instanceOf(CancellationException.class));
+		collector.checkThat(source.exceptionNow(), instanceOf(CancellationException.class));
+	}
+
+	@Test public void lazy_endedWithoutConsumer_leavesStartedUpstreamRunning() {
+		SettableFuture<Integer> work = new SettableFuture<>();
+		Future<Integer> source = Futures.lazy(() -> work);
+		Future<Integer> transformed = source.transform(value -> value + 1, directExecutor());
+		SettableFuture<Integer> otherConsumer = new SettableFuture<>();
+		otherConsumer.setResult(source);
+
+		transformed.end();
+		work.setResult(1);
+
+		collector.checkThat(transformed.exceptionNow(), instanceOf(CancellationException.class));
+		collector.checkThat(source.resultNow(), equalTo(1));
+		collector.checkThat(otherConsumer.resultNow(), equalTo(1));
+		ensureTestComplete(otherConsumer);
+	}
+}
@@ -0,0 +1,98 @@
+package com.mpd.concurrent.futures.atomic;
+
+import static com.mpd.concurrent.executors.MoreExecutors.directExecutor;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+import android.util.Log;
+import com.google.common.flogger.FluentLogger;
+import com.mpd.concurrent.futures.Future;
+import com.mpd.concurrent.futures.FutureListener;
+import com.mpd.concurrent.futures.SettableFuture;
+import com.mpd.concurrent.futures.TestWithStandardRules;
+import com.tbohne.android.flogger.backend.AndroidBackend;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLog;
+
+@RunWith(RobolectricTestRunner.class) public class ListenerTrampolineTest extends TestWithStandardRules {
+	private static final FluentLogger log = FluentLogger.forEnclosingClass();
+	// deep enough that recursive notification overflowed the default stack
+	private static final int LONG_CHAIN_LENGTH = 100000;
+	private static final int BENCHMARK_CHAIN_LENGTH = 1000;
+	// generous, since the test runner itself contributes frames
+	private static final int MAX_EXTRA_STACK_FRAMES = 200;
+
+	@Before public void disableLogging() {
+		// logging every link in the chain would dominate the benchmark
+		AndroidBackend.setLogLevelOverride(Log.ASSERT);
+		ShadowLog.setLoggable("atomic", Log.ASSERT);
+		ShadowLog.setLoggable("futures", Log.ASSERT);
+	}
+
+	private static Future<Integer> chainIncrements(Future<Integer> root, int length) {
+		Future<Integer> future = root;
+		for (int i = 0; i < length; i++) {
+			future = future.transform(value -> value + 1, directExecutor());
+		}
+		return future;
+	}
+
+	@Test public void setResult_longDirectChain_doesNotOverflowStack() {
+		SettableFuture<Integer> root = new SettableFuture<>();
+		Future<Integer> last = chainIncrements(root, LONG_CHAIN_LENGTH);
+
+		collector.checkThat(root.setResult(0), equalTo(true));
+
+		collector.checkThat(last.resultNow(), equalTo(LONG_CHAIN_LENGTH));
+		last.end();
+	}
+
+	@Test public void setResult_directChain_usesConstantStack() {
+		int baseDepth = Thread.currentThread().getStackTrace().length;
+		int[] lastDepth = new int[1];
+		SettableFuture<Integer> root = new SettableFuture<>();
+		Future<Integer> last = chainIncrements(root, BENCHMARK_CHAIN_LENGTH).transform(value -> {
+			lastDepth[0] = Thread.currentThread().getStackTrace().length;
+			return value;
+		}, directExecutor());
+
+		long startNanos = System.nanoTime();
+		root.setResult(0);
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		log.atInfo().log("%d direct transforms notified in %dns/transform",
+				BENCHMARK_CHAIN_LENGTH,
+				elapsedNanos / BENCHMARK_CHAIN_LENGTH);
+		collector.checkThat(last.resultNow(), equalTo(BENCHMARK_CHAIN_LENGTH));
+		collector.checkThat(lastDepth[0] - baseDepth, lessThan(MAX_EXTRA_STACK_FRAMES));
+		last.end();
+	}
+
+	@Test public void setResult_listenerThrowsError_stillNotifiesQueuedListeners() {
+		AssertionError error = new AssertionError("setResult_listenerThrowsError_stillNotifiesQueuedListeners");
+		uncaughtExceptionRule.expectUncaughtExceptionInThisThread(sameInstance(error));
+		SettableFuture<Integer> root = new SettableFuture<>();
+		SettableFuture<Integer> queued = new SettableFuture<>();
+		Future<Integer> last = chainIncrements(queued, 3);
+		root.setListener(new FutureListener<Integer>() {
+			@Override public void onFutureSucceeded(Future<? extends Integer> future, Integer result) {
+				queued.setResult(result); // queued behind this notification, since the trampoline is draining
+				throw error;
+			}
+
+			@Override
+			public void onFutureFailed(Future<? extends Integer> future, Throwable exception, boolean mayInterruptIfRunning) {
+				throw error;
+			}
+		});
+
+		root.setResult(0);
+
+		collector.checkThat(last.resultNow(), equalTo(3));
+		last.end();
+	}
+}